@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.benchmarks;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.RandomByteIterator;
+import com.yahoo.ycsb.StringByteIterator;
+
+/**
+ * The records the codec benchmarks encode and decode, with the fields and values of CoreWorkload, for every
+ * combination of fieldcount and fieldlength. The benchmarks of a binding extend it in the package of the binding,
+ * so they call its codec as the binding does, without a server.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class CodecBenchmark {
+    /**
+     * The number of fields of a record, as fieldcount.
+     */
+    @Param({"1", "10", "100"})
+    public int fieldcount;
+
+    /**
+     * The length of a value, as fieldlength.
+     */
+    @Param({"10", "100", "1000"})
+    public int fieldlength;
+
+    /**
+     * The values as Strings, to build the ByteIterators from.
+     */
+    protected HashMap<String, String> strings;
+
+    /**
+     * The values as StringByteIterators, for the codecs that don't consume them.
+     */
+    protected HashMap<String, ByteIterator> values;
+
+    @Setup
+    public void setup() throws Exception {
+        strings = new HashMap<String, String>();
+        for (int i = 0; i < fieldcount; i++) {
+            strings.put("field" + i, new RandomByteIterator(fieldlength).toString());
+        }
+        values = values();
+        prepare();
+    }
+
+    /**
+     * Prepare the input of the decoding benchmarks, after the values are built.
+     */
+    protected void prepare() throws Exception {
+    }
+
+    /**
+     * Return new ByteIterators of the values, for the codecs that consume them as the DB does with the values
+     * of CoreWorkload. See {@link StringByteIteratorBenchmark#values()} for its cost.
+     */
+    protected HashMap<String, ByteIterator> values() {
+        HashMap<String, ByteIterator> v = new HashMap<String, ByteIterator>();
+        StringByteIterator.putAllAsByteIterators(v, strings);
+        return v;
+    }
+}
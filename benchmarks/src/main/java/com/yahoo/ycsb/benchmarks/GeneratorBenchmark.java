@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.yahoo.ycsb.RandomByteIterator;
+import com.yahoo.ycsb.generator.CounterGenerator;
+import com.yahoo.ycsb.generator.DiscreteGenerator;
+import com.yahoo.ycsb.generator.HotspotIntegerGenerator;
+import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
+import com.yahoo.ycsb.generator.SkewedLatestGenerator;
+import com.yahoo.ycsb.generator.UniformIntegerGenerator;
+import com.yahoo.ycsb.generator.ZipfianGenerator;
+
+/**
+ * The cost of the key, operation and value generators CoreWorkload calls for every operation before the DB call.
+ * As in CoreWorkload, all the threads share the generators, so the runs with 8 and 64 threads show the cost of
+ * contention on their shared state, such as the counter of the inserted keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class GeneratorBenchmark {
+    /**
+     * The number of records, as recordcount.
+     */
+    @Param({"1000000"})
+    public int items;
+
+    /**
+     * The length of a generated value, as fieldlength.
+     */
+    @Param({"100"})
+    public int fieldlength;
+
+    ZipfianGenerator zipfian;
+    ScrambledZipfianGenerator scrambledzipfian;
+    CounterGenerator counter;
+    SkewedLatestGenerator latest;
+    HotspotIntegerGenerator hotspot;
+    UniformIntegerGenerator uniform;
+    DiscreteGenerator operation;
+
+    @Setup
+    public void setup() {
+        zipfian = new ZipfianGenerator(items);
+        scrambledzipfian = new ScrambledZipfianGenerator(items);
+        counter = new CounterGenerator(items);
+        latest = new SkewedLatestGenerator(new CounterGenerator(items));
+        hotspot = new HotspotIntegerGenerator(0, items - 1, 0.2, 0.8);
+        uniform = new UniformIntegerGenerator(0, items - 1);
+        //the operation mix of workload a
+        operation = new DiscreteGenerator();
+        operation.addValue(0.5, "READ");
+        operation.addValue(0.5, "UPDATE");
+    }
+
+    @Benchmark
+    public int zipfian() {
+        return zipfian.nextInt();
+    }
+
+    @Benchmark
+    public int scrambledZipfian() {
+        return scrambledzipfian.nextInt();
+    }
+
+    @Benchmark
+    public int skewedLatest() {
+        return latest.nextInt();
+    }
+
+    @Benchmark
+    public int hotspot() {
+        return hotspot.nextInt();
+    }
+
+    @Benchmark
+    public int uniform() {
+        return uniform.nextInt();
+    }
+
+    @Benchmark
+    public int counter() {
+        return counter.nextInt();
+    }
+
+    @Benchmark
+    public String discrete() {
+        return operation.nextString();
+    }
+
+    @Benchmark
+    public void randomByteIterator(Blackhole bh) {
+        bh.consume(new RandomByteIterator(fieldlength).toArray());
+    }
+
+    @Threads(1)
+    public static class Threads1 extends GeneratorBenchmark {
+    }
+
+    @Threads(8)
+    public static class Threads8 extends GeneratorBenchmark {
+    }
+
+    @Threads(64)
+    public static class Threads64 extends GeneratorBenchmark {
+    }
+}
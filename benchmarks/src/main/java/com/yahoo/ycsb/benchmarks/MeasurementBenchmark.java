@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.OneMeasurement;
+import com.yahoo.ycsb.measurements.OneMeasurementHistogram;
+import com.yahoo.ycsb.measurements.OneMeasurementTimeSeries;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+import com.yahoo.ycsb.measurements.exporter.TextMeasurementsExporter;
+
+/**
+ * The cost of recording the latency of an operation, which every client thread pays at least once per operation,
+ * and of taking snapshots of and exporting the measurements while the threads record. Every benchmark runs for each
+ * measurementtype, so a new type is compared with the existing ones by adding it to {@link #measurementtype} and
+ * {@link #create(String, String, Properties)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class MeasurementBenchmark {
+    @Param({"histogram", "timeseries"})
+    public String measurementtype;
+
+    Measurements measurements;
+    OneMeasurement read;
+    MeasurementsExporter exporter;
+
+    /**
+     * Latencies in us, exponentially distributed around 1 ms with a tail beyond the 1000 buckets of the histogram,
+     * so recording takes the same branches as in a real run.
+     */
+    @State(Scope.Thread)
+    public static class Latencies {
+        final int[] values = new int[4096];
+        int next = 0;
+
+        @Setup
+        public void setup() {
+            Random random = new Random(Thread.currentThread().getId());
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (int) (-1000 * Math.log(1 - random.nextDouble()));
+            }
+        }
+
+        int next() {
+            next = (next + 1) & (values.length - 1);
+            return values[next];
+        }
+    }
+
+    static OneMeasurement create(String measurementtype, String name, Properties props) {
+        if (measurementtype.equals("histogram")) {
+            return new OneMeasurementHistogram(name, props);
+        }
+        return new OneMeasurementTimeSeries(name, props);
+    }
+
+    static MeasurementsExporter nullExporter() {
+        return new TextMeasurementsExporter(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    @Setup
+    public void setup() {
+        Properties props = new Properties();
+        props.setProperty("measurementtype", measurementtype);
+        measurements = new Measurements(props);
+        read = create(measurementtype, "READ", props);
+        exporter = nullExporter();
+        //the exports have something to export from the start
+        Latencies latencies = new Latencies();
+        latencies.setup();
+        for (int i = 0; i < 100000; i++) {
+            measurements.measure("READ", latencies.next());
+            measurements.reportReturnCode("READ", 0);
+            read.measure(latencies.next());
+        }
+    }
+
+    /**
+     * The whole path of DBWrapper: look up the measurement of the operation and record the latency.
+     */
+    @Benchmark
+    public void measure(Latencies latencies) {
+        measurements.measure("READ", latencies.next());
+    }
+
+    @Benchmark
+    public void reportReturnCode() {
+        measurements.reportReturnCode("READ", 0);
+    }
+
+    /**
+     * Only recording the latency, without the lookup.
+     */
+    @Benchmark
+    public void oneMeasurement(Latencies latencies) {
+        read.measure(latencies.next());
+    }
+
+    @Benchmark
+    public Object snapshots() {
+        return measurements.snapshots();
+    }
+
+    @Benchmark
+    public void exportMeasurements() throws IOException {
+        measurements.exportMeasurements(exporter);
+    }
+
+    @Threads(1)
+    public static class Threads1 extends MeasurementBenchmark {
+    }
+
+    @Threads(8)
+    public static class Threads8 extends MeasurementBenchmark {
+    }
+
+    @Threads(64)
+    public static class Threads64 extends MeasurementBenchmark {
+    }
+
+    /**
+     * Client threads recording while the status and export threads read the measurements, as in a run.
+     */
+    @State(Scope.Group)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(1)
+    public static class RecordWhileExporting {
+        @Param({"histogram", "timeseries"})
+        public String measurementtype;
+
+        Measurements measurements;
+        MeasurementsExporter exporter;
+
+        @Setup
+        public void setup() {
+            Properties props = new Properties();
+            props.setProperty("measurementtype", measurementtype);
+            measurements = new Measurements(props);
+            exporter = nullExporter();
+        }
+
+        @Benchmark
+        @Group("run")
+        @GroupThreads(8)
+        public void measure(Latencies latencies) {
+            measurements.measure("READ", latencies.next());
+        }
+
+        @Benchmark
+        @Group("run")
+        @GroupThreads(1)
+        public String summary() {
+            return measurements.getSummary();
+        }
+
+        @Benchmark
+        @Group("run")
+        @GroupThreads(1)
+        public void exportMeasurements() throws IOException {
+            measurements.exportMeasurements(exporter);
+        }
+    }
+}
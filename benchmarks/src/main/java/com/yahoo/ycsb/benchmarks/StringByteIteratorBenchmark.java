@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.benchmarks;
+
+import java.util.HashMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.StringByteIterator;
+
+/**
+ * The conversions between ByteIterators and Strings that the bindings of String based stores call for every read
+ * and write.
+ */
+public class StringByteIteratorBenchmark extends CodecBenchmark {
+    @Benchmark
+    public HashMap<String, String> getStringMap() {
+        return StringByteIterator.getStringMap(values);
+    }
+
+    @Benchmark
+    public HashMap<String, String> putAllAsStrings() {
+        HashMap<String, String> out = new HashMap<String, String>();
+        StringByteIterator.putAllAsStrings(out, values);
+        return out;
+    }
+
+    /**
+     * Also the cost the other codec benchmarks pay for new values.
+     */
+    @Benchmark
+    @Override
+    public HashMap<String, ByteIterator> values() {
+        return super.values();
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.db;
+
+import java.util.HashMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import com.mongodb.DBObject;
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.benchmarks.CodecBenchmark;
+
+/**
+ * The documents MongoDbClient sends and receives: building the document of an insert from the values, which
+ * consumes them, and turning the document of a read into ByteIterators. The driver encodes the document to BSON
+ * on its own, which isn't part of the binding.
+ */
+public class MongoDbCodecBenchmark extends CodecBenchmark {
+    DBObject document;
+
+    @Override
+    protected void prepare() {
+        document = MongoDbClient.toDocument("user6284781860667377211", values());
+    }
+
+    @Benchmark
+    public DBObject toDocument() {
+        return MongoDbClient.toDocument("user6284781860667377211", values());
+    }
+
+    @Benchmark
+    public HashMap<String, ByteIterator> resultify() {
+        return MongoDbClient.resultify(document);
+    }
+}
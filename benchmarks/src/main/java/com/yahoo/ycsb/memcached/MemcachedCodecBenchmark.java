@@ -0,0 +1,51 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.memcached;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.benchmarks.CodecBenchmark;
+
+/**
+ * The JSON documents MemcachedCompatibleClient, and so the memcached and couchbase bindings, store: encoding the
+ * values of an insert or update, and decoding the document of a read.
+ */
+public class MemcachedCodecBenchmark extends CodecBenchmark {
+    String json;
+
+    @Override
+    protected void prepare() throws IOException {
+        json = MemcachedCompatibleClient.toJson(values);
+    }
+
+    @Benchmark
+    public String toJson() throws IOException {
+        return MemcachedCompatibleClient.toJson(values);
+    }
+
+    @Benchmark
+    public HashMap<String, ByteIterator> fromJson() throws IOException {
+        HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+        MemcachedCompatibleClient.fromJson(json, null, result);
+        return result;
+    }
+}
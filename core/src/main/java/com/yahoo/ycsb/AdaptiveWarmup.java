@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.text.DecimalFormat;
+import java.util.LinkedList;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Warms up a transaction phase with its real operation mix until it reaches a steady state: the
+ * throughput, the average latency and the 95th and 99th percentile latencies of the last few windows
+ * all lie within a tolerance of each other. The measured run starts right after, on the same DBs.
+ */
+public class AdaptiveWarmup {
+    /**
+     * Set to true to warm up every transaction phase until it is stable.
+     */
+    public static final String ADAPTIVE_WARMUP_PROPERTY = "adaptivewarmup";
+    public static final String ADAPTIVE_WARMUP_PROPERTY_DEFAULT = "false";
+
+    /**
+     * The length of a window in milliseconds.
+     */
+    public static final String WINDOW_PROPERTY = "warmupwindow";
+    public static final String WINDOW_PROPERTY_DEFAULT = "1000";
+
+    /**
+     * The number of consecutive windows that must agree.
+     */
+    public static final String WINDOWS_PROPERTY = "warmupwindows";
+    public static final String WINDOWS_PROPERTY_DEFAULT = "5";
+
+    /**
+     * The largest relative spread, (max - min) / mean, of each metric over the windows.
+     */
+    public static final String TOLERANCE_PROPERTY = "warmuptolerance";
+    public static final String TOLERANCE_PROPERTY_DEFAULT = "0.05";
+
+    /**
+     * The time in milliseconds after which the warm-up ends even if the run is not stable.
+     */
+    public static final String MAX_TIME_PROPERTY = "warmupmaxtime";
+    public static final String MAX_TIME_PROPERTY_DEFAULT = "300000";
+
+    /**
+     * The metrics of one window.
+     */
+    static class Window {
+        final double throughput;
+        final double average;
+        final int p95;
+        final int p99;
+
+        Window(double throughput, double average, int p95, int p99) {
+            this.throughput = throughput;
+            this.average = average;
+            this.p95 = p95;
+            this.p99 = p99;
+        }
+    }
+
+    private final long window;
+    private final int windows;
+    private final double tolerance;
+    private final long maxtime;
+
+    private final LinkedList<Window> history = new LinkedList<Window>();
+
+    private long runtime;
+    private long operations;
+    private boolean stable;
+
+    public AdaptiveWarmup(Properties props) {
+        window = Long.parseLong(props.getProperty(WINDOW_PROPERTY, WINDOW_PROPERTY_DEFAULT));
+        windows = Integer.parseInt(props.getProperty(WINDOWS_PROPERTY, WINDOWS_PROPERTY_DEFAULT));
+        tolerance = Double.parseDouble(props.getProperty(TOLERANCE_PROPERTY, TOLERANCE_PROPERTY_DEFAULT));
+        maxtime = Long.parseLong(props.getProperty(MAX_TIME_PROPERTY, MAX_TIME_PROPERTY_DEFAULT));
+    }
+
+    public static boolean isEnabled(Properties props) {
+        return Boolean.parseBoolean(props.getProperty(ADAPTIVE_WARMUP_PROPERTY, ADAPTIVE_WARMUP_PROPERTY_DEFAULT));
+    }
+
+    /**
+     * @return how long the warm-up took, in milliseconds.
+     */
+    public long getRuntime() {
+        return runtime;
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    /**
+     * @return false if the warm-up ended because it hit the maximum time.
+     */
+    public boolean isStable() {
+        return stable;
+    }
+
+    /**
+     * Add the metrics of a window.
+     *
+     * @return true if the last windows are stable.
+     */
+    boolean addWindow(Window w) {
+        history.addLast(w);
+        if (history.size() > windows) {
+            history.removeFirst();
+        }
+        if (history.size() < windows) {
+            return false;
+        }
+
+        double mintp = Double.MAX_VALUE, maxtp = 0, sumtp = 0;
+        double minavg = Double.MAX_VALUE, maxavg = 0, sumavg = 0;
+        int min95 = Integer.MAX_VALUE, max95 = Integer.MIN_VALUE, sum95 = 0;
+        int min99 = Integer.MAX_VALUE, max99 = Integer.MIN_VALUE, sum99 = 0;
+        for (Window h : history) {
+            //a percentile in the overflow bucket is never stable
+            if ((h.p95 < 0) || (h.p99 < 0)) {
+                return false;
+            }
+            mintp = Math.min(mintp, h.throughput);
+            maxtp = Math.max(maxtp, h.throughput);
+            sumtp += h.throughput;
+            minavg = Math.min(minavg, h.average);
+            maxavg = Math.max(maxavg, h.average);
+            sumavg += h.average;
+            min95 = Math.min(min95, h.p95);
+            max95 = Math.max(max95, h.p95);
+            sum95 += h.p95;
+            min99 = Math.min(min99, h.p99);
+            max99 = Math.max(max99, h.p99);
+            sum99 += h.p99;
+        }
+        int n = history.size();
+        //latencies are measured in us and the percentiles in 1 ms buckets, so they may always differ by one unit
+        return (maxtp - mintp <= tolerance * sumtp / n)
+                && (maxavg - minavg <= Math.max(1, tolerance * sumavg / n))
+                && (max95 - min95 <= Math.max(1, tolerance * sum95 / n))
+                && (max99 - min99 <= Math.max(1, tolerance * sum99 / n));
+    }
+
+    /**
+     * Run the given client threads until they are stable or the maximum time has elapsed, then stop them
+     * and wait for them to finish. Their measurements are recorded in the current phase of
+     * {@link Measurements}, which the caller resets afterwards.
+     *
+     * @param threads the client threads, not started yet
+     * @param label   the label for the status output
+     * @param status  true to show the metrics of every window
+     */
+    public void run(Vector<Thread> threads, String label, boolean status) {
+        System.err.println("Warming up until stable (windows of " + window + " ms, tolerance " + tolerance + ")...");
+
+        //discard the intervals recorded before the warm-up
+        Measurements.getMeasurements().takeIntervals();
+
+        long st = System.currentTimeMillis();
+        for (Thread t : threads) {
+            t.start();
+        }
+
+        DecimalFormat d = new DecimalFormat("#.##");
+        long lastops = 0;
+        long lasten = st;
+        while (true) {
+            try {
+                Thread.sleep(window);
+            } catch (InterruptedException e) {
+                // do nothing.
+            }
+
+            long en = System.currentTimeMillis();
+            long ops = 0;
+            boolean alldone = true;
+            for (Thread t : threads) {
+                ops += ((ClientThread) t).getOpsDone();
+                if (t.isAlive()) {
+                    alldone = false;
+                }
+            }
+
+            LatencyHistogram latency = new LatencyHistogram(0);
+            for (LatencyHistogram h : Measurements.getMeasurements().takeIntervals().values()) {
+                latency.add(h);
+            }
+            double throughput = 1000.0 * (ops - lastops) / Math.max(1, en - lasten);
+            double average = (latency.getOperations() > 0) ? ((double) latency.getTotalLatency()) / latency.getOperations() : 0;
+            Window w = new Window(throughput, average, latency.percentile(0.95), latency.percentile(0.99));
+            lastops = ops;
+            lasten = en;
+
+            if (status) {
+                System.err.println(label + " warm-up " + ((en - st) / 1000) + " sec: " + d.format(throughput) + " current ops/sec; "
+                        + "avg=" + d.format(average) + "us p95=" + w.p95 + "ms p99=" + w.p99 + "ms");
+            }
+
+            stable = addWindow(w);
+            if (stable || alldone || (en - st >= maxtime)) {
+                break;
+            }
+        }
+
+        for (Thread t : threads) {
+            ((ClientThread) t).requestStop();
+        }
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                // do nothing.
+            }
+        }
+
+        runtime = System.currentTimeMillis() - st;
+        for (Thread t : threads) {
+            operations += ((ClientThread) t).getOpsDone();
+        }
+        if (stable) {
+            System.err.println("Warm-up stable after " + runtime + " ms, " + operations + " operations.");
+        } else {
+            System.err.println("Warm-up not stable after " + runtime + " ms, " + operations + " operations. Starting the measurements anyway.");
+        }
+    }
+}
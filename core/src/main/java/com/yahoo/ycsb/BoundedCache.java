@@ -0,0 +1,414 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache with a bounded number of entries, for many threads: the keys are spread over segments with a lock
+ * each, and every segment evicts its own entries, either the least recently used one, or with W-TinyLFU, which
+ * keeps the entries that are used most often in the recent past. W-TinyLFU admits a new entry to the main part
+ * of the segment only if it is used more often than the entry it would evict, as counted by a small sketch of
+ * the frequencies of all the keys, which keeps frequent keys cached under scans and skewed workloads. New
+ * entries first go to a small LRU window, so bursts of a new key aren't evicted before they are counted.
+ */
+public class BoundedCache<K, V> {
+    public static final String LRU = "lru";
+    public static final String TINYLFU = "tinylfu";
+
+    static final int SEGMENTS = 16;
+
+    /**
+     * Told of every value that leaves the cache: replaced, removed, evicted, or not admitted by W-TinyLFU. It is
+     * called with the lock of a segment held.
+     */
+    public interface RemovalListener<V> {
+        void removed(V value);
+    }
+
+    final Segment<K, V>[] segments;
+
+    /**
+     * @param capacity The number of entries the cache holds at most.
+     * @param eviction {@link #LRU} or {@link #TINYLFU}.
+     */
+    public BoundedCache(int capacity, String eviction) {
+        this(capacity, eviction, null);
+    }
+
+    /**
+     * @param capacity The number of entries the cache holds at most.
+     * @param eviction {@link #LRU} or {@link #TINYLFU}.
+     * @param listener Told of the values that leave the cache, or null.
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedCache(int capacity, String eviction, RemovalListener<V> listener) {
+        int count = Math.max(1, Math.min(SEGMENTS, capacity / 64));
+        segments = (Segment<K, V>[]) new Segment<?, ?>[count];
+        for (int i = 0; i < count; i++) {
+            //the first segments take the rest of the division
+            int segmentcapacity = capacity / count + ((i < capacity % count) ? 1 : 0);
+            if (eviction.equals(LRU)) {
+                segments[i] = new LruSegment<K, V>(segmentcapacity);
+            } else if (eviction.equals(TINYLFU)) {
+                segments[i] = new TinyLfuSegment<K, V>(segmentcapacity);
+            } else {
+                throw new IllegalArgumentException("Unknown eviction \"" + eviction + "\"");
+            }
+            segments[i].listener = listener;
+        }
+    }
+
+    Segment<K, V> segment(K key) {
+        long hash = SplitMix64.mix64(key.hashCode());
+        return segments[(int) ((hash >>> 32) % segments.length)];
+    }
+
+    /**
+     * Return the value of the key, or null if it isn't cached.
+     */
+    public V get(K key) {
+        return segment(key).get(key);
+    }
+
+    /**
+     * Return the value of the key, or null if it isn't cached, without counting it as a use of the key.
+     */
+    public V peek(K key) {
+        return segment(key).peek(key);
+    }
+
+    /**
+     * Cache the value of the key, possibly evicting another one.
+     */
+    public void put(K key, V value) {
+        segment(key).put(key, value);
+    }
+
+    public void remove(K key) {
+        segment(key).remove(key);
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void clear() {
+        for (Segment<K, V> s : segments) {
+            s.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> s : segments) {
+            size += s.size();
+        }
+        return size;
+    }
+
+    /**
+     * Return the number of entries evicted to make room for others.
+     */
+    public long evictions() {
+        long evictions = 0;
+        for (Segment<K, V> s : segments) {
+            evictions += s.evictions();
+        }
+        return evictions;
+    }
+
+    abstract static class Segment<K, V> {
+        long evictions = 0;
+        RemovalListener<V> listener;
+
+        abstract V get(K key);
+
+        abstract V peek(K key);
+
+        abstract void put(K key, V value);
+
+        abstract void remove(K key);
+
+        abstract int size();
+
+        abstract void clear();
+
+        synchronized long evictions() {
+            return evictions;
+        }
+
+        void removed(V value) {
+            if ((listener != null) && (value != null)) {
+                listener.removed(value);
+            }
+        }
+
+        void replaced(V old, V value) {
+            if (old != value) {
+                removed(old);
+            }
+        }
+
+        void removeAll(LinkedHashMap<K, V> map) {
+            for (V value : map.values()) {
+                removed(value);
+            }
+            map.clear();
+        }
+    }
+
+    /**
+     * Return a map that iterates from the least to the most recently used entry, as long as the uses go through
+     * {@link #touch} and {@link #putLast}. Its get doesn't count as a use, unlike with an access ordered map.
+     */
+    static <K, V> LinkedHashMap<K, V> recencyOrdered() {
+        return new LinkedHashMap<K, V>();
+    }
+
+    /**
+     * Move the entry of the key to the most recently used end, and return its value, or null if there is none.
+     */
+    static <K, V> V touch(LinkedHashMap<K, V> map, K key) {
+        V value = map.remove(key);
+        if (value != null) {
+            map.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Put the entry at the most recently used end, and return the value it replaced, or null if there was none.
+     */
+    static <K, V> V putLast(LinkedHashMap<K, V> map, K key, V value) {
+        V old = map.remove(key);
+        map.put(key, value);
+        return old;
+    }
+
+    static <K, V> Map.Entry<K, V> eldest(LinkedHashMap<K, V> map) {
+        Iterator<Map.Entry<K, V>> it = map.entrySet().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    static class LruSegment<K, V> extends Segment<K, V> {
+        final int capacity;
+        final LinkedHashMap<K, V> map = recencyOrdered();
+
+        LruSegment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized V get(K key) {
+            return touch(map, key);
+        }
+
+        synchronized V peek(K key) {
+            return map.get(key);
+        }
+
+        synchronized void put(K key, V value) {
+            replaced(putLast(map, key, value), value);
+            if (map.size() > capacity) {
+                removed(map.remove(eldest(map).getKey()));
+                evictions++;
+            }
+        }
+
+        synchronized void remove(K key) {
+            removed(map.remove(key));
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized void clear() {
+            removeAll(map);
+        }
+    }
+
+    /**
+     * W-TinyLFU: a window of 1% of the entries, and a main part split into a probation and a protected part.
+     * Entries evicted from the window compete with the eldest entry of probation by their frequency, and
+     * entries used again in probation move to the protected part, from which the eldest fall back to probation.
+     */
+    static class TinyLfuSegment<K, V> extends Segment<K, V> {
+        final int windowcapacity;
+        final int maincapacity;
+        final int protectedcapacity;
+        final LinkedHashMap<K, V> window = recencyOrdered();
+        final LinkedHashMap<K, V> probation = recencyOrdered();
+        final LinkedHashMap<K, V> protect = recencyOrdered();
+        final FrequencySketch sketch;
+
+        TinyLfuSegment(int capacity) {
+            windowcapacity = Math.max(1, capacity / 100);
+            maincapacity = Math.max(0, capacity - windowcapacity);
+            protectedcapacity = maincapacity * 8 / 10;
+            sketch = new FrequencySketch(capacity);
+        }
+
+        synchronized V get(K key) {
+            sketch.increment(key);
+            V value = touch(window, key);
+            if (value != null) {
+                return value;
+            }
+            value = touch(protect, key);
+            if (value != null) {
+                return value;
+            }
+            value = probation.remove(key);
+            if (value != null) {
+                promote(key, value);
+            }
+            return value;
+        }
+
+        synchronized V peek(K key) {
+            V value = window.get(key);
+            if (value == null) {
+                value = protect.get(key);
+            }
+            if (value == null) {
+                value = probation.get(key);
+            }
+            return value;
+        }
+
+        void promote(K key, V value) {
+            protect.put(key, value);
+            if (protect.size() > protectedcapacity) {
+                Map.Entry<K, V> demoted = eldest(protect);
+                protect.remove(demoted.getKey());
+                probation.put(demoted.getKey(), demoted.getValue());
+            }
+        }
+
+        synchronized void put(K key, V value) {
+            sketch.increment(key);
+            if (window.containsKey(key)) {
+                replaced(putLast(window, key, value), value);
+                return;
+            }
+            if (protect.containsKey(key)) {
+                replaced(putLast(protect, key, value), value);
+                return;
+            }
+            V old = probation.remove(key);
+            if (old != null) {
+                replaced(old, value);
+                promote(key, value);
+                return;
+            }
+            window.put(key, value);
+            if (window.size() <= windowcapacity) {
+                return;
+            }
+            Map.Entry<K, V> candidate = eldest(window);
+            window.remove(candidate.getKey());
+            if (probation.size() + protect.size() < maincapacity) {
+                probation.put(candidate.getKey(), candidate.getValue());
+                return;
+            }
+            Map.Entry<K, V> victim = eldest(probation.isEmpty() ? protect : probation);
+            evictions++;
+            if ((victim != null) && (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey()))) {
+                removed(victim.getValue());
+                probation.remove(victim.getKey());
+                protect.remove(victim.getKey());
+                probation.put(candidate.getKey(), candidate.getValue());
+            } else {
+                removed(candidate.getValue());
+            }
+        }
+
+        synchronized void remove(K key) {
+            V value = window.remove(key);
+            if (value == null) {
+                value = protect.remove(key);
+            }
+            if (value == null) {
+                value = probation.remove(key);
+            }
+            removed(value);
+        }
+
+        synchronized int size() {
+            return window.size() + probation.size() + protect.size();
+        }
+
+        synchronized void clear() {
+            removeAll(window);
+            removeAll(probation);
+            removeAll(protect);
+        }
+    }
+
+    /**
+     * Approximate counts of the recent uses of the keys: four rows of 4-bit counters, indexed by a different
+     * hash of the key each, where the count of a key is the lowest of its counters. All counts are halved once
+     * there were ten uses per entry of the cache, so the counts follow the recent past.
+     */
+    static class FrequencySketch {
+        static final long[] SEEDS = { 0x97cb3127L, 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL };
+
+        final byte[][] rows;
+        final int mask;
+        final int samplesize;
+        int additions = 0;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity - 1) * 2);
+            rows = new byte[SEEDS.length][width];
+            mask = width - 1;
+            samplesize = 10 * Math.max(1, capacity);
+        }
+
+        int index(Object key, int row) {
+            return (int) SplitMix64.mix64(key.hashCode() + SEEDS[row]) & mask;
+        }
+
+        void increment(Object key) {
+            for (int row = 0; row < rows.length; row++) {
+                int i = index(key, row);
+                if (rows[row][i] < 15) {
+                    rows[row][i]++;
+                }
+            }
+            if (++additions >= samplesize) {
+                for (byte[] r : rows) {
+                    for (int i = 0; i < r.length; i++) {
+                        r[i] >>= 1;
+                    }
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(Object key) {
+            int frequency = 15;
+            for (int row = 0; row < rows.length; row++) {
+                frequency = Math.min(frequency, rows[row][index(key, row)]);
+            }
+            return frequency;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Decorator that puts a cache in front of another DB, as an application does with a cache-aside deployment:
+ * reads of all the fields of a record are answered from the cache, and the misses read the record from the DB
+ * and cache it. The cache holds cachedb.size records, shared by all the client threads, and evicts with
+ * cachedb.eviction, see {@link BoundedCache}. A write goes to the DB, then either updates the cached record,
+ * with cachedb.writepolicy=writethrough, or removes it, with invalidate. Scans always go to the DB.
+ * <p>
+ * Besides READ and the other operations of DBWrapper, the reads are measured as CACHE-HIT-READ or
+ * CACHE-MISS-READ, and the time in the DB as BACKEND-&lt;operation&gt;, so the hit ratio of a phase is the
+ * number of CACHE-HIT-READ operations over READ. The hit ratio and evictions of the whole run are printed when
+ * the last DB is cleaned up.
+ * </p>
+ */
+public class CacheDB extends DBDecorator {
+    /**
+     * The class name of the DB to cache.
+     */
+    public static final String DB_PROPERTY = "cachedb.db";
+
+    /**
+     * The number of records the cache holds.
+     */
+    public static final String SIZE = "cachedb.size";
+    public static final String SIZE_DEFAULT = "10000";
+
+    /**
+     * lru or tinylfu.
+     */
+    public static final String EVICTION = "cachedb.eviction";
+    public static final String EVICTION_DEFAULT = BoundedCache.LRU;
+
+    /**
+     * writethrough to update the cached record on a write, invalidate to remove it.
+     */
+    public static final String WRITE_POLICY = "cachedb.writepolicy";
+    public static final String WRITE_POLICY_DEFAULT = "invalidate";
+
+    /**
+     * Set to true to keep the cached records outside the Java heap, in the {@link OffHeapArena}.
+     */
+    public static final String OFF_HEAP = "cachedb.offheap";
+    public static final String OFF_HEAP_DEFAULT = "false";
+
+    static BoundedCache<String, Object> cache;
+    static final AtomicLong hits = new AtomicLong();
+    static final AtomicLong misses = new AtomicLong();
+    static long start;
+
+    Measurements _measurements;
+    BoundedCache<String, Object> _cache;
+    boolean writethrough;
+    boolean offheap;
+
+    protected String dbProperty() {
+        return DB_PROPERTY;
+    }
+
+    /**
+     * Return the cache shared by all the instances, creating it for the first.
+     */
+    static synchronized BoundedCache<String, Object> cache(Properties p) {
+        if (cache == null) {
+            int size = Integer.parseInt(p.getProperty(SIZE, SIZE_DEFAULT));
+            //the off-heap records are freed once they leave the cache
+            cache = new BoundedCache<String, Object>(size, p.getProperty(EVICTION, EVICTION_DEFAULT),
+                    new BoundedCache.RemovalListener<Object>() {
+                        public void removed(Object value) {
+                            MemoryDB.release(value);
+                        }
+                    });
+            hits.set(0);
+            misses.set(0);
+            start = System.currentTimeMillis();
+        }
+        return cache;
+    }
+
+    public void init() throws DBException {
+        Properties p = getProperties();
+        String policy = p.getProperty(WRITE_POLICY, WRITE_POLICY_DEFAULT);
+        if (!policy.equals("writethrough") && !policy.equals("invalidate")) {
+            throw new DBException("Unknown " + WRITE_POLICY + " \"" + policy + "\"");
+        }
+        writethrough = policy.equals("writethrough");
+        offheap = Boolean.parseBoolean(p.getProperty(OFF_HEAP, OFF_HEAP_DEFAULT));
+        try {
+            _cache = cache(p);
+        } catch (IllegalArgumentException e) {
+            throw new DBException(e);
+        }
+        _measurements = Measurements.getMeasurements();
+        super.init();
+    }
+
+    public void cleanupGlobal() throws DBException {
+        synchronized (CacheDB.class) {
+            if (cache == null) {
+                return;
+            }
+            long h = hits.get();
+            long m = misses.get();
+            long evictions = cache.evictions();
+            double seconds = Math.max(1, System.currentTimeMillis() - start) / 1000.0;
+            DecimalFormat d = new DecimalFormat("#.####");
+            System.err.println("Cache: hit ratio " + d.format((h + m > 0) ? (double) h / (h + m) : 0) + " (" + h
+                    + " hits, " + m + " misses), " + evictions + " evictions (" + d.format(evictions / seconds)
+                    + "/sec), " + cache.size() + " records cached");
+            cache.clear();
+            cache = null;
+        }
+    }
+
+    static String cacheKey(String table, String key) {
+        return table + ":" + key;
+    }
+
+    void measure(String metric, long st) {
+        _measurements.measure(metric, (int) ((System.nanoTime() - st) / 1000));
+    }
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+        long st = System.nanoTime();
+        String k = cacheKey(table, key);
+        ByteBuffer record = MemoryDB.load(_cache.get(k));
+        if (record != null) {
+            MemoryDB.decode(record, field, result);
+            hits.incrementAndGet();
+            measure("CACHE-HIT-READ", st);
+            return 0;
+        }
+        misses.incrementAndGet();
+        long bst = System.nanoTime();
+        int res = _db.read(table, key, field, result);
+        measure("BACKEND-READ", bst);
+        //only whole records are cached
+        if (res == 0 && field == null) {
+            HashMap<String, byte[]> arrays = toArrays(result);
+            result.putAll(toIterators(arrays));
+            _cache.put(k, MemoryDB.store(arrays, offheap));
+        }
+        measure("CACHE-MISS-READ", st);
+        return res;
+    }
+
+    public int scan(String table, String startkey, int recordcount, String field, Vector<HashMap<String, ByteIterator>> result) {
+        long st = System.nanoTime();
+        int res = _db.scan(table, startkey, recordcount, field, result);
+        measure("BACKEND-SCAN", st);
+        return res;
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+        String k = cacheKey(table, key);
+        HashMap<String, byte[]> arrays = null;
+        if (writethrough) {
+            arrays = toArrays(values);
+            values = toIterators(arrays);
+        }
+        long st = System.nanoTime();
+        int res = _db.update(table, key, values);
+        measure("BACKEND-UPDATE", st);
+        if (!writethrough || res != 0) {
+            _cache.remove(k);
+            return res;
+        }
+        //the put counts the use of the record, not the lookup of what to merge it with
+        ByteBuffer record = MemoryDB.load(_cache.peek(k));
+        if (record != null) {
+            HashMap<String, ByteIterator> fields = new HashMap<String, ByteIterator>();
+            MemoryDB.decode(record, null, fields);
+            HashMap<String, byte[]> merged = toArrays(fields);
+            merged.putAll(arrays);
+            _cache.put(k, MemoryDB.store(merged, offheap));
+        }
+        return res;
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+        String k = cacheKey(table, key);
+        HashMap<String, byte[]> arrays = null;
+        if (writethrough) {
+            arrays = toArrays(values);
+            values = toIterators(arrays);
+        }
+        long st = System.nanoTime();
+        int res = _db.insert(table, key, values);
+        measure("BACKEND-INSERT", st);
+        if (writethrough && res == 0) {
+            _cache.put(k, MemoryDB.store(arrays, offheap));
+        } else {
+            _cache.remove(k);
+        }
+        return res;
+    }
+
+    public int delete(String table, String key) {
+        long st = System.nanoTime();
+        int res = _db.delete(table, key);
+        measure("BACKEND-DELETE", st);
+        _cache.remove(cacheKey(table, key));
+        return res;
+    }
+}
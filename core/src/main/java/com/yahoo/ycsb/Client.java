@@ -27,176 +27,10 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.text.DecimalFormat;
-import java.text.SimpleDateFormat;
 import java.util.Enumeration;
 import java.util.Properties;
 import java.util.Vector;
-
-
-/**
- * A thread to periodically show the status of the experiment, to reassure you that progress is being made.
- *
- * @author cooperb
- */
-class StatusThread extends Thread {
-    Vector<Thread> _threads;
-    String _label;
-    boolean _standardstatus;
-
-    /**
-     * The interval for reporting status.
-     */
-    public static final long sleeptime = 2000;
-
-    public StatusThread(Vector<Thread> threads, String label, boolean standardstatus) {
-        _threads = threads;
-        _label = label;
-        _standardstatus = standardstatus;
-    }
-
-    /**
-     * Run and periodically report status.
-     */
-    public void run() {
-        long st = System.currentTimeMillis();
-
-        long lasten = st;
-        long lasttotalops = 0;
-
-        boolean alldone;
-        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss:SSS");
-
-        do {
-            alldone = true;
-
-            int totalops = 0;
-
-            //terminate this thread when all the worker threads are done
-            for (Thread t : _threads) {
-                if (t.getState() != Thread.State.TERMINATED) {
-                    alldone = false;
-                }
-
-                ClientThread ct = (ClientThread) t;
-                totalops += ct.getOpsDone();
-            }
-
-            long en = System.currentTimeMillis();
-
-            long interval = en - st;
-            //double throughput=1000.0*((double)totalops)/((double)interval);
-
-            double curthroughput = 1000.0 * (((double) (totalops - lasttotalops)) / ((double) (en - lasten)));
-
-            lasttotalops = totalops;
-            lasten = en;
-
-            DecimalFormat d = new DecimalFormat("#.##");
-
-            if (totalops == 0) {
-                System.err.println(_label + " " + (interval / 1000) + " sec: " + totalops + " operations; " + Measurements.getMeasurements().getSummary());
-            } else {
-                System.err.println(_label + " " + (interval / 1000) + " sec: " + totalops + " operations; " + d.format(curthroughput) + " current ops/sec; " + Measurements.getMeasurements().getSummary());
-            }
-
-            if (_standardstatus) {
-                if (totalops == 0) {
-                    System.out.println(_label + " " + (interval / 1000) + " sec: " + totalops + " operations; " + Measurements.getMeasurements().getSummary());
-                } else {
-                    System.out.println(_label + " " + (interval / 1000) + " sec: " + totalops + " operations; " + d.format(curthroughput) + " current ops/sec; " + Measurements.getMeasurements().getSummary());
-                }
-            }
-
-            try {
-                sleep(sleeptime);
-            } catch (InterruptedException e) {
-                //do nothing
-            }
-
-        }
-        while (!alldone);
-    }
-}
-
-/**
- * A thread to periodically export measurements by exporter.
- */
-class ExportMeasurementsThread extends Thread {
-    private Vector<Thread> _threads;
-    private MeasurementsExporter exporter;
-    /**
-     * The interval for exporting measurements.
-     */
-    private long sleeptime;
-
-    public ExportMeasurementsThread(Vector<Thread> threads, MeasurementsExporter exporter, long exportmeasurementsinterval) throws FileNotFoundException
-    {
-        _threads = threads;
-        this.exporter = exporter;
-        this.sleeptime = exportmeasurementsinterval;
-    }
-
-    public void exportOverall() {
-        try {
-            Measurements.getMeasurements().exportMeasurementsFinal(exporter);
-            long opcount = 0;
-            long runtime = 0;
-            long recon = 0;
-            for (Thread t : _threads) {
-                ClientThread ct = (ClientThread) t;
-                opcount += ct.getOpsDone();
-                if (runtime < ct.getRuntime()) {
-                    runtime = ct.getRuntime();
-                }
-                recon += ct.getReconnections();
-            }
-            exporter.write("OVERALL", "Reconnections", recon);
-            exporter.write("OVERALL", "RunTime(ms)", runtime);
-            exporter.write("OVERALL", "Operations", opcount);
-            double throughput = 1000.0 * ((double) opcount) / ((double) runtime);
-            exporter.write("OVERALL", "Throughput(ops/sec)", throughput);
-            exporter.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-    }
-
-    /**
-     * Run and periodically report export measurements to file.
-     */
-    public void run() {
-        boolean alldone;
-        do {
-            try {
-                sleep(sleeptime);
-            } catch (InterruptedException e) {
-                //do nothing
-            }
-
-            alldone = true;
-
-            //terminate this thread when all the worker threads are done
-            for (Thread t : _threads) {
-                if (t.getState() != Thread.State.TERMINATED) {
-                    alldone = false;
-                }
-            }
-
-            try {
-                Measurements.getMeasurements().exportMeasurementsPart(exporter);
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        } while (!alldone);
-        exportOverall();
-    }
-}
-
-
-interface OperationHandler {
-    boolean doOperation(DB _db, Object _workloadstate);
-}
+import java.util.concurrent.CountDownLatch;
 
 class WarmupThread extends ClientThread {
 
@@ -253,183 +87,6 @@ class WarmupThread extends ClientThread {
     }
 }
 
-/**
- * A thread for exporting statistics to the file in runtime.
- */
-class ClientThread extends Thread {
-    DB _db;
-    boolean _dotransactions;
-    Workload _workload;
-    int _opcount;
-    double _target;
-    double reconnectionthroughput;
-    long reconncetiontime;
-
-    int _opsdone;
-    Object _workloadstate;
-    Properties _props;
-
-    long reconnectioncounter;
-    long runtime;
-
-    private static final double CHECK_THROUGHPUT_INTERVAL = 500; // in milliseconds
-
-    public static final String RECONNECTION_THROUGHTPUT_PROPERTY = "reconnectionthroughput";
-    public static final String RECONNECTION_THROUGHTPUT_DEFAULT = "0";
-    public static final String RECONNECTION_TIME_PROPERTY = "reconnectiontime";
-    public static final String RECONNECTION_TIME_DEFAULT = "0";
-
-    /**
-     * Constructor.
-     *
-     * @param db                   the DB implementation to use
-     * @param dotransactions       true to do transactions, false to insert data
-     * @param workload             the workload to use
-     * @param props                the properties defining the experiment
-     * @param opcount              the number of operations (transactions or inserts) to do
-     * @param targetperthreadperms target number of operations per thread per ms
-     */
-    public ClientThread(DB db, boolean dotransactions, Workload workload, Properties props, int opcount, double targetperthreadperms) {
-        _db = db;
-        _dotransactions = dotransactions;
-        _workload = workload;
-        _opcount = opcount;
-        _opsdone = 0;
-        _target = targetperthreadperms;
-        _props = props;
-        reconnectioncounter = 0;
-        this.reconnectionthroughput = Double.parseDouble(props.getProperty(RECONNECTION_THROUGHTPUT_PROPERTY, RECONNECTION_THROUGHTPUT_DEFAULT)) / 1000.0;
-        this.reconncetiontime = Long.parseLong(props.getProperty(RECONNECTION_TIME_PROPERTY, RECONNECTION_TIME_DEFAULT));
-    }
-
-    public int getOpsDone() {
-        return _opsdone;
-    }
-
-    public long getRuntime() {
-        return runtime;
-    }
-
-    public long getReconnections() {
-        return reconnectioncounter;
-    }
-
-    public void run() {
-        try {
-            _db.init();
-        } catch (DBException e) {
-            //TODO make error logging level configurable
-            e.printStackTrace();
-            return;
-        }
-
-        try {
-            _workloadstate = _workload.initThread(_props);
-        } catch (WorkloadException e) {
-            e.printStackTrace();
-            return;
-        }
-
-        //spread the thread operations out so they don't all hit the DB at the same time
-        try {
-            //GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
-            //and the sleep() doesn't make sense for granularities < 1 ms anyway
-            if ((_target > 0) && (_target <= 1.0)) {
-                sleep(Utils.random().nextInt((int) (1.0 / _target)));
-            }
-        } catch (InterruptedException e) {
-            // do nothing.
-        }
-
-        try {
-            if (_dotransactions) {
-                run(new OperationHandler() {
-                    @Override
-                    public boolean doOperation(DB db, Object workloadstate) {
-                        return _workload.doTransaction(db, workloadstate);
-                    }
-                });
-            } else {
-                run(new OperationHandler() {
-                    @Override
-                    public boolean doOperation(DB db, Object workloadstate) {
-                        return _workload.doInsert(db, workloadstate);
-                    }
-                });
-            }
-
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        try {
-            _db.cleanup();
-        } catch (DBException e) {
-            e.printStackTrace();
-        }
-    }
-
-    protected void run(OperationHandler handler) {
-        boolean isStartReconnectionTimer = true;
-        long start_time = System.currentTimeMillis();
-        long interval_time = start_time;
-        long reconnection_throughput_time = 0;
-        long interval_ops = 0;
-        while (((_opcount == 0) || (_opsdone < _opcount)) && !_workload.isStopRequested()) {
-            long current_time = System.currentTimeMillis();
-            if (current_time - interval_time > CHECK_THROUGHPUT_INTERVAL) {
-                //reconnect to the database if low throughput
-                double throughput = interval_ops / ((double) current_time - interval_time);
-                if (throughput < reconnectionthroughput) {
-                    if (isStartReconnectionTimer) {
-                        reconnection_throughput_time = System.currentTimeMillis();
-                        isStartReconnectionTimer = false;
-                    } else {
-                        if (current_time - reconnection_throughput_time > reconncetiontime) {
-                            try {
-                                System.out.println("Reconnecting to the DB...");
-                                _db.reinit();
-                                reconnectioncounter++;
-                            } catch (Exception e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    }
-                } else {
-                    isStartReconnectionTimer = true;
-                }
-                interval_time = current_time;
-                interval_ops = 0;
-            }
-
-            if (!handler.doOperation(_db, _workloadstate)) {
-                break;
-            }
-
-            interval_ops++;
-            _opsdone++;
-
-            //throttle the operations
-            if (_target > 0) {
-                //this is more accurate than other throttling approaches we have tried,
-                //like sleeping for (1/target throughput)-operation latency,
-                //because it smooths timing inaccuracies (from sleep() taking an int,
-                //current time in millis) over many operations
-                //while (System.currentTimeMillis() - interval_time < (interval_ops / _target)) {
-                while (_target < interval_ops / ((double) System.currentTimeMillis() - interval_time)) {
-                    try {
-                        sleep(1);
-                    } catch (InterruptedException e) {
-                        // do nothing.
-                    }
-                }
-            }
-            runtime = System.currentTimeMillis() - start_time;
-        }
-    }
-}
-
-
 /**
  * Main class for executing YCSB.
  */
@@ -449,11 +106,21 @@ public class Client {
      */
     public static final String INSERT_COUNT_PROPERTY = "insertcount";
 
+    /**
+     * Set by the client for the workload: true if the phase does transactions, false if it inserts data.
+     */
+    public static final String DO_TRANSACTIONS_PROPERTY = "dotransactions";
+
     /**
      * The maximum amount of time (in seconds) for which the benchmark will be run.
      */
     public static final String MAX_EXECUTION_TIME = "maxexecutiontime";
 
+    /**
+     * The export thread of the running phase, exported by the shutdown hook if the client is stopped early.
+     */
+    private static volatile ExportMeasurementsThread currentexport = null;
+
     public static void usageMessage() {
         System.out.println("Usage: java com.yahoo.ycsb.Client [options]");
         System.out.println("Options:");
@@ -479,6 +146,14 @@ public class Client {
         System.out.println("To run the transaction phase from multiple servers, start a separate client on each.");
         System.out.println("To run the load phase from multiple servers, start a separate client on each; additionally,");
         System.out.println("use the \"insertcount\" and \"insertstart\" properties to divide up the records to be inserted");
+        System.out.println("");
+        System.out.println("To run several phases in one JVM, list them in the \"" + Phase.PHASES_PROPERTY + "\" property (e.g. load,a,b) and");
+        System.out.println("set \"phase.<name>.propertyfile\", \"phase.<name>.mode\" (load, warmup or run) or any other");
+        System.out.println("\"phase.<name>.<property>\" to configure each phase; -load and -t are then ignored");
+        System.out.println("");
+        System.out.println("To coordinate clients on several servers, start one with \"" + Coordinator.ROLE_PROPERTY + "=controller\" and");
+        System.out.println("\"" + Coordinator.WORKERS_PROPERTY + "=<n>\", and the others with \"" + Coordinator.ROLE_PROPERTY + "=worker\" and");
+        System.out.println("\"" + Coordinator.ADDRESS_PROPERTY + "=<controller host>:<port>\"");
     }
 
     public static boolean checkRequiredProperties(Properties props) {
@@ -537,12 +212,9 @@ public class Client {
 
     @SuppressWarnings("unchecked")
     public static void main(String[] args) throws FileNotFoundException {
-        String dbname;
         Properties props = new Properties();
         Properties fileprops = new Properties();
         boolean dotransactions = true;
-        int threadcount = 1;
-        int target = 0;
         boolean status = false;
         String label = "";
 
@@ -658,6 +330,26 @@ public class Client {
         //set up logging
         //BasicConfigurator.configure();
 
+        //the phases apply the command line properties on top of their own property files
+        Vector<Phase> phases = null;
+        Sweep sweep = null;
+        try {
+            Properties merged = new Properties();
+            merged.putAll(fileprops);
+            merged.putAll(props);
+            if (Sweep.isEnabled(merged)) {
+                //every point of the sweep runs as a phase of its own
+                sweep = new Sweep(merged);
+                phases = sweep.getPhases(fileprops, props, dotransactions);
+            } else {
+                phases = Phase.fromProperties(fileprops, props, dotransactions);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            e.printStackTrace(System.out);
+            System.exit(0);
+        }
+
         //overwrite file properties with properties from the command line
 
         //Issue #5 - remove call to stringPropertyNames to make compilable under Java 1.5
@@ -668,16 +360,157 @@ public class Client {
 
         props = fileprops;
 
-        if (!checkRequiredProperties(props)) {
-            System.exit(0);
+        //workers get their workload from the controller
+        String role = props.getProperty(Coordinator.ROLE_PROPERTY, "");
+        if (!role.equals(Coordinator.ROLE_WORKER)) {
+            for (Phase phase : phases) {
+                if (!checkRequiredProperties(phase.getProperties())) {
+                    System.exit(0);
+                }
+            }
+        }
+
+        System.out.println("YCSB Client 0.1");
+        System.out.print("Command line:");
+        for (int i = 0; i < args.length; i++) {
+            System.out.print(" " + args[i]);
+        }
+        System.out.println();
+
+        //set up measurements
+        Measurements.setProperties(props);
+        MarkerListener.start(props);
+        ControlListener.start(props);
+
+        final MeasurementsExporter exporter = getExporter(props);
+
+        //add hook to export measurements on shutdown
+        Thread hook = new Thread() {
+            public void run() {
+                ExportMeasurementsThread current = currentexport;
+                if (current != null) {
+                    current.exportOverall();
+                }
+                try {
+                    exporter.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(hook);
+
+        if (role.equals(Coordinator.ROLE_WORKER)) {
+            CoordinatorWorker.run(props, exporter, label, status);
+        } else if (role.equals(Coordinator.ROLE_CONTROLLER)) {
+            Coordinator.runController(props, phases, exporter, label, status);
+        } else {
+            ThreadDBs dbs = new ThreadDBs();
+
+            for (int i = 0; i < phases.size(); i++) {
+                runPhase(phases.get(i), dbs, exporter, label, status, isLastUse(phases, i), sweep);
+            }
+
+            dbs.cleanup();
+            if (sweep != null) {
+                sweep.report();
+            }
+        }
+
+        try {
+            exporter.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        System.exit(0);
+    }
+
+    /**
+     * @return true if no phase after the i-th one uses the same DB, so its DBs can be cleaned up.
+     */
+    static boolean isLastUse(Vector<Phase> phases, int i) {
+        String key = ThreadDBs.getKey(phases.get(i).getProperties());
+        for (int j = i + 1; j < phases.size(); j++) {
+            if (key.equals(ThreadDBs.getKey(phases.get(j).getProperties()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read with unmeasured DBs of their own before the client threads of the phase start. The DBs share the
+     * global state of their class, such as its connections, with the DBs of the phase.
+     */
+    static void warmup(String dbname, Workload workload, Properties props, int threadcount, int warmupopcount,
+                       int warmupexectime, double targetperthreadperms) {
+        Vector<Thread> warmupThreads = new Vector<Thread>();
+        Vector<DB> dbs = new Vector<DB>();
+        for (int threadid = 0; threadid < threadcount; threadid++) {
+            DB db = null;
+            try {
+                db = DBFactory.rawDB(dbname, props);
+                DB.acquireGlobal(db);
+            } catch (UnknownDBException e) {
+                System.out.println("Unknown DB " + dbname);
+                System.exit(0);
+            } catch (DBException e) {
+                e.printStackTrace();
+                System.exit(0);
+            }
+            dbs.add(db);
+            Thread t = new WarmupThread(db, true, workload, props,
+                    warmupopcount / threadcount, targetperthreadperms, warmupexectime);
+            warmupThreads.add(t);
+        }
+
+        for (Thread t : warmupThreads) {
+            t.start();
+        }
+
+        for (Thread t : warmupThreads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+
+            }
         }
 
+        //after the threads cleaned up their DBs
+        for (DB db : dbs) {
+            try {
+                DB.releaseGlobal(db);
+            } catch (DBException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Run one phase: initialize its workload, run the client threads and export the measurements of the phase.
+     *
+     * @param phase    the phase to run
+     * @param dbs      the DBs of the client threads, shared by all phases
+     * @param exporter the exporter for the measurements
+     * @param label    the label for the status output
+     * @param status   true to show status during the run
+     * @param lastuse  true if no later phase uses the DBs, so the client threads clean them up
+     * @param listener notified when the threads are ready to start and when they are done, or null
+     */
+    static void runPhase(Phase phase, ThreadDBs dbs, MeasurementsExporter exporter, String label, boolean status, boolean lastuse,
+                         PhaseListener listener) {
+        boolean dotransactions = phase.isTransactions();
+        //this client's share of the work, if several clients split it
+        Properties props = ClientPartition.apply(phase.getProperties(), dotransactions);
+        props.setProperty(DO_TRANSACTIONS_PROPERTY, String.valueOf(dotransactions));
+
         long maxExecutionTime = Integer.parseInt(props.getProperty(MAX_EXECUTION_TIME, "0"));
 
         //get number of threads, target and db
-        threadcount = Integer.parseInt(props.getProperty("threadcount", "1"));
-        dbname = props.getProperty("db", "com.yahoo.ycsb.BasicDB");
-        target = Integer.parseInt(props.getProperty("target", "0"));
+        int threadcount = Integer.parseInt(props.getProperty("threadcount", "1"));
+        String dbname = props.getProperty("db", "com.yahoo.ycsb.BasicDB");
+        int target = Integer.parseInt(props.getProperty("target", "0"));
 
         //compute the target throughput
         double targetperthreadperms = -1;
@@ -686,12 +519,11 @@ public class Client {
             targetperthreadperms = targetperthread / 1000.0;
         }
 
-        System.out.println("YCSB Client 0.1");
-        System.out.print("Command line:");
-        for (int i = 0; i < args.length; i++) {
-            System.out.print(" " + args[i]);
+        if (phase.getName().length() > 0) {
+            System.out.println("Phase: " + phase.getName() + " (" + phase.getMode() + ")");
+            System.err.println("Phase: " + phase.getName() + " (" + phase.getMode() + ")");
+            label = (label.length() > 0) ? label + " " + phase.getName() : phase.getName();
         }
-        System.out.println();
         System.err.println("Loading workload...");
 
         //show a warning message that creating the workload is taking a while
@@ -710,8 +542,15 @@ public class Client {
 
         warningthread.start();
 
-        //set up measurements
-        Measurements.setProperties(props);
+        //each phase measures into its own namespace
+        Measurements.getMeasurements().startPhase(phase.getName());
+
+        //with a seed, the workload and the client threads draw the same random numbers in every run of the phase,
+        //whatever the phases before it did
+        if (props.getProperty(Utils.SEED_PROPERTY) != null) {
+            Utils.seed(Long.parseLong(props.getProperty(Utils.SEED_PROPERTY)),
+                    ClientPartition.getClientId(props) + ":" + phase.getName());
+        }
 
         //load the workload
         ClassLoader classLoader = Client.class.getClassLoader();
@@ -755,32 +594,38 @@ public class Client {
         int warmupopcount = Integer.parseInt(props.getProperty(WARMUP_OPERATION_COUNT_PROPERTY, "0"));
         int warmupexectime = Integer.parseInt(props.getProperty(WARMUP_EXECUTION_TIME, "0"));
 
-        if (dotransactions) {
-            Vector<Thread> warmupThreads = new Vector<Thread>();
+        if (dotransactions && (warmupopcount > 0 || warmupexectime > 0)) {
+            warmup(dbname, workload, props, threadcount, warmupopcount, warmupexectime, targetperthreadperms);
+        }
+
+        //the threads reconnect together, when the shared failure detector says so
+        FailureDetector detector = FailureDetector.isEnabled(props) ? new FailureDetector(props) : null;
+
+        //warm up with the real operation mix until the run is stable
+        AdaptiveWarmup adaptivewarmup = null;
+        if (dotransactions && AdaptiveWarmup.isEnabled(props)) {
+            Vector<Thread> warmupthreads = new Vector<Thread>();
             for (int threadid = 0; threadid < threadcount; threadid++) {
                 DB db = null;
                 try {
-                    db = DBFactory.rawDB(dbname, props);
+                    db = dbs.get(threadid, dbname, props);
                 } catch (UnknownDBException e) {
                     System.out.println("Unknown DB " + dbname);
                     System.exit(0);
                 }
-                Thread t = new WarmupThread(db, dotransactions, workload, props,
-                        warmupopcount / threadcount, targetperthreadperms, warmupexectime);
-                warmupThreads.add(t);
+                ClientThread t = new ClientThread(db, dotransactions, workload, props, 0, targetperthreadperms);
+                t.setDBLifecycle(!dbs.isInitialized(threadid), false);
+                t.setFailureDetector(detector);
+                warmupthreads.add(t);
             }
-
-            for (Thread t : warmupThreads) {
-                t.start();
+            adaptivewarmup = new AdaptiveWarmup(props);
+            adaptivewarmup.run(warmupthreads, label, status);
+            for (int threadid = 0; threadid < threadcount; threadid++) {
+                dbs.setInitialized(threadid, ((ClientThread) warmupthreads.get(threadid)).isDBInitialized());
             }
 
-            for (Thread t : warmupThreads) {
-                try {
-                    t.join();
-                } catch (InterruptedException e) {
-
-                }
-            }
+            //discard the measurements of the warm-up
+            Measurements.getMeasurements().startPhase(phase.getName());
         }
 
         Vector<Thread> threads = new Vector<Thread>();
@@ -788,15 +633,25 @@ public class Client {
         for (int threadid = 0; threadid < threadcount; threadid++) {
             DB db = null;
             try {
-                db = DBFactory.wrappedDB(dbname, props);
+                db = dbs.get(threadid, dbname, props);
             } catch (UnknownDBException e) {
                 System.out.println("Unknown DB " + dbname);
                 System.exit(0);
             }
-            Thread t = new ClientThread(db, dotransactions, workload, props, opcount / threadcount, targetperthreadperms);
+            //the threads of a checkpointed load take chunks until there are none left
+            int threadopcount = (!dotransactions && LoadCheckpoint.isEnabled(props)) ? 0 : opcount / threadcount;
+            ClientThread t = new ClientThread(db, dotransactions, workload, props, threadopcount, targetperthreadperms);
+            t.setDBLifecycle(!dbs.isInitialized(threadid), lastuse);
+            t.setFailureDetector(detector);
             threads.add(t);
         }
 
+        //stop once the results are precise enough
+        ConfidenceStop confidencestop = null;
+        if (dotransactions && ConfidenceStop.isEnabled(props)) {
+            confidencestop = new ConfidenceStop(threads, props);
+        }
+
         StatusThread statusthread = null;
 
         if (status) {
@@ -808,59 +663,106 @@ public class Client {
             statusthread.start();
         }
 
-        MeasurementsExporter exporter = getExporter(props);
-
-        long exportmeasurementsinterval = Long.parseLong(props.getProperty(EXPORT_MEASUREMENTS_INTERVAL, "1000"));
+        //the measurements of a warm-up phase are not exported
+        ExportMeasurementsThread exportmeasurementsthread = null;
+        if (phase.isMeasured()) {
+            long exportmeasurementsinterval = Long.parseLong(props.getProperty(EXPORT_MEASUREMENTS_INTERVAL, "1000"));
 
-        final ExportMeasurementsThread exportmeasurementsthread = new ExportMeasurementsThread(threads, exporter, exportmeasurementsinterval);
-        exportmeasurementsthread.start();
-
-        //add hook to export measurements on shutdown
-        Thread hook = new Thread() {
-            public void run() {
-                exportmeasurementsthread.exportOverall();
+            try {
+                exportmeasurementsthread = new ExportMeasurementsThread(threads, exporter, exportmeasurementsinterval);
+            } catch (FileNotFoundException e) {
+                e.printStackTrace();
+                e.printStackTrace(System.out);
+                System.exit(0);
             }
-        };
-        Runtime.getRuntime().addShutdownHook(hook);
+            exportmeasurementsthread.setWarmup(adaptivewarmup);
+            exportmeasurementsthread.setConfidenceStop(confidencestop);
+            currentexport = exportmeasurementsthread;
+            exportmeasurementsthread.start();
+        }
+
+        //with a listener, the threads wait until it released them
+        CountDownLatch ready = null;
+        CountDownLatch start = null;
+        if (listener != null) {
+            ready = new CountDownLatch(threads.size());
+            start = new CountDownLatch(1);
+            for (Thread t : threads) {
+                ((ClientThread) t).setStartGate(ready, start);
+            }
+        }
 
         //start client threads
         for (Thread t : threads) {
             t.start();
         }
 
-        Thread terminator = null;
+        if (listener != null) {
+            try {
+                ready.await();
+            } catch (InterruptedException e) {
+                // do nothing.
+            }
+            listener.ready(phase);
+            start.countDown();
+        }
+
+        //the control channel may change the phase from now on
+        RunControl.setCurrent(new RunControl(phase, threads, workload, exportmeasurementsthread, target));
 
-        if (maxExecutionTime > 0) {
-            terminator = new TerminatorThread(maxExecutionTime, threads, workload);
+        TerminatorThread terminator = new TerminatorThread(maxExecutionTime, threads, workload, props);
+        if (terminator.isNeeded()) {
             terminator.start();
+        } else {
+            terminator = null;
+        }
+        if (confidencestop != null) {
+            confidencestop.start();
         }
 
-        long st = System.currentTimeMillis();
-        int opsDone = 0;
-
-        for (Thread t : threads) {
+        long opsdone = 0;
+        long runtime = 0;
+        long recon = 0;
+        for (int threadid = 0; threadid < threads.size(); threadid++) {
+            ClientThread t = (ClientThread) threads.get(threadid);
             try {
                 t.join();
-                opsDone += ((ClientThread) t).getOpsDone();
             } catch (InterruptedException e) {
             }
+            dbs.setInitialized(threadid, t.isDBInitialized());
+            opsdone += t.getOpsDone();
+            recon += t.getReconnections();
         }
+        runtime = Math.round(ClientThread.getMeasuredWindow(threads));
+        RunControl.setCurrent(null);
 
-        long en = System.currentTimeMillis();
+        if (listener != null) {
+            listener.done(phase, opsdone, runtime, recon);
+        }
 
         if (terminator != null && !terminator.isInterrupted()) {
             terminator.interrupt();
         }
+        if (confidencestop != null) {
+            confidencestop.interrupt();
+        }
 
         if (status) {
             statusthread.interrupt();
+            try {
+                statusthread.join();
+            } catch (InterruptedException e) {
+            }
         }
 
-        try {
-            exportmeasurementsthread.join();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-            e.printStackTrace(System.out);
+        if (exportmeasurementsthread != null) {
+            try {
+                exportmeasurementsthread.join();
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+                e.printStackTrace(System.out);
+            }
+            currentexport = null;
         }
 
         try {
@@ -870,17 +772,5 @@ public class Client {
             e.printStackTrace(System.out);
             System.exit(0);
         }
-
-        //try
-        //{
-        //	exportMeasurements(exporter, opsDone, en - st);
-        //} catch (IOException e)
-        //{
-        //	System.err.println("Could not export measurements, error: " + e.getMessage());
-        //	e.printStackTrace();
-        //	System.exit(-1);
-        //}
-
-        System.exit(0);
     }
 }
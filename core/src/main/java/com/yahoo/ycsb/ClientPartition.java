@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Enumeration;
+import java.util.Properties;
+
+/**
+ * Splits a run between clients that don't talk to each other. Every client gets the same properties, plus its
+ * own clientid from 0 to clientcount - 1, and takes its share of the work:
+ * <ul>
+ * <li>a load inserts a disjoint range of the keys from insertstart to insertstart + insertcount (or recordcount)</li>
+ * <li>a transaction phase does its share of operationcount and warmupoperationcount</li>
+ * <li>the target throughput is split between the clients</li>
+ * <li>the keys inserted by transactions are interleaved: client i inserts recordcount + i, recordcount + i +
+ * clientcount, ..., see {@link com.yahoo.ycsb.workloads.CoreWorkload}</li>
+ * </ul>
+ * The shares of the clients differ by at most one.
+ */
+public class ClientPartition {
+    /**
+     * The number of this client, from 0 to clientcount - 1.
+     */
+    public static final String CLIENT_ID_PROPERTY = "clientid";
+    public static final String CLIENT_ID_PROPERTY_DEFAULT = "0";
+
+    /**
+     * The number of clients that share the run.
+     */
+    public static final String CLIENT_COUNT_PROPERTY = "clientcount";
+    public static final String CLIENT_COUNT_PROPERTY_DEFAULT = "1";
+
+    public static boolean isEnabled(Properties props) {
+        return getClientCount(props) > 1;
+    }
+
+    public static int getClientId(Properties props) {
+        return Integer.parseInt(props.getProperty(CLIENT_ID_PROPERTY, CLIENT_ID_PROPERTY_DEFAULT));
+    }
+
+    public static int getClientCount(Properties props) {
+        return Integer.parseInt(props.getProperty(CLIENT_COUNT_PROPERTY, CLIENT_COUNT_PROPERTY_DEFAULT));
+    }
+
+    /**
+     * Return the properties of a phase with the counts and the target replaced by the share of this client.
+     * The given properties are left as they are.
+     */
+    public static Properties apply(Properties props, boolean dotransactions) {
+        Properties ret = new Properties();
+        for (Enumeration e = props.propertyNames(); e.hasMoreElements(); ) {
+            String prop = (String) e.nextElement();
+            ret.setProperty(prop, props.getProperty(prop));
+        }
+        if (!isEnabled(props)) {
+            return ret;
+        }
+        int clientid = getClientId(props);
+        int clientcount = getClientCount(props);
+        if ((clientid < 0) || (clientid >= clientcount)) {
+            throw new IllegalArgumentException(CLIENT_ID_PROPERTY + " must be from 0 to " + (clientcount - 1) + ", not " + clientid);
+        }
+
+        if (dotransactions) {
+            long opcount = Long.parseLong(props.getProperty(Client.OPERATION_COUNT_PROPERTY, "0"));
+            ret.setProperty(Client.OPERATION_COUNT_PROPERTY, share(opcount, clientid, clientcount) + "");
+        } else {
+            long insertstart = Long.parseLong(props.getProperty(Workload.INSERT_START_PROPERTY, Workload.INSERT_START_PROPERTY_DEFAULT));
+            long insertcount;
+            if (props.containsKey(Client.INSERT_COUNT_PROPERTY)) {
+                insertcount = Long.parseLong(props.getProperty(Client.INSERT_COUNT_PROPERTY));
+            } else {
+                insertcount = Long.parseLong(props.getProperty(Client.RECORD_COUNT_PROPERTY, "0"));
+            }
+            long start = insertstart;
+            for (int i = 0; i < clientid; i++) {
+                start += share(insertcount, i, clientcount);
+            }
+            ret.setProperty(Workload.INSERT_START_PROPERTY, start + "");
+            ret.setProperty(Client.INSERT_COUNT_PROPERTY, share(insertcount, clientid, clientcount) + "");
+        }
+
+        long warmupopcount = Long.parseLong(props.getProperty(Client.WARMUP_OPERATION_COUNT_PROPERTY, "0"));
+        if (warmupopcount > 0) {
+            ret.setProperty(Client.WARMUP_OPERATION_COUNT_PROPERTY, share(warmupopcount, clientid, clientcount) + "");
+        }
+        long target = Long.parseLong(props.getProperty("target", "0"));
+        if (target > 0) {
+            ret.setProperty("target", Math.max(1, share(target, clientid, clientcount)) + "");
+        }
+        return ret;
+    }
+
+    /**
+     * Split total into parts that differ by at most one.
+     */
+    static long share(long total, int clientid, int clientcount) {
+        return total / clientcount + (clientid < total % clientcount ? 1 : 0);
+    }
+}
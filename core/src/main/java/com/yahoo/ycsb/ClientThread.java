@@ -0,0 +1,456 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+
+import com.yahoo.ycsb.measurements.Measurements;
+/**
+ * A thread for exporting statistics to the file in runtime.
+ */
+class ClientThread extends Thread {
+    DB _db;
+    boolean _dotransactions;
+    Workload _workload;
+    int _opcount;
+    volatile double _target;
+    double reconnectionthroughput;
+    long reconncetiontime;
+
+    int _opsdone;
+    Object _workloadstate;
+    Properties _props;
+
+    long reconnectioncounter;
+
+    /**
+     * System.nanoTime() when the first operation started and when the last one finished.
+     */
+    long _starttime;
+    long _endtime;
+
+    /**
+     * System.nanoTime() when the in-flight operation started, or 0 between operations.
+     */
+    volatile long _opstart = 0;
+    boolean _interruptible = false;
+    volatile boolean _stoprequested = false;
+    volatile boolean _parked = false;
+    volatile boolean _retarget = false;
+    final Object _parklock = new Object();
+
+    FailureDetector _detector = null;
+    int _epoch = 0;
+    final Object _oplock = new Object();
+
+    boolean _initdb = true;
+    boolean _cleanupdb = true;
+    boolean _dbinitialized = false;
+
+    CountDownLatch _readylatch = null;
+    CountDownLatch _startlatch = null;
+
+    /**
+     * The random numbers of this thread, split from those of the thread that created it.
+     */
+    SplitMix64 _random;
+
+    private static final double CHECK_THROUGHPUT_INTERVAL = 500; // in milliseconds
+
+    public static final String RECONNECTION_THROUGHTPUT_PROPERTY = "reconnectionthroughput";
+    public static final String RECONNECTION_THROUGHTPUT_DEFAULT = "0";
+    public static final String RECONNECTION_TIME_PROPERTY = "reconnectiontime";
+    public static final String RECONNECTION_TIME_DEFAULT = "0";
+
+    /**
+     * Constructor.
+     *
+     * @param db                   the DB implementation to use
+     * @param dotransactions       true to do transactions, false to insert data
+     * @param workload             the workload to use
+     * @param props                the properties defining the experiment
+     * @param opcount              the number of operations (transactions or inserts) to do
+     * @param targetperthreadperms target number of operations per thread per ms
+     */
+    public ClientThread(DB db, boolean dotransactions, Workload workload, Properties props, int opcount, double targetperthreadperms) {
+        _db = db;
+        _dotransactions = dotransactions;
+        _workload = workload;
+        _opcount = opcount;
+        _opsdone = 0;
+        _target = targetperthreadperms;
+        _props = props;
+        reconnectioncounter = 0;
+        this.reconnectionthroughput = Double.parseDouble(props.getProperty(RECONNECTION_THROUGHTPUT_PROPERTY, RECONNECTION_THROUGHTPUT_DEFAULT)) / 1000.0;
+        this.reconncetiontime = Long.parseLong(props.getProperty(RECONNECTION_TIME_PROPERTY, RECONNECTION_TIME_DEFAULT));
+        _interruptible = Long.parseLong(props.getProperty(TerminatorThread.OPERATION_TIMEOUT_PROPERTY,
+                TerminatorThread.OPERATION_TIMEOUT_PROPERTY_DEFAULT)) > 0;
+        _random = Utils.split();
+    }
+
+    public int getOpsDone() {
+        return _opsdone;
+    }
+
+    /**
+     * @return the time from the start of the first operation to the end of the last one, in milliseconds.
+     */
+    public long getRuntime() {
+        return (_endtime - _starttime) / 1000000;
+    }
+
+    /**
+     * Return the exact window in which the given client threads ran operations, from the start of the
+     * first operation of any thread to the end of the last one, in milliseconds.
+     */
+    static double getMeasuredWindow(Vector<Thread> threads) {
+        long start = Long.MAX_VALUE;
+        long end = Long.MIN_VALUE;
+        for (Thread t : threads) {
+            ClientThread ct = (ClientThread) t;
+            if (ct.getOpsDone() > 0) {
+                start = Math.min(start, ct._starttime);
+                end = Math.max(end, ct._endtime);
+            }
+        }
+        return (start < end) ? (end - start) / 1000000.0 : 0;
+    }
+
+    /**
+     * Interrupt the in-flight operation of this thread if it has been running for longer than the timeout,
+     * so blocking calls in the binding return.
+     *
+     * @param now     the current System.nanoTime()
+     * @param timeout the operation timeout in nanoseconds
+     */
+    void interruptOperation(long now, long timeout) {
+        synchronized (_oplock) {
+            long st = _opstart;
+            if ((st != 0) && (now - st > timeout)) {
+                //only once per operation
+                _opstart = 0;
+                interrupt();
+            }
+        }
+    }
+
+    /**
+     * Wait while the circuit is open, and reconnect once it is half open if this thread connected before it
+     * opened. Only a few threads reconnect at the same time; the time a reconnection takes is measured as
+     * RECONNECT.
+     *
+     * @return true if the thread waited or reconnected.
+     */
+    private boolean awaitConnection() {
+        long wait = _detector.getWaitTime();
+        if (wait > 0) {
+            try {
+                sleep(Math.min(wait, 100));
+            } catch (InterruptedException e) {
+                // do nothing.
+            }
+            return true;
+        }
+        int epoch = _detector.getEpoch();
+        if (epoch == _epoch) {
+            return false;
+        }
+
+        try {
+            _detector.acquireReconnect();
+        } catch (InterruptedException e) {
+            return true;
+        }
+        try {
+            //the circuit may have opened again while waiting for a turn
+            if (_detector.getState() == FailureDetector.State.OPEN) {
+                return true;
+            }
+            long st = System.nanoTime();
+            _db.reinit();
+            long en = System.nanoTime();
+            Measurements.getMeasurements().measure("RECONNECT", (int) ((en - st) / 1000));
+            reconnectioncounter++;
+            _epoch = epoch;
+        } catch (Exception e) {
+            e.printStackTrace();
+            _detector.reportFailure("reconnection failed");
+        } finally {
+            _detector.releaseReconnect();
+        }
+        return true;
+    }
+
+    private void endOperation() {
+        if (_interruptible) {
+            synchronized (_oplock) {
+                _opstart = 0;
+                //an interrupt meant for this operation must not hit the next one
+                Thread.interrupted();
+            }
+        } else {
+            _opstart = 0;
+        }
+        _endtime = System.nanoTime();
+    }
+
+    public long getReconnections() {
+        return reconnectioncounter;
+    }
+
+    /**
+     * Choose whether this thread initializes its DB before running and cleans it up afterwards.
+     * Multi-phase runs hand the same, already initialized DB to the threads of consecutive phases.
+     */
+    public void setDBLifecycle(boolean initdb, boolean cleanupdb) {
+        _initdb = initdb;
+        _cleanupdb = cleanupdb;
+    }
+
+    /**
+     * @return true if the DB of this thread is initialized and was not cleaned up.
+     */
+    public boolean isDBInitialized() {
+        return _dbinitialized;
+    }
+
+    /**
+     * Make the thread count down ready once it is initialized, and wait for start before the first operation.
+     */
+    public void setStartGate(CountDownLatch ready, CountDownLatch start) {
+        _readylatch = ready;
+        _startlatch = start;
+    }
+
+    /**
+     * Share a failure detector with the other threads of the phase, which decides when this thread reconnects,
+     * or none if null.
+     */
+    public void setFailureDetector(FailureDetector detector) {
+        _detector = detector;
+        _epoch = (detector != null) ? detector.getEpoch() : 0;
+        if (_db instanceof DBWrapper) {
+            ((DBWrapper) _db).setFailureDetector(detector);
+        }
+    }
+
+    /**
+     * Ask this thread alone to stop after its in-flight operation, unlike {@link Workload#requestStop()}
+     * which stops the workload for good.
+     */
+    public void requestStop() {
+        _stoprequested = true;
+    }
+
+    /**
+     * Change the target number of operations per ms of this thread while it runs, or remove the target if
+     * not positive.
+     */
+    public void setTarget(double targetperthreadperms) {
+        _target = targetperthreadperms;
+        _retarget = true;
+    }
+
+    /**
+     * Park this thread after its in-flight operation, or let it go on, so the number of active threads of a
+     * running phase can change. A parked thread still leaves when it is asked to stop.
+     */
+    public void setParked(boolean parked) {
+        synchronized (_parklock) {
+            _parked = parked;
+            _parklock.notifyAll();
+        }
+    }
+
+    public boolean isParked() {
+        return _parked;
+    }
+
+    private void awaitUnpark() {
+        synchronized (_parklock) {
+            while (_parked && !_workload.isStopRequested() && !_stoprequested) {
+                try {
+                    _parklock.wait(100);
+                } catch (InterruptedException e) {
+                    // do nothing.
+                }
+            }
+        }
+    }
+
+    private void arrive() {
+        if (_readylatch != null) {
+            _readylatch.countDown();
+        }
+    }
+
+    public void run() {
+        Utils.setRandom(_random);
+        if (_initdb) {
+            try {
+                _db.init();
+            } catch (DBException e) {
+                //TODO make error logging level configurable
+                e.printStackTrace();
+                arrive();
+                return;
+            }
+        }
+        _dbinitialized = true;
+
+        try {
+            _workloadstate = _workload.initThread(_props);
+        } catch (WorkloadException e) {
+            e.printStackTrace();
+            arrive();
+            return;
+        }
+
+        arrive();
+        if (_startlatch != null) {
+            try {
+                _startlatch.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+
+        //spread the thread operations out so they don't all hit the DB at the same time
+        try {
+            //GH issue 4 - throws exception if _target>1 because random.nextInt argument must be >0
+            //and the sleep() doesn't make sense for granularities < 1 ms anyway
+            if ((_target > 0) && (_target <= 1.0)) {
+                sleep(Utils.random().nextInt((int) (1.0 / _target)));
+            }
+        } catch (InterruptedException e) {
+            // do nothing.
+        }
+
+        try {
+            if (_dotransactions) {
+                run(new OperationHandler() {
+                    @Override
+                    public boolean doOperation(DB db, Object workloadstate) {
+                        return _workload.doTransaction(db, workloadstate);
+                    }
+                });
+            } else {
+                run(new OperationHandler() {
+                    @Override
+                    public boolean doOperation(DB db, Object workloadstate) {
+                        return _workload.doInsert(db, workloadstate);
+                    }
+                });
+            }
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        if (_cleanupdb) {
+            _dbinitialized = false;
+            try {
+                _db.cleanup();
+            } catch (DBException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    protected void run(OperationHandler handler) {
+        boolean isStartReconnectionTimer = true;
+        long start_time = System.currentTimeMillis();
+        long interval_time = start_time;
+        long reconnection_throughput_time = 0;
+        long interval_ops = 0;
+        _starttime = System.nanoTime();
+        _endtime = _starttime;
+        while (((_opcount == 0) || (_opsdone < _opcount)) && !_workload.isStopRequested() && !_stoprequested) {
+            if ((_detector != null) && awaitConnection()) {
+                //don't count the time spent waiting against the throughput
+                isStartReconnectionTimer = true;
+                interval_time = System.currentTimeMillis();
+                interval_ops = 0;
+                continue;
+            }
+            if (_retarget) {
+                //the operations done under the previous target must not speed up or hold back the new one
+                _retarget = false;
+                interval_time = System.currentTimeMillis();
+                interval_ops = 0;
+            }
+            if (_parked) {
+                awaitUnpark();
+                isStartReconnectionTimer = true;
+                interval_time = System.currentTimeMillis();
+                interval_ops = 0;
+                continue;
+            }
+
+            long current_time = System.currentTimeMillis();
+            if (current_time - interval_time > CHECK_THROUGHPUT_INTERVAL) {
+                //reconnect to the database if low throughput
+                double throughput = interval_ops / ((double) current_time - interval_time);
+                if (throughput < reconnectionthroughput) {
+                    if (isStartReconnectionTimer) {
+                        reconnection_throughput_time = System.currentTimeMillis();
+                        isStartReconnectionTimer = false;
+                    } else {
+                        if (current_time - reconnection_throughput_time > reconncetiontime) {
+                            _detector.reportFailure("throughput below " + (reconnectionthroughput * 1000) + " ops/sec");
+                            isStartReconnectionTimer = true;
+                        }
+                    }
+                } else {
+                    isStartReconnectionTimer = true;
+                }
+                interval_time = current_time;
+                interval_ops = 0;
+            }
+
+            _opstart = System.nanoTime();
+            boolean ok = handler.doOperation(_db, _workloadstate);
+            endOperation();
+            if (!ok) {
+                break;
+            }
+
+            interval_ops++;
+            _opsdone++;
+
+            //throttle the operations
+            if (_target > 0) {
+                //this is more accurate than other throttling approaches we have tried,
+                //like sleeping for (1/target throughput)-operation latency,
+                //because it smooths timing inaccuracies (from sleep() taking an int,
+                //current time in millis) over many operations
+                //while (System.currentTimeMillis() - interval_time < (interval_ops / _target)) {
+                //the target may change while waiting
+                while ((_target > 0) && !_retarget && (_target < interval_ops / ((double) System.currentTimeMillis() - interval_time)) && !_workload.isStopRequested() && !_stoprequested) {
+                    try {
+                        sleep(1);
+                    } catch (InterruptedException e) {
+                        // do nothing.
+                    }
+                }
+            }
+        }
+    }
+}
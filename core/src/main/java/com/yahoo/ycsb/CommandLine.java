@@ -207,6 +207,7 @@ public class CommandLine
 	 db.setProperties(props);
 	 try
 	 {
+	    DB.acquireGlobal(db);
 	    db.init();
 	 }
 	 catch (DBException e)
@@ -0,0 +1,303 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Ends a transaction phase once its results are precise enough, with the method of batch means: the run is cut
+ * into batches of a fixed length, and the throughput, the average latency and the 95th and 99th percentile
+ * latencies of every batch are taken as independent samples. The phase stops once the confidence interval of the
+ * mean of each metric is narrower than the given relative error. Operationcount and maxexecutiontime still bound
+ * the phase if it doesn't get there.
+ * <p/>
+ * The batches must be long enough for consecutive ones to be nearly independent, which the lag-1 autocorrelation
+ * of the batch throughputs, exported with the confidence intervals, helps to check.
+ */
+public class ConfidenceStop extends Thread {
+    /**
+     * Set to true to stop every transaction phase once its confidence intervals are narrow enough.
+     */
+    public static final String CONFIDENCE_STOP_PROPERTY = "confidencestop";
+    public static final String CONFIDENCE_STOP_PROPERTY_DEFAULT = "false";
+
+    /**
+     * The length of a batch in milliseconds.
+     */
+    public static final String BATCH_PROPERTY = "confidence.batch";
+    public static final String BATCH_PROPERTY_DEFAULT = "1000";
+
+    /**
+     * The confidence level of the intervals.
+     */
+    public static final String LEVEL_PROPERTY = "confidence.level";
+    public static final String LEVEL_PROPERTY_DEFAULT = "0.95";
+
+    /**
+     * The largest half width of the intervals, relative to the mean.
+     */
+    public static final String ERROR_PROPERTY = "confidence.error";
+    public static final String ERROR_PROPERTY_DEFAULT = "0.05";
+
+    /**
+     * The number of batches the phase runs at least.
+     */
+    public static final String MIN_BATCHES_PROPERTY = "confidence.minbatches";
+    public static final String MIN_BATCHES_PROPERTY_DEFAULT = "10";
+
+    static final String[] METRICS = {"Throughput(ops/sec)", "AverageLatency(us)", "95thPercentileLatency(ms)", "99thPercentileLatency(ms)"};
+
+    /**
+     * The smallest half width that is always accepted for each metric: latencies are measured in us and the
+     * percentiles in 1 ms buckets.
+     */
+    static final double[] RESOLUTION = {0, 1, 0.5, 0.5};
+
+    /**
+     * The samples of one metric, one per batch.
+     */
+    static class Samples {
+        private double sum = 0;
+        private double sumsquares = 0;
+        private int count = 0;
+
+        void add(double x) {
+            sum += x;
+            sumsquares += x * x;
+            count++;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        double getMean() {
+            return sum / count;
+        }
+
+        /**
+         * Return the half width of the confidence interval of the mean at the given level.
+         */
+        double getHalfWidth(double level) {
+            if (count < 2) {
+                return Double.POSITIVE_INFINITY;
+            }
+            double mean = getMean();
+            double variance = Math.max(0, (sumsquares - count * mean * mean) / (count - 1));
+            return tQuantile((1 + level) / 2, count - 1) * Math.sqrt(variance / count);
+        }
+    }
+
+    private final Vector<Thread> threads;
+    private final long batch;
+    private final double level;
+    private final double error;
+    private final int minbatches;
+
+    private final Samples[] samples = new Samples[METRICS.length];
+    private final Vector<Double> throughputs = new Vector<Double>();
+    private volatile boolean converged = false;
+
+    public ConfidenceStop(Vector<Thread> threads, Properties props) {
+        this.threads = threads;
+        batch = Long.parseLong(props.getProperty(BATCH_PROPERTY, BATCH_PROPERTY_DEFAULT));
+        level = Double.parseDouble(props.getProperty(LEVEL_PROPERTY, LEVEL_PROPERTY_DEFAULT));
+        error = Double.parseDouble(props.getProperty(ERROR_PROPERTY, ERROR_PROPERTY_DEFAULT));
+        minbatches = Math.max(2, Integer.parseInt(props.getProperty(MIN_BATCHES_PROPERTY, MIN_BATCHES_PROPERTY_DEFAULT)));
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = new Samples();
+        }
+        setDaemon(true);
+    }
+
+    public static boolean isEnabled(Properties props) {
+        return Boolean.parseBoolean(props.getProperty(CONFIDENCE_STOP_PROPERTY, CONFIDENCE_STOP_PROPERTY_DEFAULT));
+    }
+
+    /**
+     * @return true if the phase stopped because its confidence intervals were narrow enough.
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * Add the metrics of a batch. A batch with a percentile in the overflow bucket has no usable percentiles
+     * and is left out.
+     *
+     * @return true if the intervals are narrow enough.
+     */
+    synchronized boolean addBatch(double throughput, double average, int p95, int p99) {
+        if ((p95 < 0) || (p99 < 0)) {
+            return false;
+        }
+        double[] values = {throughput, average, p95, p99};
+        for (int i = 0; i < values.length; i++) {
+            samples[i].add(values[i]);
+        }
+        throughputs.add(throughput);
+        if (samples[0].getCount() < minbatches) {
+            return false;
+        }
+        for (int i = 0; i < samples.length; i++) {
+            double mean = samples[i].getMean();
+            if (samples[i].getHalfWidth(level) > Math.max(RESOLUTION[i], error * Math.abs(mean))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void run() {
+        //the first batch holds the ramp-up of the threads and is not a sample
+        boolean first = true;
+        long lastops = 0;
+        long lasten = System.nanoTime();
+        LatencyHistogram last = new LatencyHistogram(0);
+        while (true) {
+            try {
+                sleep(batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long en = System.nanoTime();
+            long ops = 0;
+            for (Thread t : threads) {
+                ops += ((ClientThread) t).getOpsDone();
+            }
+            LatencyHistogram current = new LatencyHistogram(0);
+            for (LatencyHistogram h : Measurements.getMeasurements().snapshots().values()) {
+                current.add(h);
+            }
+            LatencyHistogram latency = current.minus(last);
+            double throughput = 1e9 * (ops - lastops) / Math.max(1, en - lasten);
+            last = current;
+            lastops = ops;
+            lasten = en;
+
+            //a new segment of the phase starts its measurements from scratch
+            if (first || (latency.getOperations() <= 0)) {
+                first = false;
+                continue;
+            }
+            double average = ((double) latency.getTotalLatency()) / latency.getOperations();
+            if (addBatch(throughput, average, latency.percentile(0.95), latency.percentile(0.99))) {
+                converged = true;
+                System.err.println("Confidence intervals narrower than " + error + " after " + samples[0].getCount()
+                        + " batches. Stopping the client threads.");
+                for (Thread t : threads) {
+                    ((ClientThread) t).requestStop();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Export the number of batches and the confidence interval of every metric.
+     */
+    public synchronized void export(String name, MeasurementsExporter exporter) throws IOException {
+        exporter.write(name, "Batches", samples[0].getCount());
+        exporter.write(name, "BatchLength(ms)", batch);
+        exporter.write(name, "Level", level);
+        exporter.write(name, "Converged", converged ? 1 : 0);
+        for (int i = 0; i < METRICS.length; i++) {
+            if (samples[i].getCount() == 0) {
+                continue;
+            }
+            double mean = samples[i].getMean();
+            double halfwidth = samples[i].getHalfWidth(level);
+            exporter.write(name, METRICS[i] + ".Mean", mean);
+            exporter.write(name, METRICS[i] + ".Lower", mean - halfwidth);
+            exporter.write(name, METRICS[i] + ".Upper", mean + halfwidth);
+        }
+        exporter.write(name, "Throughput.Autocorrelation", autocorrelation(throughputs));
+    }
+
+    /**
+     * Return the lag-1 autocorrelation of the given samples, near 0 if they are independent.
+     */
+    static double autocorrelation(Vector<Double> x) {
+        int n = x.size();
+        if (n < 3) {
+            return 0;
+        }
+        double mean = 0;
+        for (double v : x) {
+            mean += v;
+        }
+        mean /= n;
+        double num = 0;
+        double den = 0;
+        for (int i = 0; i < n; i++) {
+            double d = x.get(i) - mean;
+            den += d * d;
+            if (i > 0) {
+                num += d * (x.get(i - 1) - mean);
+            }
+        }
+        return (den > 0) ? num / den : 0;
+    }
+
+    /**
+     * Return the quantile p of the Student t distribution with df degrees of freedom, with the Cornish-Fisher
+     * expansion around the normal quantile, which is accurate to about 1e-3 for df >= 5.
+     */
+    static double tQuantile(double p, int df) {
+        double z = normalQuantile(p);
+        double z3 = z * z * z;
+        double z5 = z3 * z * z;
+        double z7 = z5 * z * z;
+        double v = df;
+        return z + (z3 + z) / (4 * v) + (5 * z5 + 16 * z3 + 3 * z) / (96 * v * v)
+                + (3 * z7 + 19 * z5 + 17 * z3 - 15 * z) / (384 * v * v * v);
+    }
+
+    /**
+     * Return the quantile p of the standard normal distribution, with Acklam's rational approximation.
+     */
+    static double normalQuantile(double p) {
+        final double[] a = {-3.969683028665376e+01, 2.209460984245205e+02, -2.759285104469687e+02,
+                1.383577518672690e+02, -3.066479806614716e+01, 2.506628277459239e+00};
+        final double[] b = {-5.447609879822406e+01, 1.615858368580409e+02, -1.556989798598866e+02,
+                6.680131188771972e+01, -1.328068155288572e+01};
+        final double[] c = {-7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                -2.549732539343734e+00, 4.374664141464968e+00, 2.938163982698783e+00};
+        final double[] d = {7.784695709041462e-03, 3.224671290700398e-01, 2.445134137142996e+00,
+                3.754408661907416e+00};
+        double plow = 0.02425;
+        if (p < plow) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0] * q + c[1]) * q + c[2]) * q + c[3]) * q + c[4]) * q + c[5])
+                    / ((((d[0] * q + d[1]) * q + d[2]) * q + d[3]) * q + 1);
+        } else if (p > 1 - plow) {
+            return -normalQuantile(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0] * r + a[1]) * r + a[2]) * r + a[3]) * r + a[4]) * r + a[5]) * q
+                / (((((b[0] * r + b[1]) * r + b[2]) * r + b[3]) * r + b[4]) * r + 1);
+    }
+}
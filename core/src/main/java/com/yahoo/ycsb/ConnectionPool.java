@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A bounded pool of connections shared by the DB instances of all client threads, so that the number of
+ * connections to the database does not depend on the number of threads. Connections are opened lazily, at
+ * most {@link #getSize()} of them are in use at any time, and threads wait in {@link #acquire()} when all
+ * of them are busy.
+ *
+ * A binding usually creates its pool in {@link DB#initGlobal()} and hands it to {@link DB#setGlobal(Object)},
+ * borrows a connection for every operation and closes the pool in {@link DB#cleanupGlobal()}. The pool may be
+ * replaced after a failure, so a connection goes back to the pool it was borrowed from.
+ */
+public class ConnectionPool<T> {
+    /**
+     * The number of connections shared by all client threads. Defaults to the number of threads, which
+     * gives the same number of connections as one connection per thread.
+     */
+    public static final String POOL_SIZE_PROPERTY = "connectionpoolsize";
+
+    /**
+     * Opens and closes the connections of a pool.
+     */
+    public interface Factory<T> {
+        T create() throws Exception;
+
+        void destroy(T connection);
+    }
+
+    private final Factory<T> factory;
+    private final int size;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<T> idle = new ConcurrentLinkedQueue<T>();
+    private volatile boolean closed = false;
+
+    public ConnectionPool(Factory<T> factory, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid connection pool size " + size);
+        }
+        this.factory = factory;
+        this.size = size;
+        permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Return the pool size configured by the given properties: connectionpoolsize, or else threadcount.
+     */
+    public static int size(Properties props) {
+        return Integer.parseInt(props.getProperty(POOL_SIZE_PROPERTY, props.getProperty("threadcount", "1")));
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Borrow a connection, opening a new one if none is idle, waiting if all of them are in use.
+     */
+    public T acquire() throws DBException {
+        if (closed) {
+            throw new DBException("Connection pool is closed");
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DBException("Interrupted while waiting for a connection", e);
+        }
+        T conn = idle.poll();
+        if (conn != null) {
+            return conn;
+        }
+        try {
+            return factory.create();
+        } catch (Exception e) {
+            permits.release();
+            throw new DBException("Could not open a connection", e);
+        }
+    }
+
+    /**
+     * Return a connection borrowed with {@link #acquire()}.
+     */
+    public void release(T conn) {
+        if (closed) {
+            factory.destroy(conn);
+        } else {
+            idle.add(conn);
+            if (closed) {
+                //closed meanwhile
+                close();
+            }
+        }
+        permits.release();
+    }
+
+    /**
+     * Close a borrowed connection that is broken instead of returning it, so the next borrower opens a
+     * new one.
+     */
+    public void invalidate(T conn) {
+        try {
+            factory.destroy(conn);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Close the idle connections. Connections still in use are closed when they are released.
+     */
+    public void close() {
+        closed = true;
+        T conn;
+        while ((conn = idle.poll()) != null) {
+            factory.destroy(conn);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Listens on a local port for commands that change the running phase, so a tuning session doesn't need to
+ * restart the client, and lose its warm caches, for every change. Every line is one command, answered by a
+ * line starting with OK or ERROR:
+ * <pre>
+ * target 5000                                   change the target throughput, 0 for none
+ * threads 16                                    change the number of active threads, at most threadcount
+ * readproportion=0.9 updateproportion=0.1       change workload properties, such as the operation proportions
+ * status                                        show the current settings
+ * </pre>
+ * e.g. <code>echo "target 5000" | nc localhost 7713</code>. Every change starts a new segment of the phase,
+ * see {@link RunControl}. The changes only last until the end of the phase.
+ */
+public class ControlListener extends Thread {
+    /**
+     * The local port to listen on for commands, or 0 to not listen.
+     */
+    public static final String PORT_PROPERTY = "controlport";
+    public static final String PORT_PROPERTY_DEFAULT = "0";
+
+    private final ServerSocket server;
+
+    public ControlListener(int port) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getByName("localhost"));
+        setDaemon(true);
+        setName("ControlListener");
+    }
+
+    /**
+     * Start listening if the properties ask for it.
+     */
+    public static void start(Properties props) {
+        int port = Integer.parseInt(props.getProperty(PORT_PROPERTY, PORT_PROPERTY_DEFAULT));
+        if (port <= 0) {
+            return;
+        }
+        try {
+            new ControlListener(port).start();
+            System.err.println("Listening for control commands on localhost:" + port);
+        } catch (IOException e) {
+            e.printStackTrace();
+            e.printStackTrace(System.out);
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Run a command and return the reply.
+     */
+    static String execute(String command) {
+        RunControl control = RunControl.getCurrent();
+        if (control == null) {
+            return "ERROR no phase is running";
+        }
+        String[] args = command.split("\\s+");
+        try {
+            if (args[0].equals("status") && (args.length == 1)) {
+                return "OK " + control.getStatus();
+            } else if (args[0].equals("target") && (args.length == 2)) {
+                return "OK " + control.setTarget(Integer.parseInt(args[1]));
+            } else if (args[0].equals("threads") && (args.length == 2)) {
+                return "OK " + control.setThreads(Integer.parseInt(args[1]));
+            } else if (args[0].indexOf('=') > 0) {
+                Properties p = new Properties();
+                for (String arg : args) {
+                    int i = arg.indexOf('=');
+                    if (i <= 0) {
+                        return "ERROR expected name=value: " + arg;
+                    }
+                    p.setProperty(arg.substring(0, i), arg.substring(i + 1));
+                }
+                return "OK " + control.adjust(p);
+            }
+            return "ERROR unknown command: " + command;
+        } catch (IllegalArgumentException e) {
+            return "ERROR " + e.getMessage();
+        } catch (WorkloadException e) {
+            return "ERROR " + e.getMessage();
+        }
+    }
+
+    public void run() {
+        while (true) {
+            try {
+                Socket socket = server.accept();
+                try {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                    PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), "UTF-8"), true);
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        line = line.trim();
+                        if (line.length() > 0) {
+                            String reply = execute(line);
+                            out.println(reply);
+                            System.err.println("Control: " + line + ": " + reply);
+                        }
+                    }
+                } finally {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
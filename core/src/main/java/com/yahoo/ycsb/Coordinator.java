@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.text.DecimalFormat;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Runs a benchmark across several client processes. One client is started as the controller and the others as
+ * workers connecting to it over TCP:
+ * <pre>
+ * controller: bin/ycsb run basic -P workloads/workloada -p coordinator.role=controller -p coordinator.workers=4
+ * worker:     bin/ycsb run basic -p coordinator.role=worker -p coordinator.address=controllerhost:7711
+ * </pre>
+ * The controller sends the properties of every phase to the workers, with a clientid and clientcount for each,
+ * so they split the records to insert, the operation count and the target throughput between them. Properties set
+ * on a worker override those of the controller, except for clientid and clientcount. Once every worker has
+ * initialized its DB and workload, the controller starts all of them at the same time. The workers then stream
+ * the histograms of each interval back, and the controller merges them into the exact results of the whole run.
+ * <p/>
+ * Only histogram measurements are merged, so the workers always use measurementtype=histogram.
+ */
+public class Coordinator {
+    public static final String ROLE_PROPERTY = "coordinator.role";
+    public static final String ROLE_CONTROLLER = "controller";
+    public static final String ROLE_WORKER = "worker";
+
+    /**
+     * The host:port of the controller. The controller listens on the port on all interfaces.
+     */
+    public static final String ADDRESS_PROPERTY = "coordinator.address";
+    public static final String ADDRESS_PROPERTY_DEFAULT = "localhost:7711";
+
+    /**
+     * The number of workers the controller waits for before starting the first phase.
+     */
+    public static final String WORKERS_PROPERTY = "coordinator.workers";
+    public static final String WORKERS_PROPERTY_DEFAULT = "1";
+
+    /**
+     * How long a worker keeps trying to connect to the controller, in milliseconds.
+     */
+    public static final String CONNECT_TIMEOUT_PROPERTY = "coordinator.connecttimeout";
+    public static final String CONNECT_TIMEOUT_PROPERTY_DEFAULT = "60000";
+
+    /**
+     * The interval at which workers send their histograms, in milliseconds.
+     */
+    public static final String INTERVAL_PROPERTY = "coordinator.interval";
+    public static final String INTERVAL_PROPERTY_DEFAULT = "1000";
+
+    static final String HELLO = "HELLO";
+    static final String PHASE = "PHASE";
+    static final String READY = "READY";
+    static final String START = "START";
+    static final String INTERVAL = "INTERVAL";
+    static final String DONE = "DONE";
+    static final String BYE = "BYE";
+
+    /**
+     * A worker as seen by the controller.
+     */
+    static class WorkerConnection {
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        String name;
+
+        WorkerConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        void expect(String type) throws IOException {
+            String msg = in.readUTF();
+            if (!msg.equals(type)) {
+                throw new IOException("Expected " + type + " from worker " + name + " but got " + msg);
+            }
+        }
+
+        synchronized void send(String type) throws IOException {
+            out.writeUTF(type);
+            out.flush();
+        }
+    }
+
+    /**
+     * The merged results of all workers for one phase.
+     */
+    static class PhaseResults {
+        final Map<String, LatencyHistogram> histograms = new TreeMap<String, LatencyHistogram>();
+        long operations;
+        long intervaloperations;
+        long runtime;
+        long reconnections;
+
+        synchronized void add(Map<String, LatencyHistogram> intervals) {
+            for (Map.Entry<String, LatencyHistogram> e : intervals.entrySet()) {
+                LatencyHistogram h = histograms.get(e.getKey());
+                if (h == null) {
+                    h = new LatencyHistogram(0);
+                    histograms.put(e.getKey(), h);
+                }
+                h.add(e.getValue());
+                if (!e.getKey().endsWith("CLEANUP")) {
+                    intervaloperations += e.getValue().getOperations();
+                }
+            }
+        }
+
+        synchronized void done(long ops, long time, long recon) {
+            operations += ops;
+            runtime = Math.max(runtime, time);
+            reconnections += recon;
+        }
+
+        synchronized long takeIntervalOperations() {
+            long ret = intervaloperations;
+            intervaloperations = 0;
+            return ret;
+        }
+    }
+
+    /**
+     * Receives the histograms of one worker until it finished the phase.
+     */
+    static class ReaderThread extends Thread {
+        private final WorkerConnection worker;
+        private final PhaseResults results;
+
+        ReaderThread(WorkerConnection worker, PhaseResults results) {
+            this.worker = worker;
+            this.results = results;
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    String msg = worker.in.readUTF();
+                    if (msg.equals(INTERVAL)) {
+                        results.add(readHistograms(worker.in));
+                    } else if (msg.equals(DONE)) {
+                        long ops = worker.in.readLong();
+                        long time = worker.in.readLong();
+                        long recon = worker.in.readLong();
+                        results.add(readHistograms(worker.in));
+                        results.done(ops, time, recon);
+                        return;
+                    } else {
+                        throw new IOException("Unexpected message " + msg);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Lost worker " + worker.name + ", its results are incomplete");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Split the work of the phases between the workers: every worker gets its clientid and takes its share of the
+     * records to insert, the operation count and the target throughput, see {@link ClientPartition}.
+     *
+     * @return the properties that override the phase properties on the given worker
+     */
+    static Properties assign(int workerid, int workers) {
+        Properties ret = new Properties();
+        ret.setProperty(ClientPartition.CLIENT_ID_PROPERTY, workerid + "");
+        ret.setProperty(ClientPartition.CLIENT_COUNT_PROPERTY, workers + "");
+        ret.setProperty("measurementtype", "histogram");
+        return ret;
+    }
+
+    static int port(String address) {
+        return Integer.parseInt(address.substring(address.lastIndexOf(':') + 1));
+    }
+
+    static void writeProperties(DataOutputStream out, Properties props) throws IOException {
+        out.writeInt(props.size());
+        for (Enumeration e = props.propertyNames(); e.hasMoreElements(); ) {
+            String prop = (String) e.nextElement();
+            out.writeUTF(prop);
+            out.writeUTF(props.getProperty(prop));
+        }
+    }
+
+    static Properties readProperties(DataInputStream in) throws IOException {
+        Properties props = new Properties();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String prop = in.readUTF();
+            props.setProperty(prop, in.readUTF());
+        }
+        return props;
+    }
+
+    static void writeHistograms(DataOutputStream out, Map<String, LatencyHistogram> histograms) throws IOException {
+        out.writeInt(histograms.size());
+        for (Map.Entry<String, LatencyHistogram> e : histograms.entrySet()) {
+            out.writeUTF(e.getKey());
+            e.getValue().write(out);
+        }
+    }
+
+    static Map<String, LatencyHistogram> readHistograms(DataInputStream in) throws IOException {
+        Map<String, LatencyHistogram> ret = new TreeMap<String, LatencyHistogram>();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = in.readUTF();
+            ret.put(name, LatencyHistogram.read(in));
+        }
+        return ret;
+    }
+
+    /**
+     * Run the phases on the workers and export the merged results.
+     */
+    public static void runController(Properties props, Vector<Phase> phases, MeasurementsExporter exporter, String label, boolean status) {
+        int workercount = Integer.parseInt(props.getProperty(WORKERS_PROPERTY, WORKERS_PROPERTY_DEFAULT));
+        int port = port(props.getProperty(ADDRESS_PROPERTY, ADDRESS_PROPERTY_DEFAULT));
+
+        Vector<WorkerConnection> workers = new Vector<WorkerConnection>();
+        try {
+            ServerSocket server = new ServerSocket(port);
+            System.err.println("Waiting for " + workercount + " workers on port " + port);
+            while (workers.size() < workercount) {
+                WorkerConnection worker = new WorkerConnection(server.accept());
+                worker.expect(HELLO);
+                worker.name = worker.in.readUTF();
+                workers.add(worker);
+                System.err.println("Worker " + workers.size() + "/" + workercount + " connected: " + worker.name);
+            }
+            server.close();
+
+            for (int i = 0; i < phases.size(); i++) {
+                runPhase(phases.get(i), Client.isLastUse(phases, i), workers, exporter, label, status);
+            }
+
+            for (WorkerConnection worker : workers) {
+                worker.send(BYE);
+                worker.socket.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            e.printStackTrace(System.out);
+            System.exit(0);
+        }
+    }
+
+    private static void runPhase(Phase phase, boolean lastuse, Vector<WorkerConnection> workers, MeasurementsExporter exporter,
+                                 String label, boolean status) throws IOException {
+        if (phase.getName().length() > 0) {
+            System.out.println("Phase: " + phase.getName() + " (" + phase.getMode() + ")");
+            System.err.println("Phase: " + phase.getName() + " (" + phase.getMode() + ")");
+            label = (label.length() > 0) ? label + " " + phase.getName() : phase.getName();
+        }
+
+        for (int i = 0; i < workers.size(); i++) {
+            WorkerConnection worker = workers.get(i);
+            synchronized (worker) {
+                worker.out.writeUTF(PHASE);
+                worker.out.writeUTF(phase.getName());
+                worker.out.writeUTF(phase.getMode());
+                worker.out.writeBoolean(lastuse);
+                writeProperties(worker.out, phase.getProperties());
+                writeProperties(worker.out, assign(i, workers.size()));
+                worker.out.flush();
+            }
+        }
+
+        //the barrier: start the workers only when all of them are ready
+        for (WorkerConnection worker : workers) {
+            worker.expect(READY);
+        }
+        System.err.println("All workers ready. Starting test.");
+
+        PhaseResults results = new PhaseResults();
+        Vector<ReaderThread> readers = new Vector<ReaderThread>();
+        for (WorkerConnection worker : workers) {
+            readers.add(new ReaderThread(worker, results));
+        }
+        for (ReaderThread reader : readers) {
+            reader.start();
+        }
+        long st = System.currentTimeMillis();
+        for (WorkerConnection worker : workers) {
+            worker.send(START);
+        }
+
+        DecimalFormat d = new DecimalFormat("#.##");
+        long lasten = st;
+        long totalops = 0;
+        for (ReaderThread reader : readers) {
+            while (reader.isAlive()) {
+                try {
+                    reader.join(StatusThread.sleeptime);
+                } catch (InterruptedException e) {
+                    // do nothing.
+                }
+                if (status) {
+                    long en = System.currentTimeMillis();
+                    long ops = results.takeIntervalOperations();
+                    totalops += ops;
+                    double curthroughput = 1000.0 * ((double) ops) / ((double) (en - lasten));
+                    lasten = en;
+                    System.err.println(label + " " + ((en - st) / 1000) + " sec: " + totalops + " operations; "
+                            + d.format(curthroughput) + " current ops/sec; " + workers.size() + " workers");
+                }
+            }
+        }
+
+        if (!phase.isMeasured()) {
+            return;
+        }
+
+        Measurements.getMeasurements().startPhase(phase.getName());
+        for (Map.Entry<String, LatencyHistogram> e : results.histograms.entrySet()) {
+            e.getValue().exportFinal(e.getKey(), exporter);
+        }
+        String overall = Measurements.getMeasurements().qualify("OVERALL");
+        exporter.write(overall, "Workers", workers.size());
+        exporter.write(overall, "Reconnections", results.reconnections);
+        exporter.write(overall, "RunTime(ms)", results.runtime);
+        exporter.write(overall, "Operations", results.operations);
+        double throughput = 1000.0 * ((double) results.operations) / ((double) results.runtime);
+        exporter.write(overall, "Throughput(ops/sec)", throughput);
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Enumeration;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * The worker side of a coordinated run: runs the phases sent by the {@link Coordinator} and streams the
+ * measurements back to it.
+ */
+public class CoordinatorWorker implements PhaseListener {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final long interval;
+
+    private Thread streamer;
+    private volatile boolean streaming;
+
+    CoordinatorWorker(Socket socket, long interval) throws IOException {
+        this.socket = socket;
+        this.interval = interval;
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+
+    /**
+     * Connect to the controller and run phases until it says bye.
+     *
+     * @param props    the properties of this client, which override those sent by the controller
+     * @param exporter the exporter for the local results of this worker
+     * @param label    the label for the status output
+     * @param status   true to show status during the run
+     */
+    public static void run(Properties props, MeasurementsExporter exporter, String label, boolean status) {
+        String address = props.getProperty(Coordinator.ADDRESS_PROPERTY, Coordinator.ADDRESS_PROPERTY_DEFAULT);
+        String host = address.substring(0, address.lastIndexOf(':'));
+        int port = Coordinator.port(address);
+        long timeout = Long.parseLong(props.getProperty(Coordinator.CONNECT_TIMEOUT_PROPERTY, Coordinator.CONNECT_TIMEOUT_PROPERTY_DEFAULT));
+        long interval = Long.parseLong(props.getProperty(Coordinator.INTERVAL_PROPERTY, Coordinator.INTERVAL_PROPERTY_DEFAULT));
+
+        try {
+            //the controller may not be up yet
+            Socket socket = null;
+            long deadline = System.currentTimeMillis() + timeout;
+            while (socket == null) {
+                try {
+                    socket = new Socket(host, port);
+                } catch (ConnectException e) {
+                    if (System.currentTimeMillis() > deadline) {
+                        throw e;
+                    }
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException ie) {
+                        // do nothing.
+                    }
+                }
+            }
+            System.err.println("Connected to controller " + address);
+
+            CoordinatorWorker worker = new CoordinatorWorker(socket, interval);
+            worker.send(Coordinator.HELLO, hostname() + "/" + socket.getLocalPort());
+            worker.runPhases(props, exporter, label, status);
+            socket.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+            e.printStackTrace(System.out);
+            System.exit(0);
+        }
+    }
+
+    private void runPhases(Properties localprops, MeasurementsExporter exporter, String label, boolean status) throws IOException {
+        ThreadDBs dbs = new ThreadDBs();
+        boolean first = true;
+        while (true) {
+            String msg = in.readUTF();
+            if (msg.equals(Coordinator.BYE)) {
+                break;
+            }
+            if (!msg.equals(Coordinator.PHASE)) {
+                throw new IOException("Unexpected message " + msg);
+            }
+            String name = in.readUTF();
+            String mode = in.readUTF();
+            boolean lastuse = in.readBoolean();
+            Properties props = Coordinator.readProperties(in);
+            Properties assigned = Coordinator.readProperties(in);
+            copy(localprops, props);
+            copy(assigned, props);
+
+            if (first) {
+                Measurements.setProperties(props);
+                first = false;
+            }
+            Client.runPhase(new Phase(name, mode, props), dbs, exporter, label, status, lastuse, this);
+        }
+        dbs.cleanup();
+    }
+
+    /**
+     * Tell the controller this worker is ready and wait for the start of the phase.
+     */
+    public void ready(Phase phase) {
+        try {
+            send(Coordinator.READY, null);
+            String msg = in.readUTF();
+            if (!msg.equals(Coordinator.START)) {
+                throw new IOException("Unexpected message " + msg);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            e.printStackTrace(System.out);
+            System.exit(0);
+        }
+
+        streaming = true;
+        streamer = new Thread() {
+            public void run() {
+                while (streaming) {
+                    try {
+                        sleep(interval);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    try {
+                        synchronized (out) {
+                            out.writeUTF(Coordinator.INTERVAL);
+                            Coordinator.writeHistograms(out, Measurements.getMeasurements().takeIntervals());
+                            out.flush();
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        return;
+                    }
+                }
+            }
+        };
+        streamer.start();
+    }
+
+    /**
+     * Send the rest of the measurements and the totals of the phase.
+     */
+    public void done(Phase phase, long operations, long runtime, long reconnections) {
+        streaming = false;
+        streamer.interrupt();
+        try {
+            streamer.join();
+        } catch (InterruptedException e) {
+            // do nothing.
+        }
+
+        try {
+            synchronized (out) {
+                out.writeUTF(Coordinator.DONE);
+                out.writeLong(operations);
+                out.writeLong(runtime);
+                out.writeLong(reconnections);
+                Coordinator.writeHistograms(out, Measurements.getMeasurements().takeIntervals());
+                out.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            e.printStackTrace(System.out);
+            System.exit(0);
+        }
+    }
+
+    private void send(String type, String arg) throws IOException {
+        synchronized (out) {
+            out.writeUTF(type);
+            if (arg != null) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+        }
+    }
+
+    private static String hostname() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "unknown";
+        }
+    }
+
+    private static void copy(Properties from, Properties to) {
+        for (Enumeration e = from.propertyNames(); e.hasMoreElements(); ) {
+            String prop = (String) e.nextElement();
+            to.setProperty(prop, from.getProperty(prop));
+        }
+    }
+}
@@ -68,6 +68,7 @@ public abstract class DB
 	/**
 	 * Initialize any state for this DB.
 	 * Called once per DB instance; there is one DB instance per client thread.
+	 * State shared by all threads, such as connections, belongs in initGlobal().
 	 */
 	public void init() throws DBException
 	{
@@ -87,6 +88,134 @@ public abstract class DB
     public void reinit() throws DBException, InstantiationException, IllegalAccessException {
     }
 
+	/**
+	 * Initialize the state shared by all DB instances of this class, such as a {@link ConnectionPool}, and hand it
+	 * to {@link #setGlobal(Object)}. Called once per process and scope, on the first instance to be initialized and
+	 * before its init(), and again when the state is reset after a failure, see {@link #resetGlobal()}.
+	 */
+	public void initGlobal() throws DBException
+	{
+	}
+
+	/**
+	 * Cleanup the state shared by all DB instances of this class, which {@link #getGlobal()} returns.
+	 * Called once per process and scope, on the last instance to be cleaned up and after its cleanup().
+	 */
+	public void cleanupGlobal() throws DBException
+	{
+	}
+
+	/**
+	 * The state shared by the instances of a DB class in one scope.
+	 */
+	static class Global
+	{
+		int instances;
+		int generation;
+		volatile Object state;
+	}
+
+	/**
+	 * The global state of each DB class and scope.
+	 */
+	private static final HashMap<String,Global> _globals=new HashMap<String,Global>();
+
+	/**
+	 * The scope of the global state of this instance. A decorator gives each DB it creates with properties of its
+	 * own, such as a shard, a scope of its own, so DBs of the same class with different properties don't share
+	 * their connections.
+	 */
+	String _scope="";
+
+	private Global _global;
+	private int _generation;
+
+	/**
+	 * Set the state shared by the instances of this class in its scope. Called by initGlobal().
+	 */
+	protected void setGlobal(Object state)
+	{
+		if (_global==null)
+		{
+			_global=new Global();
+		}
+		_global.state=state;
+	}
+
+	/**
+	 * Return the state shared by the instances of this class in its scope, as set by initGlobal().
+	 */
+	protected Object getGlobal()
+	{
+		return (_global==null) ? null : _global.state;
+	}
+
+	private String globalKey()
+	{
+		return getClass().getName()+" "+_scope;
+	}
+
+	/**
+	 * Count a DB instance that is about to be initialized, initializing the global state of its class and scope
+	 * if it is the first one. Other threads wait until the global state is initialized.
+	 */
+	static synchronized void acquireGlobal(DB db) throws DBException
+	{
+		Global g=_globals.get(db.globalKey());
+		if (g==null)
+		{
+			g=new Global();
+			db._global=g;
+			db.initGlobal();
+			_globals.put(db.globalKey(),g);
+		}
+		db._global=g;
+		db._generation=g.generation;
+		g.instances++;
+	}
+
+	/**
+	 * Forget a DB instance that has been cleaned up, cleaning up the global state of its class and scope
+	 * if it was the last one.
+	 */
+	static synchronized void releaseGlobal(DB db) throws DBException
+	{
+		Global g=_globals.get(db.globalKey());
+		if (g==null)
+		{
+			return;
+		}
+		if (g.instances>1)
+		{
+			g.instances--;
+			return;
+		}
+		_globals.remove(db.globalKey());
+		db._global=g;
+		db.cleanupGlobal();
+	}
+
+	/**
+	 * Recreate the global state of the class and scope of this instance after its connections failed, for all
+	 * its instances at once: only the first instance to ask since the last reset does it, the others see the new
+	 * state through {@link #getGlobal()}. Decorators reset the global state of the DBs they decorate instead.
+	 */
+	void resetGlobal() throws DBException
+	{
+		synchronized (DB.class)
+		{
+			Global g=_globals.get(globalKey());
+			if (g==null || _global!=g || _generation!=g.generation)
+			{
+				return;
+			}
+			g.generation++;
+			_generation=g.generation;
+			cleanupGlobal();
+			initGlobal();
+		}
+	}
+
 	/**
 	 * Read a record from the database. Each field/value pair from the result will be stored in a HashMap.
 	 *
@@ -0,0 +1,182 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+
+/**
+ * Base of the DBs that add behavior to another binding, such as {@link FaultInjectionDB}. The decorated DB is
+ * named by a property, e.g.
+ * <pre>
+ * -db com.yahoo.ycsb.FaultInjectionDB -p faultdb.db=com.yahoo.ycsb.db.MongoDbClient
+ * </pre>
+ * and gets all the properties. Decorators can decorate each other. Every operation goes to the decorated DB
+ * unless the decorator overrides it.
+ */
+public abstract class DBDecorator extends DB {
+    protected DB _db;
+
+    /**
+     * Return the property with the class name of the decorated DB, e.g. "faultdb.db".
+     */
+    protected abstract String dbProperty();
+
+    /**
+     * Create and initialize a DB to decorate, initializing the state shared by its instances if it is the first.
+     */
+    protected DB createDB(String dbname) throws DBException {
+        return createDB(dbname, getProperties(), _scope);
+    }
+
+    /**
+     * Create and initialize a DB to decorate with properties of its own: the properties of this DB, overridden by
+     * the ones under the prefix, see {@link #overrideProperties(Properties, String)}. Its global state, such as its
+     * connections, is its own too, unless another DB of the same class has the same prefix.
+     */
+    protected DB createDB(String dbname, String prefix) throws DBException {
+        return createDB(dbname, overrideProperties(getProperties(), prefix), _scope + prefix);
+    }
+
+    private DB createDB(String dbname, Properties p, String scope) throws DBException {
+        if (dbname == null) {
+            throw new DBException("No DB to decorate, set " + dbProperty());
+        }
+        DB db;
+        try {
+            db = DBFactory.rawDB(dbname, p);
+        } catch (UnknownDBException e) {
+            throw new DBException(e);
+        }
+        if (db == null) {
+            throw new DBException("Unknown DB " + dbname);
+        }
+        db._scope = scope;
+        DB.acquireGlobal(db);
+        try {
+            db.init();
+        } catch (DBException e) {
+            DB.releaseGlobal(db);
+            throw e;
+        }
+        return db;
+    }
+
+    /**
+     * Return a copy of the properties, overridden by the ones under the prefix, e.g. shadow.url overrides url for
+     * the prefix "shadow.".
+     */
+    protected static Properties overrideProperties(Properties p, String prefix) {
+        Properties overridden = new Properties();
+        overridden.putAll(p);
+        for (Enumeration<?> e = p.propertyNames(); e.hasMoreElements(); ) {
+            String name = (String) e.nextElement();
+            if (name.startsWith(prefix)) {
+                overridden.setProperty(name.substring(prefix.length()), p.getProperty(name));
+            }
+        }
+        return overridden;
+    }
+
+    /**
+     * Cleanup a DB created by {@link #createDB(String)}.
+     */
+    protected static void cleanupDB(DB db) throws DBException {
+        try {
+            db.cleanup();
+        } finally {
+            DB.releaseGlobal(db);
+        }
+    }
+
+    /**
+     * Return the values as byte arrays, reading the iterators, e.g. to keep them past the operation.
+     */
+    protected static HashMap<String, byte[]> toArrays(Map<String, ByteIterator> values) {
+        HashMap<String, byte[]> arrays = new HashMap<String, byte[]>();
+        for (Map.Entry<String, ByteIterator> value : values.entrySet()) {
+            arrays.put(value.getKey(), value.getValue().toArray());
+        }
+        return arrays;
+    }
+
+    /**
+     * Return the values as ByteArrayByteIterators, as the ones given have been read.
+     */
+    protected static HashMap<String, ByteIterator> toIterators(Map<String, byte[]> arrays) {
+        HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+        for (Map.Entry<String, byte[]> entry : arrays.entrySet()) {
+            values.put(entry.getKey(), new ByteArrayByteIterator(entry.getValue()));
+        }
+        return values;
+    }
+
+    /**
+     * Return the DBs this decorator decorates.
+     */
+    protected Vector<DB> decorated() {
+        Vector<DB> dbs = new Vector<DB>();
+        if (_db != null) {
+            dbs.add(_db);
+        }
+        return dbs;
+    }
+
+    /**
+     * Reset the global state of the decorated DBs; the decorator keeps its own.
+     */
+    void resetGlobal() throws DBException {
+        for (DB db : decorated()) {
+            db.resetGlobal();
+        }
+    }
+
+    public void init() throws DBException {
+        _db = createDB(getProperties().getProperty(dbProperty()));
+    }
+
+    public void cleanup() throws DBException {
+        if (_db != null) {
+            cleanupDB(_db);
+            _db = null;
+        }
+    }
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+        return _db.read(table, key, field, result);
+    }
+
+    public int scan(String table, String startkey, int recordcount, String field, Vector<HashMap<String, ByteIterator>> result) {
+        return _db.scan(table, startkey, recordcount, field, result);
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+        return _db.update(table, key, values);
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+        return _db.insert(table, key, values);
+    }
+
+    public int delete(String table, String key) {
+        return _db.delete(table, key);
+    }
+}
@@ -41,6 +41,8 @@ public class DBWrapper extends DB {
     private int insertRetryCount;
     private int retryDelay;
 
+    private FailureDetector _detector = null;
+
     interface DBOperation {
         String name();
         int maxRetries();
@@ -57,6 +59,13 @@ public class DBWrapper extends DB {
         retryDelay = Integer.parseInt(p.getProperty(RETRY_DELAY, "0"));
     }
 
+    /**
+     * Report the outcome of every operation to the given failure detector, or to none if null.
+     */
+    public void setFailureDetector(FailureDetector detector) {
+        _detector = detector;
+    }
+
     /**
      * Set the properties for this DB.
      */
@@ -76,14 +85,31 @@ public class DBWrapper extends DB {
      * Called once per DB instance; there is one DB instance per client thread.
      */
     public void init() throws DBException {
-        _db.init();
+        DB.acquireGlobal(_db);
+        try {
+            _db.init();
+        } catch (DBException e) {
+            DB.releaseGlobal(_db);
+            throw e;
+        }
     }
 
+    /**
+     * Recreate the wrapped DB after its connections failed, and the state it shares with the other threads, once
+     * for all of them.
+     */
     public void reinit() throws DBException, InstantiationException, IllegalAccessException {
-        Properties p = _db.getProperties();
-        _db.cleanup();
-        _db = _db.getClass().newInstance();
-        _db.setProperties(p);
+        DB old = _db;
+        old.resetGlobal();
+        _db = old.getClass().newInstance();
+        _db.setProperties(old.getProperties());
+        _db._scope = old._scope;
+        DB.acquireGlobal(_db);
+        try {
+            old.cleanup();
+        } finally {
+            DB.releaseGlobal(old);
+        }
         _db.init();
     }
 
@@ -93,7 +119,11 @@ public class DBWrapper extends DB {
      */
     public void cleanup() throws DBException {
         long st=System.nanoTime();
-        _db.cleanup();
+        try {
+            _db.cleanup();
+        } finally {
+            DB.releaseGlobal(_db);
+        }
         long en=System.nanoTime();
         _measurements.measure("CLEANUP", (int)((en-st)/1000));
     }
@@ -142,6 +172,10 @@ public class DBWrapper extends DB {
         long en = System.nanoTime();
         _measurements.measure("SCAN", (int) ((en - st) / 1000));
         _measurements.reportReturnCode("SCAN", res);
+        _measurements.reportOutcome(res, en - st);
+        if (_detector != null) {
+            _detector.record(res == 0);
+        }
         return res;
     }
 
@@ -215,6 +249,10 @@ public class DBWrapper extends DB {
         _measurements.measure(op.name(), (int) ((en - st) / 1000));
         _measurements.reportRetryCount(op.name(), retryCount);
         _measurements.reportReturnCode(op.name(), res);
+        _measurements.reportOutcome(res, en - st);
+        if (_detector != null) {
+            _detector.record(res == 0);
+        }
         return res;
 
     }
@@ -240,6 +278,10 @@ public class DBWrapper extends DB {
         long en = System.nanoTime();
         _measurements.measure("DELETE", (int) ((en - st) / 1000));
         _measurements.reportReturnCode("DELETE", res);
+        _measurements.reportOutcome(res, en - st);
+        if (_detector != null) {
+            _detector.record(res == 0);
+        }
         return res;
     }
 }
\ No newline at end of file
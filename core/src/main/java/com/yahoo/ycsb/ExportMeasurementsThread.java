@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+/**
+ * A thread to periodically export measurements by exporter.
+ */
+class ExportMeasurementsThread extends Thread {
+    private Vector<Thread> _threads;
+    private MeasurementsExporter exporter;
+    /**
+     * The interval for exporting measurements.
+     */
+    private long sleeptime;
+    private boolean exported = false;
+    private AdaptiveWarmup warmup = null;
+    private ConfidenceStop confidence = null;
+
+    /**
+     * System.nanoTime() when the current segment of the phase started, or 0 if the phase was not changed
+     * while running, and the operations done before it.
+     */
+    private long segmentstart = 0;
+    private long segmentops = 0;
+
+    public ExportMeasurementsThread(Vector<Thread> threads, MeasurementsExporter exporter, long exportmeasurementsinterval) throws FileNotFoundException
+    {
+        _threads = threads;
+        this.exporter = exporter;
+        this.sleeptime = exportmeasurementsinterval;
+    }
+
+    /**
+     * Report how long the adaptive warm-up before the phase took.
+     */
+    public void setWarmup(AdaptiveWarmup warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     * Export the final measurements of the phase. Only the first call has an effect, so the shutdown
+     * hook doesn't repeat an export that already happened. The exporter is left open for the next phase.
+     */
+    public synchronized void exportOverall() {
+        if (exported) {
+            return;
+        }
+        exported = true;
+        try {
+            Measurements.getMeasurements().exportMeasurementsFinal(exporter);
+            long opcount = 0;
+            long recon = 0;
+            for (Thread t : _threads) {
+                ClientThread ct = (ClientThread) t;
+                opcount += ct.getOpsDone();
+                recon += ct.getReconnections();
+            }
+            double runtime = ClientThread.getMeasuredWindow(_threads);
+            if (segmentstart != 0) {
+                opcount -= segmentops;
+                runtime = Math.max(0, getLastEnd() - segmentstart) / 1000000.0;
+            }
+            String overall = Measurements.getMeasurements().qualify("OVERALL");
+            exporter.write(overall, "Reconnections", recon);
+            exporter.write(overall, "RunTime(ms)", runtime);
+            exporter.write(overall, "Operations", opcount);
+            double throughput = 1000.0 * ((double) opcount) / runtime;
+            exporter.write(overall, "Throughput(ops/sec)", throughput);
+            if (warmup != null) {
+                String name = Measurements.getMeasurements().qualify("WARMUP");
+                exporter.write(name, "RunTime(ms)", warmup.getRuntime());
+                exporter.write(name, "Operations", warmup.getOperations());
+                exporter.write(name, "Stable", warmup.isStable() ? 1 : 0);
+            }
+            if (confidence != null) {
+                confidence.export(Measurements.getMeasurements().qualify("CONFIDENCE"), exporter);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Report the confidence intervals of the phase.
+     */
+    public void setConfidenceStop(ConfidenceStop confidence) {
+        this.confidence = confidence;
+    }
+
+    /**
+     * End the current segment of the phase after its parameters were changed: export the measurements and
+     * the throughput of the segment, and measure the following operations into the namespace of a new one.
+     *
+     * @param name    the namespace of the new segment
+     * @param change  a description of the change
+     * @param target  the target throughput of the segment that ends, or 0 for none
+     * @param active  the number of active threads of the segment that ends
+     */
+    public synchronized void startSegment(String name, String change, int target, int active) {
+        Measurements measurements = Measurements.getMeasurements();
+        long now = System.nanoTime();
+        long opcount = 0;
+        for (Thread t : _threads) {
+            opcount += ((ClientThread) t).getOpsDone();
+        }
+        if (!exported) {
+            try {
+                measurements.exportSegment(exporter);
+                long start = segmentstart;
+                if (start == 0) {
+                    start = now;
+                    for (Thread t : _threads) {
+                        ClientThread ct = (ClientThread) t;
+                        if (ct.getOpsDone() > 0) {
+                            start = Math.min(start, ct._starttime);
+                        }
+                    }
+                }
+                double runtime = (now - start) / 1000000.0;
+                String overall = measurements.qualify("OVERALL");
+                exporter.write(overall, "RunTime(ms)", runtime);
+                exporter.write(overall, "Operations", opcount - segmentops);
+                exporter.write(overall, "Throughput(ops/sec)", 1000.0 * (opcount - segmentops) / runtime);
+                exporter.write(overall, "Target(ops/sec)", target);
+                exporter.write(overall, "Threads", active);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        segmentstart = now;
+        segmentops = opcount;
+        measurements.startSegment(name, change);
+    }
+
+    private long getLastEnd() {
+        long end = segmentstart;
+        for (Thread t : _threads) {
+            end = Math.max(end, ((ClientThread) t)._endtime);
+        }
+        return end;
+    }
+
+    /**
+     * Run and periodically report export measurements to file.
+     */
+    public void run() {
+        boolean alldone;
+        do {
+            try {
+                sleep(sleeptime);
+            } catch (InterruptedException e) {
+                //do nothing
+            }
+
+            alldone = true;
+
+            //terminate this thread when all the worker threads are done
+            for (Thread t : _threads) {
+                if (t.getState() != Thread.State.TERMINATED) {
+                    alldone = false;
+                }
+            }
+
+            try {
+                Measurements.getMeasurements().exportMeasurementsPart(exporter);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } while (!alldone);
+        exportOverall();
+    }
+}
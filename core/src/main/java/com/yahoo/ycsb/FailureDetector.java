@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A circuit breaker shared by all client threads that decides when they reconnect to the DB.
+ * <p/>
+ * While the circuit is closed, operations run normally. It opens after reconnectionerrors consecutive failed
+ * operations, or when a thread stays below reconnectionthroughput for reconnectiontime. While it is open, the
+ * threads don't issue operations. After a jittered, exponentially growing backoff it becomes half open: every
+ * thread reconnects once, at most reconnectionconcurrency at a time, and the first successful operation closes
+ * the circuit again, while a failure opens it with a longer backoff.
+ */
+public class FailureDetector {
+    /**
+     * The number of consecutive failed operations, over all threads, that opens the circuit. Zero disables it.
+     */
+    public static final String ERRORS_PROPERTY = "reconnectionerrors";
+    public static final String ERRORS_PROPERTY_DEFAULT = "0";
+
+    /**
+     * The backoff in milliseconds after the circuit opens for the first time. It doubles every time the
+     * circuit opens again without having been closed.
+     */
+    public static final String BACKOFF_PROPERTY = "reconnectionbackoff";
+    public static final String BACKOFF_PROPERTY_DEFAULT = "100";
+
+    public static final String MAX_BACKOFF_PROPERTY = "reconnectionmaxbackoff";
+    public static final String MAX_BACKOFF_PROPERTY_DEFAULT = "10000";
+
+    /**
+     * The number of threads that may reconnect at the same time.
+     */
+    public static final String CONCURRENCY_PROPERTY = "reconnectionconcurrency";
+    public static final String CONCURRENCY_PROPERTY_DEFAULT = "4";
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int threshold;
+    private final long backoff;
+    private final long maxbackoff;
+    private final Semaphore reconnects;
+
+    private volatile State state = State.CLOSED;
+    private volatile int epoch = 0;
+    private volatile long retryat;
+    private final AtomicInteger consecutive = new AtomicInteger();
+    private int attempts = 0;
+
+    public FailureDetector(Properties props) {
+        threshold = Integer.parseInt(props.getProperty(ERRORS_PROPERTY, ERRORS_PROPERTY_DEFAULT));
+        backoff = Long.parseLong(props.getProperty(BACKOFF_PROPERTY, BACKOFF_PROPERTY_DEFAULT));
+        maxbackoff = Long.parseLong(props.getProperty(MAX_BACKOFF_PROPERTY, MAX_BACKOFF_PROPERTY_DEFAULT));
+        reconnects = new Semaphore(Integer.parseInt(props.getProperty(CONCURRENCY_PROPERTY, CONCURRENCY_PROPERTY_DEFAULT)), true);
+    }
+
+    /**
+     * @return true if the properties ask for reconnections, either on errors or on low throughput.
+     */
+    public static boolean isEnabled(Properties props) {
+        return (Integer.parseInt(props.getProperty(ERRORS_PROPERTY, ERRORS_PROPERTY_DEFAULT)) > 0)
+                || (Double.parseDouble(props.getProperty(ClientThread.RECONNECTION_THROUGHTPUT_PROPERTY,
+                ClientThread.RECONNECTION_THROUGHTPUT_DEFAULT)) > 0);
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * The number of times the circuit opened. A thread that connected before the current epoch must reconnect.
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Record the outcome of an operation.
+     */
+    public void record(boolean ok) {
+        if (ok) {
+            if (state == State.HALF_OPEN) {
+                close();
+            } else if (consecutive.get() != 0) {
+                consecutive.set(0);
+            }
+        } else if (state == State.HALF_OPEN) {
+            open("operation failed while reconnecting");
+        } else if ((state == State.CLOSED) && (threshold > 0) && (consecutive.incrementAndGet() >= threshold)) {
+            open(threshold + " consecutive failed operations");
+        }
+    }
+
+    /**
+     * Open the circuit for a failure seen outside of operations, such as low throughput or a failed reconnection.
+     */
+    public void reportFailure(String reason) {
+        if (state != State.OPEN) {
+            open(reason);
+        }
+    }
+
+    /**
+     * Return how long the threads must still wait before they may reconnect, in milliseconds, or 0 if the
+     * circuit is not open.
+     */
+    public long getWaitTime() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        long wait = retryat - System.currentTimeMillis();
+        if (wait > 0) {
+            return wait;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                state = State.HALF_OPEN;
+                System.err.println("Circuit half open, reconnecting.");
+            }
+        }
+        return 0;
+    }
+
+    public void acquireReconnect() throws InterruptedException {
+        reconnects.acquire();
+    }
+
+    public void releaseReconnect() {
+        reconnects.release();
+    }
+
+    private synchronized void open(String reason) {
+        if (state == State.OPEN) {
+            return;
+        }
+        attempts++;
+        long delay = backoff << Math.min(attempts - 1, 30);
+        if ((delay <= 0) || (delay > maxbackoff)) {
+            delay = maxbackoff;
+        }
+        //full jitter on the upper half, so the threads of several clients don't retry in lockstep
+        delay = delay / 2 + (long) (Utils.random().nextDouble() * (delay - delay / 2));
+        retryat = System.currentTimeMillis() + delay;
+        consecutive.set(0);
+        epoch++;
+        state = State.OPEN;
+        System.err.println("Circuit open (" + reason + "), reconnecting in " + delay + " ms.");
+    }
+
+    private synchronized void close() {
+        if (state != State.HALF_OPEN) {
+            return;
+        }
+        attempts = 0;
+        state = State.CLOSED;
+        System.err.println("Circuit closed.");
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yahoo.ycsb.generator.IntegerGenerator;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Decorator that injects faults into the operations of another DB, to rehearse failures without touching the
+ * nodes, e.g. to check readretrycount and retrydelay:
+ * <pre>
+ * -db com.yahoo.ycsb.FaultInjectionDB -p faultdb.db=com.yahoo.ycsb.db.MongoDbClient -p faultdb.read.errorrate=0.01
+ * </pre>
+ * In the order they are checked, an operation
+ * <ul>
+ * <li>fails after faultdb.timeout if its key is in a window of faultdb.partitions</li>
+ * <li>waits for the end of the stall if it starts in the last faultdb.stall.duration of every
+ * faultdb.stall.interval</li>
+ * <li>fails at once with the probability faultdb.errorrate</li>
+ * <li>fails after faultdb.timeout with the probability faultdb.timeoutrate</li>
+ * <li>takes the latency of the {@link InjectedLatency} properties under "faultdb." on top of its own</li>
+ * </ul>
+ * faultdb.&lt;operation&gt;.errorrate, .timeoutrate and .latency* override the properties for one operation. The
+ * random faults are drawn from {@link Utils#random()}, so they repeat with the seed property. The windows count
+ * from the first initialization of the DB in the JVM. Every injected fault is measured as
+ * INJECTED-&lt;fault&gt;-&lt;operation&gt;, e.g. INJECTED-TIMEOUT-READ, with the time it added.
+ */
+public class FaultInjectionDB extends DBDecorator {
+    public static final String PREFIX = "faultdb.";
+
+    /**
+     * The class name of the DB to inject the faults into.
+     */
+    public static final String DB_PROPERTY = "faultdb.db";
+
+    /**
+     * The probability that an operation fails at once, after faultdb. or faultdb.&lt;operation&gt;.
+     */
+    public static final String ERROR_RATE = "errorrate";
+    public static final String ERROR_RATE_DEFAULT = "0";
+
+    /**
+     * The probability that an operation fails after the timeout, after faultdb. or faultdb.&lt;operation&gt;.
+     */
+    public static final String TIMEOUT_RATE = "timeoutrate";
+    public static final String TIMEOUT_RATE_DEFAULT = "0";
+
+    /**
+     * The time a timed out or partitioned operation takes before it fails, in milliseconds.
+     */
+    public static final String TIMEOUT = "faultdb.timeout";
+    public static final String TIMEOUT_DEFAULT = "1000";
+
+    /**
+     * The period of the stalls, in milliseconds, 0 for none.
+     */
+    public static final String STALL_INTERVAL = "faultdb.stall.interval";
+    public static final String STALL_INTERVAL_DEFAULT = "0";
+
+    /**
+     * The length of a stall, at the end of every period, in milliseconds.
+     */
+    public static final String STALL_DURATION = "faultdb.stall.duration";
+    public static final String STALL_DURATION_DEFAULT = "0";
+
+    /**
+     * Comma separated list of the windows in which the DB is unreachable, as start-end in seconds, each
+     * optionally followed by :from..to to make only the keys from "from" up to, but not including, "to"
+     * unreachable, e.g. "30-60,90-120:user1..user5".
+     */
+    public static final String PARTITIONS = "faultdb.partitions";
+
+    static final int ERROR = 1;
+
+    /**
+     * The time of the first initialization, from which the windows count.
+     */
+    static final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * The faults of an operation.
+     */
+    static class Faults {
+        final String name;
+        final double errorrate;
+        final double timeoutrate;
+        final IntegerGenerator latency;
+
+        Faults(Properties p, String operation) throws IOException {
+            name = operation.toUpperCase();
+            errorrate = Double.parseDouble(InjectedLatency.getProperty(p, PREFIX, operation, ERROR_RATE, ERROR_RATE_DEFAULT));
+            timeoutrate = Double.parseDouble(InjectedLatency.getProperty(p, PREFIX, operation, TIMEOUT_RATE, TIMEOUT_RATE_DEFAULT));
+            latency = InjectedLatency.generator(p, PREFIX, operation);
+        }
+    }
+
+    /**
+     * A window of time in which a range of keys is unreachable.
+     */
+    static class Window {
+        final long start;
+        final long end;
+        final String fromkey;
+        final String tokey;
+
+        /**
+         * Parse a window of {@link FaultInjectionDB#PARTITIONS}.
+         */
+        Window(String window) {
+            String keys = null;
+            int colon = window.indexOf(':');
+            if (colon >= 0) {
+                keys = window.substring(colon + 1).trim();
+                window = window.substring(0, colon);
+            }
+            int dash = window.indexOf('-');
+            if (dash < 0) {
+                throw new IllegalArgumentException("A partition window is start-end, not \"" + window + "\"");
+            }
+            start = 1000 * Long.parseLong(window.substring(0, dash).trim());
+            end = 1000 * Long.parseLong(window.substring(dash + 1).trim());
+            if (keys == null) {
+                fromkey = null;
+                tokey = null;
+            } else {
+                int dots = keys.indexOf("..");
+                if (dots < 0) {
+                    throw new IllegalArgumentException("A partitioned key range is from..to, not \"" + keys + "\"");
+                }
+                fromkey = keys.substring(0, dots);
+                tokey = keys.substring(dots + 2);
+            }
+        }
+
+        /**
+         * Return true if the key is unreachable at the given time since the epoch, in milliseconds.
+         */
+        boolean contains(long time, String key) {
+            if (time < start || time >= end) {
+                return false;
+            }
+            return (fromkey == null) || (key.compareTo(fromkey) >= 0 && key.compareTo(tokey) < 0);
+        }
+    }
+
+    Measurements _measurements;
+    long timeout;
+    long stallinterval;
+    long stallduration;
+    Vector<Window> partitions;
+    Faults read;
+    Faults scan;
+    Faults update;
+    Faults insert;
+    Faults delete;
+
+    protected String dbProperty() {
+        return DB_PROPERTY;
+    }
+
+    public void init() throws DBException {
+        Properties p = getProperties();
+        epoch.compareAndSet(0, System.currentTimeMillis());
+        _measurements = Measurements.getMeasurements();
+        timeout = Long.parseLong(p.getProperty(TIMEOUT, TIMEOUT_DEFAULT));
+        stallinterval = Long.parseLong(p.getProperty(STALL_INTERVAL, STALL_INTERVAL_DEFAULT));
+        stallduration = Long.parseLong(p.getProperty(STALL_DURATION, STALL_DURATION_DEFAULT));
+        partitions = new Vector<Window>();
+        try {
+            String windows = p.getProperty(PARTITIONS, "");
+            for (String window : windows.split(",")) {
+                if (window.trim().length() > 0) {
+                    partitions.add(new Window(window));
+                }
+            }
+            read = new Faults(p, "read");
+            scan = new Faults(p, "scan");
+            update = new Faults(p, "update");
+            insert = new Faults(p, "insert");
+            delete = new Faults(p, "delete");
+        } catch (IOException e) {
+            throw new DBException(e);
+        } catch (IllegalArgumentException e) {
+            throw new DBException(e);
+        }
+        super.init();
+    }
+
+    void record(String fault, Faults op, long nanos) {
+        _measurements.measure("INJECTED-" + fault + "-" + op.name, (int) (nanos / 1000));
+    }
+
+    /**
+     * Wait for the given time and record it as the fault.
+     */
+    void inject(String fault, Faults op, long nanos) {
+        long st = System.nanoTime();
+        InjectedLatency.waitUntil(st + nanos);
+        record(fault, op, System.nanoTime() - st);
+    }
+
+    /**
+     * Inject the faults into an operation on the given key.
+     *
+     * @return 0 if the operation goes on to the DB, or else the error it fails with
+     */
+    int inject(Faults op, String key) {
+        long time = System.currentTimeMillis() - epoch.get();
+        for (Window w : partitions) {
+            if (w.contains(time, key)) {
+                inject("PARTITION", op, timeout * 1000000);
+                return ERROR;
+            }
+        }
+        if (stallinterval > 0) {
+            long offset = time % stallinterval;
+            if (offset >= stallinterval - stallduration) {
+                inject("STALL", op, (stallinterval - offset) * 1000000);
+            }
+        }
+        Random random = Utils.random();
+        if (op.errorrate > 0 && random.nextDouble() < op.errorrate) {
+            record("ERROR", op, 0);
+            return ERROR;
+        }
+        if (op.timeoutrate > 0 && random.nextDouble() < op.timeoutrate) {
+            inject("TIMEOUT", op, timeout * 1000000);
+            return ERROR;
+        }
+        if (op.latency != null) {
+            inject("LATENCY", op, op.latency.nextInt());
+        }
+        return 0;
+    }
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+        int res = inject(read, key);
+        return (res != 0) ? res : _db.read(table, key, field, result);
+    }
+
+    public int scan(String table, String startkey, int recordcount, String field, Vector<HashMap<String, ByteIterator>> result) {
+        int res = inject(scan, startkey);
+        return (res != 0) ? res : _db.scan(table, startkey, recordcount, field, result);
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+        int res = inject(update, key);
+        return (res != 0) ? res : _db.update(table, key, values);
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+        int res = inject(insert, key);
+        return (res != 0) ? res : _db.insert(table, key, values);
+    }
+
+    public int delete(String table, String key) {
+        int res = inject(delete, key);
+        return (res != 0) ? res : _db.delete(table, key);
+    }
+}
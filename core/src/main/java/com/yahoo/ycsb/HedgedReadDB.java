@@ -0,0 +1,367 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Decorator that hedges the reads of another DB: if a read hasn't completed after a delay, the same read is
+ * sent again, and the first successful reply is returned, which cuts the tail latency caused by a slow replica
+ * at the price of some extra reads. The delay is hedgeddb.delay, or else the hedgeddb.percentile of the recent
+ * read latencies, so about (100 - percentile)% of the reads are hedged.
+ * <p>
+ * The reads run on threads of their own, with one of a pool of DBs, and the hedges with one of a pool of DBs of
+ * their own, with the properties under hedgeddb.hedge., e.g. hedgeddb.hedge.connectionpoolsize. The hedges
+ * also get the global state of their DBs, such as the connection pool of a binding, to themselves, so a hedge
+ * doesn't wait for a connection held by a slow read. The other operations use a DB of the first pool in the
+ * client thread.
+ * The losing read is ignored, or interrupted with hedgeddb.cancel=true. Every hedge is measured as HEDGE-READ,
+ * with the delay after which it was sent, and every hedge that won as HEDGE-WIN-READ, with the latency of the
+ * read, so the hedge rate, and the extra load, of a phase is the number of HEDGE-READ operations over READ.
+ * </p>
+ */
+public class HedgedReadDB extends DBDecorator {
+    /**
+     * The class name of the DB to read from.
+     */
+    public static final String DB_PROPERTY = "hedgeddb.db";
+
+    /**
+     * The time after which a read is hedged, in milliseconds, or none to use the percentile.
+     */
+    public static final String DELAY = "hedgeddb.delay";
+
+    /**
+     * The percentile of the recent read latencies after which a read is hedged, if there is no delay.
+     */
+    public static final String PERCENTILE = "hedgeddb.percentile";
+    public static final String PERCENTILE_DEFAULT = "95";
+
+    /**
+     * The prefix of the properties of the DBs of the hedges, which override the ones of the DBs of the reads.
+     */
+    public static final String HEDGE = "hedgeddb.hedge";
+
+    /**
+     * Set to true to interrupt the read that lost.
+     */
+    public static final String CANCEL = "hedgeddb.cancel";
+    public static final String CANCEL_DEFAULT = "false";
+
+    /**
+     * The recent read latencies of all the instances, and their percentile.
+     */
+    static class RecentLatencies {
+        static final int SIZE = 1024;
+        static final int UPDATE_INTERVAL = 128;
+
+        final AtomicLongArray samples = new AtomicLongArray(SIZE);
+        final AtomicLong count = new AtomicLong();
+        final double percentile;
+        volatile long value = Long.MAX_VALUE;
+
+        RecentLatencies(double percentile) {
+            this.percentile = percentile;
+        }
+
+        void add(long nanos) {
+            long n = count.getAndIncrement();
+            samples.set((int) (n % SIZE), nanos);
+            if ((n + 1) % UPDATE_INTERVAL == 0) {
+                update(Math.min(n + 1, SIZE));
+            }
+        }
+
+        /**
+         * Recompute the percentile of the given number of samples.
+         */
+        void update(long n) {
+            long[] sorted = new long[(int) n];
+            for (int i = 0; i < n; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            value = sorted[(int) Math.min(n - 1, Math.ceil(percentile / 100 * n) - 1)];
+        }
+
+        /**
+         * Return the percentile, or Long.MAX_VALUE until there are enough samples.
+         */
+        long get() {
+            return value;
+        }
+    }
+
+    /**
+     * The outcome of a read.
+     */
+    static class Reply {
+        final int res;
+        final HashMap<String, ByteIterator> result;
+
+        Reply(int res, HashMap<String, ByteIterator> result) {
+            this.res = res;
+            this.result = result;
+        }
+    }
+
+    static RecentLatencies recent;
+    static final AtomicLong reads = new AtomicLong();
+    static final AtomicLong hedges = new AtomicLong();
+    static final AtomicLong wins = new AtomicLong();
+
+    Measurements _measurements;
+    long delay;
+    boolean cancel;
+    RecentLatencies _recent;
+    ExecutorService executor;
+    final ConcurrentLinkedQueue<DB> idle = new ConcurrentLinkedQueue<DB>();
+    final ConcurrentLinkedQueue<DB> idlehedges = new ConcurrentLinkedQueue<DB>();
+    final Vector<DB> all = new Vector<DB>();
+
+    protected String dbProperty() {
+        return DB_PROPERTY;
+    }
+
+    protected Vector<DB> decorated() {
+        return new Vector<DB>(all);
+    }
+
+    static synchronized RecentLatencies recent(Properties p) {
+        if (recent == null) {
+            recent = new RecentLatencies(Double.parseDouble(p.getProperty(PERCENTILE, PERCENTILE_DEFAULT)));
+            reads.set(0);
+            hedges.set(0);
+            wins.set(0);
+        }
+        return recent;
+    }
+
+    public void init() throws DBException {
+        Properties p = getProperties();
+        String d = p.getProperty(DELAY);
+        delay = (d == null) ? -1 : (long) (Double.parseDouble(d) * 1000000);
+        cancel = Boolean.parseBoolean(p.getProperty(CANCEL, CANCEL_DEFAULT));
+        _recent = recent(p);
+        _measurements = Measurements.getMeasurements();
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "hedgeddb-read");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        //the first DB of the pool, so a DB that can't be created fails here
+        release(borrow(false), false);
+    }
+
+    public void cleanup() throws DBException {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            //do nothing
+        }
+        for (DB db : all) {
+            cleanupDB(db);
+        }
+        all.clear();
+        idle.clear();
+        idlehedges.clear();
+    }
+
+    public void cleanupGlobal() throws DBException {
+        synchronized (HedgedReadDB.class) {
+            if (recent == null) {
+                return;
+            }
+            long r = reads.get();
+            long h = hedges.get();
+            DecimalFormat f = new DecimalFormat("#.####");
+            System.err.println("Hedged reads: " + h + " of " + r + " reads hedged (rate " + f.format((r > 0) ? (double) h / r : 0)
+                    + "), " + wins.get() + " hedges won (win rate " + f.format((h > 0) ? (double) wins.get() / h : 0) + ")");
+            recent = null;
+        }
+    }
+
+    /**
+     * Return an idle DB of the pool of the reads or of the hedges, or a new one if all are busy.
+     */
+    DB borrow(boolean hedge) throws DBException {
+        DB db = (hedge ? idlehedges : idle).poll();
+        if (db == null) {
+            String dbname = getProperties().getProperty(DB_PROPERTY);
+            db = hedge ? createDB(dbname, HEDGE + ".") : createDB(dbname);
+            all.add(db);
+        }
+        return db;
+    }
+
+    void release(DB db, boolean hedge) {
+        (hedge ? idlehedges : idle).add(db);
+    }
+
+    /**
+     * Return a read to run on a thread of the executor. The first read of every read, started at st, adds its own
+     * latency to the recent latencies even if its hedge wins, so the percentile is the one of the DB, tail
+     * included; a hedge, with st &lt; 0, doesn't.
+     */
+    Callable<Reply> readTask(final String table, final String key, final String field, final long st) {
+        return new Callable<Reply>() {
+            public Reply call() throws DBException {
+                try {
+                    DB db = borrow(st < 0);
+                    try {
+                        HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+                        return new Reply(db.read(table, key, field, result), result);
+                    } finally {
+                        release(db, st < 0);
+                    }
+                } finally {
+                    //a cancelled read only took longer than this, which is all the percentile needs
+                    if (st >= 0) {
+                        _recent.add(System.nanoTime() - st);
+                    }
+                }
+            }
+        };
+    }
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+        long st = System.nanoTime();
+        reads.incrementAndGet();
+        CompletionService<Reply> replies = new ExecutorCompletionService<Reply>(executor);
+        Future<Reply> first = replies.submit(readTask(table, key, field, st));
+        Future<Reply> hedge = null;
+        try {
+            long wait = (delay >= 0) ? delay : _recent.get();
+            Future<Reply> done = replies.poll(wait, TimeUnit.NANOSECONDS);
+            if (done == null) {
+                hedges.incrementAndGet();
+                _measurements.measure("HEDGE-READ", (int) ((System.nanoTime() - st) / 1000));
+                hedge = replies.submit(readTask(table, key, field, -1));
+                done = replies.take();
+            }
+            Reply reply = done.get();
+            if (reply.res != 0 && hedge != null) {
+                //the other read may still succeed
+                Future<Reply> other = replies.take();
+                Reply r = other.get();
+                if (r.res == 0) {
+                    done = other;
+                    reply = r;
+                }
+            }
+            long latency = System.nanoTime() - st;
+            if (done == hedge) {
+                wins.incrementAndGet();
+                _measurements.measure("HEDGE-WIN-READ", (int) (latency / 1000));
+            }
+            Future<Reply> loser = (done == first) ? hedge : first;
+            if (cancel && loser != null) {
+                loser.cancel(true);
+            }
+            result.putAll(reply.result);
+            return reply.res;
+        } catch (InterruptedException e) {
+            first.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            return 1;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return 1;
+        }
+    }
+
+    public int scan(String table, String startkey, int recordcount, String field, Vector<HashMap<String, ByteIterator>> result) {
+        try {
+            DB db = borrow(false);
+            try {
+                return db.scan(table, startkey, recordcount, field, result);
+            } finally {
+                release(db, false);
+            }
+        } catch (DBException e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+        try {
+            DB db = borrow(false);
+            try {
+                return db.update(table, key, values);
+            } finally {
+                release(db, false);
+            }
+        } catch (DBException e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+        try {
+            DB db = borrow(false);
+            try {
+                return db.insert(table, key, values);
+            } finally {
+                release(db, false);
+            }
+        } catch (DBException e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+
+    public int delete(String table, String key) {
+        try {
+            DB db = borrow(false);
+            try {
+                return db.delete(table, key);
+            } finally {
+                release(db, false);
+            }
+        } catch (DBException e) {
+            e.printStackTrace();
+            return 1;
+        }
+    }
+}
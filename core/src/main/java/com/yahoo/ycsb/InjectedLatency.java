@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.locks.LockSupport;
+
+import com.yahoo.ycsb.generator.BimodalGenerator;
+import com.yahoo.ycsb.generator.ConstantIntegerGenerator;
+import com.yahoo.ycsb.generator.HistogramGenerator;
+import com.yahoo.ycsb.generator.IntegerGenerator;
+import com.yahoo.ycsb.generator.LognormalGenerator;
+
+/**
+ * Latencies a DB adds to its operations to behave like a real store, drawn from a distribution in nanoseconds,
+ * and waiting for them with nanosecond precision. The distribution is configured with properties under a
+ * prefix, e.g. for MemoryDB:
+ * <pre>
+ * memorydb.latency=lognormal
+ * memorydb.latency.mean=500
+ * memorydb.scan.latency.mean=5000
+ * </pre>
+ * where a property for an operation, memorydb.&lt;operation&gt;.latency*, overrides the one for all operations.
+ * The values of the properties are in microseconds, and may have fractions.
+ */
+public class InjectedLatency {
+    /**
+     * The distribution: none, fixed, lognormal, bimodal or histogram.
+     */
+    public static final String LATENCY = "latency";
+    public static final String LATENCY_DEFAULT = "none";
+
+    /**
+     * The latency of fixed, the mean of lognormal, and the mean of the fast mode of bimodal.
+     */
+    public static final String MEAN = "latency.mean";
+    public static final String MEAN_DEFAULT = "100";
+
+    /**
+     * The standard deviation of the logarithm of the latency of lognormal and of both modes of bimodal.
+     */
+    public static final String SIGMA = "latency.sigma";
+    public static final String SIGMA_DEFAULT = "0.5";
+
+    /**
+     * The mean of the slow mode of bimodal, by default 10 times the mean.
+     */
+    public static final String SLOW = "latency.slow";
+
+    /**
+     * The fraction of the operations in the slow mode of bimodal.
+     */
+    public static final String SLOW_FRACTION = "latency.slowfraction";
+    public static final String SLOW_FRACTION_DEFAULT = "0.01";
+
+    /**
+     * The histogram of histogram, in the format of {@link HistogramGenerator}, with the latency in nanoseconds,
+     * so a BlockSize of 1000 makes the buckets microseconds.
+     */
+    public static final String FILE = "latency.file";
+
+    /**
+     * The time before the deadline from which a thread spins instead of parking, as parking can wake up late
+     * by tens of microseconds.
+     */
+    static final long SPIN_NANOS = 50000;
+
+    /**
+     * Return the property for the operation, or else for all operations.
+     */
+    static String getProperty(Properties p, String prefix, String operation, String name, String def) {
+        return p.getProperty(prefix + operation + "." + name, p.getProperty(prefix + name, def));
+    }
+
+    /**
+     * Return the generator of the latencies of an operation in nanoseconds, or null if there are none.
+     *
+     * @param prefix The prefix of the properties, e.g. "memorydb."
+     * @param operation The operation, e.g. "read"
+     */
+    public static IntegerGenerator generator(Properties p, String prefix, String operation) throws IOException {
+        String latency = getProperty(p, prefix, operation, LATENCY, LATENCY_DEFAULT);
+        double mean = 1000 * Double.parseDouble(getProperty(p, prefix, operation, MEAN, MEAN_DEFAULT));
+        double sigma = Double.parseDouble(getProperty(p, prefix, operation, SIGMA, SIGMA_DEFAULT));
+        if (latency.equals("none")) {
+            return null;
+        } else if (latency.equals("fixed")) {
+            return new ConstantIntegerGenerator((int) Math.min(mean, Integer.MAX_VALUE));
+        } else if (latency.equals("lognormal")) {
+            return new LognormalGenerator(mean, sigma);
+        } else if (latency.equals("bimodal")) {
+            String slow = getProperty(p, prefix, operation, SLOW, null);
+            double slowmean = (slow == null) ? 10 * mean : 1000 * Double.parseDouble(slow);
+            double slowfraction = Double.parseDouble(getProperty(p, prefix, operation, SLOW_FRACTION, SLOW_FRACTION_DEFAULT));
+            return new BimodalGenerator(new LognormalGenerator(mean, sigma), new LognormalGenerator(slowmean, sigma), slowfraction);
+        } else if (latency.equals("histogram")) {
+            String file = getProperty(p, prefix, operation, FILE, null);
+            if (file == null) {
+                throw new IOException("No " + prefix + FILE + " for the histogram latency");
+            }
+            return new HistogramGenerator(file);
+        }
+        throw new IOException("Unknown " + prefix + LATENCY + " \"" + latency + "\"");
+    }
+
+    /**
+     * Wait until System.nanoTime() reaches the deadline: park while it is far, and spin through the last
+     * microseconds, so short latencies are exact. Returns early if the thread is interrupted, e.g. by
+     * operationtimeout, and leaves it interrupted.
+     */
+    public static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+}
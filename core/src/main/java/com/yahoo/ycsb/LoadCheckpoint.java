@@ -0,0 +1,231 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
+import java.util.Properties;
+
+/**
+ * Splits the keys of a load into chunks and keeps track of the chunks that were inserted completely in a
+ * checkpoint file, so a client that died during a long load can be restarted with the same properties and only
+ * insert the chunks that are not done yet.
+ * <p/>
+ * The threads take the chunks one at a time, in order, as they finish the previous one, so a slow thread holds up
+ * no more than the chunk it is working on. The checkpoint file is rewritten at most every
+ * loadcheckpoint.interval ms, and at the end of the load. Chunks that were in progress when the client died are
+ * inserted again from their first key, so the binding should tolerate existing keys, or ignoreinserterrors be set.
+ */
+public class LoadCheckpoint {
+    /**
+     * The checkpoint file, or none to insert the keys in one sequence without checkpoints.
+     */
+    public static final String CHECKPOINT_PROPERTY = "loadcheckpoint";
+
+    /**
+     * The number of keys in a chunk.
+     */
+    public static final String CHUNK_SIZE_PROPERTY = "loadcheckpoint.chunksize";
+    public static final String CHUNK_SIZE_PROPERTY_DEFAULT = "100000";
+
+    /**
+     * The shortest time between two writes of the checkpoint file, in milliseconds.
+     */
+    public static final String INTERVAL_PROPERTY = "loadcheckpoint.interval";
+    public static final String INTERVAL_PROPERTY_DEFAULT = "10000";
+
+    /**
+     * The keys of one chunk, from start (inclusive) to end (exclusive).
+     */
+    public static class Chunk {
+        final int index;
+        final int start;
+        final int end;
+
+        Chunk(int index, int start, int end) {
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+    }
+
+    private final File file;
+    private final int start;
+    private final int count;
+    private final int chunksize;
+    private final int chunks;
+    private final long interval;
+
+    private final BitSet done = new BitSet();
+    private int next = 0;
+    private long lastwrite;
+
+    /**
+     * @param file      the checkpoint file, read if it exists
+     * @param start     the first key of the load
+     * @param count     the number of keys to load
+     * @param chunksize the number of keys in a chunk
+     * @param interval  the shortest time between two writes of the file, in milliseconds
+     */
+    public LoadCheckpoint(File file, int start, int count, int chunksize, long interval) throws IOException {
+        if (chunksize <= 0) {
+            throw new IllegalArgumentException(CHUNK_SIZE_PROPERTY + " must be positive");
+        }
+        this.file = file;
+        this.start = start;
+        this.count = count;
+        this.chunksize = chunksize;
+        this.chunks = (int) ((count + (long) chunksize - 1) / chunksize);
+        this.interval = interval;
+        if (file.exists()) {
+            read();
+        }
+        lastwrite = System.currentTimeMillis();
+    }
+
+    public static boolean isEnabled(Properties props) {
+        return props.getProperty(CHECKPOINT_PROPERTY) != null;
+    }
+
+    /**
+     * Return the next chunk that is not done, or null if there is none left.
+     */
+    public synchronized Chunk nextChunk() {
+        next = done.nextClearBit(next);
+        if (next >= chunks) {
+            return null;
+        }
+        int index = next++;
+        int first = (int) (start + (long) index * chunksize);
+        return new Chunk(index, first, (int) Math.min((long) first + chunksize, (long) start + count));
+    }
+
+    /**
+     * Record that all the keys of the given chunk were inserted, and write the checkpoint file if it is due.
+     */
+    public synchronized void done(Chunk chunk) throws IOException {
+        done.set(chunk.index);
+        if (System.currentTimeMillis() - lastwrite >= interval) {
+            write();
+        }
+    }
+
+    public synchronized int getChunkCount() {
+        return chunks;
+    }
+
+    public synchronized int getDoneCount() {
+        return done.cardinality();
+    }
+
+    /**
+     * Return the number of keys in the chunks that are done.
+     */
+    public synchronized long getDoneKeys() {
+        long ret = (long) done.cardinality() * chunksize;
+        if ((chunks > 0) && done.get(chunks - 1)) {
+            ret -= (long) chunks * chunksize - count;
+        }
+        return ret;
+    }
+
+    /**
+     * Write the chunks that are done to the checkpoint file. The file is replaced in one step, so a crash while
+     * writing leaves the previous checkpoint.
+     */
+    public synchronized void write() throws IOException {
+        Properties p = new Properties();
+        p.setProperty("insertstart", Integer.toString(start));
+        p.setProperty("insertcount", Integer.toString(count));
+        p.setProperty("chunksize", Integer.toString(chunksize));
+        p.setProperty("done", toRanges(done));
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            p.store(out, "YCSB load checkpoint, " + done.cardinality() + " of " + chunks + " chunks done");
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Could not replace " + file + " with " + tmp);
+        }
+        lastwrite = System.currentTimeMillis();
+    }
+
+    private void read() throws IOException {
+        Properties p = new Properties();
+        InputStream in = new FileInputStream(file);
+        try {
+            p.load(in);
+        } finally {
+            in.close();
+        }
+        //the chunks of another load would skip the wrong keys
+        if (!Integer.toString(start).equals(p.getProperty("insertstart"))
+                || !Integer.toString(count).equals(p.getProperty("insertcount"))
+                || !Integer.toString(chunksize).equals(p.getProperty("chunksize"))) {
+            throw new IOException("The checkpoint " + file + " is for insertstart=" + p.getProperty("insertstart")
+                    + " insertcount=" + p.getProperty("insertcount") + " chunksize=" + p.getProperty("chunksize")
+                    + ", not for insertstart=" + start + " insertcount=" + count + " chunksize=" + chunksize);
+        }
+        fromRanges(p.getProperty("done", ""), done);
+    }
+
+    /**
+     * Format the set bits as ranges, e.g. "0-15,17,20-30".
+     */
+    static String toRanges(BitSet bits) {
+        StringBuilder ret = new StringBuilder();
+        for (int i = bits.nextSetBit(0); i >= 0; ) {
+            int end = bits.nextClearBit(i) - 1;
+            ret.append((ret.length() > 0) ? "," : "").append(i);
+            if (end > i) {
+                ret.append("-").append(end);
+            }
+            i = bits.nextSetBit(end + 1);
+        }
+        return ret.toString();
+    }
+
+    static void fromRanges(String ranges, BitSet bits) {
+        for (String part : ranges.split(",")) {
+            part = part.trim();
+            if (part.length() == 0) {
+                continue;
+            }
+            int dash = part.indexOf('-');
+            int from = Integer.parseInt((dash > 0) ? part.substring(0, dash) : part);
+            int to = (dash > 0) ? Integer.parseInt(part.substring(dash + 1)) : from;
+            bits.set(from, to + 1);
+        }
+    }
+}
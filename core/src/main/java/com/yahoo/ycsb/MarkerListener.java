@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Listens on a local port for event markers and adds them to the availability timeline. Every line received
+ * is one marker, so a failover script can run e.g.
+ * <pre>
+ * echo "node killed" | nc localhost 7712
+ * </pre>
+ */
+public class MarkerListener extends Thread {
+    /**
+     * The local port to listen on for markers, or 0 to not listen.
+     */
+    public static final String PORT_PROPERTY = "availability.port";
+    public static final String PORT_PROPERTY_DEFAULT = "0";
+
+    private final ServerSocket server;
+
+    public MarkerListener(int port) throws IOException {
+        server = new ServerSocket(port, 50, InetAddress.getByName("localhost"));
+        setDaemon(true);
+        setName("MarkerListener");
+    }
+
+    /**
+     * Start listening if the properties ask for it.
+     */
+    public static void start(Properties props) {
+        int port = Integer.parseInt(props.getProperty(PORT_PROPERTY, PORT_PROPERTY_DEFAULT));
+        if (port <= 0) {
+            return;
+        }
+        try {
+            new MarkerListener(port).start();
+            System.err.println("Listening for availability markers on localhost:" + port);
+        } catch (IOException e) {
+            e.printStackTrace();
+            e.printStackTrace(System.out);
+            System.exit(0);
+        }
+    }
+
+    public void run() {
+        while (true) {
+            try {
+                Socket socket = server.accept();
+                try {
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        line = line.trim();
+                        if (line.length() > 0) {
+                            Measurements.getMeasurements().mark(line);
+                            System.err.println("Marker: " + line);
+                        }
+                    }
+                } finally {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
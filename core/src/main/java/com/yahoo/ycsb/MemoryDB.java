@@ -0,0 +1,355 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.yahoo.ycsb.generator.IntegerGenerator;
+
+/**
+ * DB that keeps the records in memory, in a sorted map per table shared by all the client threads, so the
+ * operations behave as in a real store: reads return what was written, scans return the records that follow
+ * the start key, and reads, updates and deletes of missing records fail. The operations take the latency drawn
+ * from the distributions of {@link InjectedLatency} under "memorydb.", e.g. memorydb.latency=lognormal, which
+ * makes it a reference to check workloads, throttling and the measurements against without a cluster.
+ * <p>
+ * With memorydb.offheap=true, the records are kept outside the Java heap, in the large direct buffers of the
+ * {@link OffHeapArena}, so the heap only holds their keys and handles. The records are gone when the JVM exits,
+ * so load and run in the same JVM with the phases property.
+ * </p>
+ */
+public class MemoryDB extends DB
+{
+	public static final String PREFIX="memorydb.";
+
+	public static final String OFF_HEAP="memorydb.offheap";
+	public static final String OFF_HEAP_DEFAULT="false";
+
+	static final Charset UTF8=Charset.forName("UTF-8");
+
+	private static final ConcurrentHashMap<String,ConcurrentSkipListMap<String,Object>> tables=new ConcurrentHashMap<String,ConcurrentSkipListMap<String,Object>>();
+
+	boolean offheap;
+	IntegerGenerator readlatency;
+	IntegerGenerator scanlatency;
+	IntegerGenerator updatelatency;
+	IntegerGenerator insertlatency;
+	IntegerGenerator deletelatency;
+
+	public void init() throws DBException
+	{
+		offheap=Boolean.parseBoolean(getProperties().getProperty(OFF_HEAP, OFF_HEAP_DEFAULT));
+		try
+		{
+			readlatency=InjectedLatency.generator(getProperties(), PREFIX, "read");
+			scanlatency=InjectedLatency.generator(getProperties(), PREFIX, "scan");
+			updatelatency=InjectedLatency.generator(getProperties(), PREFIX, "update");
+			insertlatency=InjectedLatency.generator(getProperties(), PREFIX, "insert");
+			deletelatency=InjectedLatency.generator(getProperties(), PREFIX, "delete");
+		}
+		catch (IOException e)
+		{
+			throw new DBException(e);
+		}
+	}
+
+	/**
+	 * Remove all the records of all the tables.
+	 */
+	public static void clear()
+	{
+		for (ConcurrentSkipListMap<String,Object> table : tables.values())
+		{
+			for (Object stored : table.values())
+			{
+				release(stored);
+			}
+		}
+		tables.clear();
+	}
+
+	static ConcurrentSkipListMap<String,Object> table(String name)
+	{
+		ConcurrentSkipListMap<String,Object> table=tables.get(name);
+		if (table==null)
+		{
+			table=new ConcurrentSkipListMap<String,Object>();
+			ConcurrentSkipListMap<String,Object> existing=tables.putIfAbsent(name, table);
+			if (existing!=null)
+			{
+				table=existing;
+			}
+		}
+		return table;
+	}
+
+	/**
+	 * Wait until the operation that started at the given time has taken its latency.
+	 */
+	static void complete(long start, IntegerGenerator latency)
+	{
+		if (latency!=null)
+		{
+			InjectedLatency.waitUntil(start+latency.nextInt());
+		}
+	}
+
+	/**
+	 * Encode a record as the number of fields followed by the length and bytes of the name and of the value of
+	 * every field.
+	 */
+	static ByteBuffer encode(Map<String,byte[]> fields)
+	{
+		byte[][] names=new byte[fields.size()][];
+		byte[][] values=new byte[fields.size()][];
+		int size=4;
+		int i=0;
+		for (Map.Entry<String,byte[]> field : fields.entrySet())
+		{
+			names[i]=field.getKey().getBytes(UTF8);
+			values[i]=field.getValue();
+			size+=8+names[i].length+values[i].length;
+			i++;
+		}
+
+		ByteBuffer record=ByteBuffer.allocate(size);
+		record.putInt(names.length);
+		for (i=0; i<names.length; i++)
+		{
+			record.putInt(names[i].length).put(names[i]);
+			record.putInt(values[i].length).put(values[i]);
+		}
+		record.flip();
+		return record;
+	}
+
+	/**
+	 * Return the encoded record to keep in a table or a cache: the buffer, or its handle in the off-heap arena.
+	 */
+	static Object store(Map<String,byte[]> fields, boolean offheap)
+	{
+		ByteBuffer record=encode(fields);
+		return offheap ? (Object)OffHeapArena.shared().allocate(record) : record;
+	}
+
+	/**
+	 * Return the record kept by {@link #store(Map, boolean)}, or null if it was released in the meantime.
+	 */
+	static ByteBuffer load(Object stored)
+	{
+		return (stored instanceof Long) ? OffHeapArena.shared().get((Long)stored) : (ByteBuffer)stored;
+	}
+
+	/**
+	 * Release a record kept by {@link #store(Map, boolean)} once no table or cache holds it any more.
+	 */
+	static void release(Object stored)
+	{
+		if (stored instanceof Long)
+		{
+			OffHeapArena.shared().free((Long)stored);
+		}
+	}
+
+	/**
+	 * Return the record of the key, or null if there is none.
+	 */
+	static ByteBuffer current(ConcurrentSkipListMap<String,Object> table, String key)
+	{
+		Object stored;
+		while ((stored=table.get(key))!=null)
+		{
+			ByteBuffer record=load(stored);
+			//retry if another thread replaced the record in the meantime
+			if (record!=null)
+			{
+				return record;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Decode the given field of a record, or all of them if it is null, into the result.
+	 */
+	static void decode(ByteBuffer record, String field, Map<String,ByteIterator> result)
+	{
+		//a view of its own, as other threads read the record at the same time
+		ByteBuffer r=record.duplicate();
+		int fieldcount=r.getInt();
+		for (int i=0; i<fieldcount; i++)
+		{
+			byte[] name=new byte[r.getInt()];
+			r.get(name);
+			int length=r.getInt();
+			String k=new String(name, UTF8);
+			if (field==null || field.equals(k))
+			{
+				byte[] value=new byte[length];
+				r.get(value);
+				result.put(k, new ByteArrayByteIterator(value));
+			}
+			else
+			{
+				r.position(r.position()+length);
+			}
+		}
+	}
+
+	/**
+	 * Read a record from the database. Each field/value pair from the result will be stored in a HashMap.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to read.
+	 * @param field The field to read, or null for all of them
+	 * @param result A HashMap of field/value pairs for the result
+	 * @return Zero on success, one if the record doesn't exist
+	 */
+	public int read(String table, String key, String field, HashMap<String,ByteIterator> result)
+	{
+		long start=System.nanoTime();
+		ByteBuffer record=current(table(table), key);
+		if (record!=null)
+		{
+			decode(record, field, result);
+		}
+		complete(start, readlatency);
+		return (record!=null) ? 0 : 1;
+	}
+
+	/**
+	 * Perform a range scan for a set of records in the database. Each field/value pair from the result will be stored in a HashMap.
+	 *
+	 * @param table The name of the table
+	 * @param startkey The record key of the first record to read.
+	 * @param recordcount The number of records to read
+	 * @param field The field to read, or null for all of them
+	 * @param result A Vector of HashMaps, where each HashMap is a set field/value pairs for one record
+	 * @return Zero on success
+	 */
+	public int scan(String table, String startkey, int recordcount, String field, Vector<HashMap<String,ByteIterator>> result)
+	{
+		long start=System.nanoTime();
+		ConcurrentSkipListMap<String,Object> t=table(table);
+		for (Map.Entry<String,Object> entry : t.tailMap(startkey, true).entrySet())
+		{
+			if (result.size()>=recordcount)
+			{
+				break;
+			}
+			ByteBuffer record=load(entry.getValue());
+			if (record==null && (record=current(t, entry.getKey()))==null)
+			{
+				continue;
+			}
+			HashMap<String,ByteIterator> values=new HashMap<String,ByteIterator>();
+			decode(record, field, values);
+			result.add(values);
+		}
+		complete(start, scanlatency);
+		return 0;
+	}
+
+	/**
+	 * Update a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+	 * record key, overwriting any existing values with the same field name.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to write.
+	 * @param values A HashMap of field/value pairs to update in the record
+	 * @return Zero on success, one if the record doesn't exist
+	 */
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		long start=System.nanoTime();
+		ConcurrentSkipListMap<String,Object> t=table(table);
+		HashMap<String,byte[]> updated=DBDecorator.toArrays(values);
+		int ret=1;
+		Object stored;
+		while ((stored=t.get(key))!=null)
+		{
+			ByteBuffer record=load(stored);
+			if (record==null)
+			{
+				continue;
+			}
+			HashMap<String,ByteIterator> fields=new HashMap<String,ByteIterator>();
+			decode(record, null, fields);
+			HashMap<String,byte[]> merged=DBDecorator.toArrays(fields);
+			merged.putAll(updated);
+			//retry if another thread changed the record in the meantime
+			Object replacement=store(merged, offheap);
+			if (t.replace(key, stored, replacement))
+			{
+				release(stored);
+				ret=0;
+				break;
+			}
+			release(replacement);
+		}
+		complete(start, updatelatency);
+		return ret;
+	}
+
+	/**
+	 * Insert a record in the database. Any field/value pairs in the specified values HashMap will be written into the record with the specified
+	 * record key.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to insert.
+	 * @param values A HashMap of field/value pairs to insert in the record
+	 * @return Zero on success
+	 */
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		long start=System.nanoTime();
+		Object previous=table(table).put(key, store(DBDecorator.toArrays(values), offheap));
+		if (previous!=null)
+		{
+			release(previous);
+		}
+		complete(start, insertlatency);
+		return 0;
+	}
+
+	/**
+	 * Delete a record from the database.
+	 *
+	 * @param table The name of the table
+	 * @param key The record key of the record to delete.
+	 * @return Zero on success, one if the record doesn't exist
+	 */
+	public int delete(String table, String key)
+	{
+		long start=System.nanoTime();
+		Object stored=table(table).remove(key);
+		if (stored!=null)
+		{
+			release(stored);
+		}
+		complete(start, deletelatency);
+		return (stored!=null) ? 0 : 1;
+	}
+}
@@ -0,0 +1,305 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Decorator that runs every operation against two DBs, the primary and the shadow, to compare them on the same
+ * keys at the same time, e.g. before a migration:
+ * <pre>
+ * -db com.yahoo.ycsb.MirrorDB -p mirrordb.db=com.yahoo.ycsb.db.HBaseClient -p mirrordb.shadow=com.yahoo.ycsb.db.AccumuloClient
+ * </pre>
+ * The operations of the two DBs are measured as PRIMARY-&lt;operation&gt; and SHADOW-&lt;operation&gt;, e.g.
+ * SHADOW-READ, so each latency pair comes from the same operation under the same load. The client gets the
+ * result of the primary. With mirrordb.mode=concurrent, the shadow runs its operation on a thread of its own
+ * while the primary runs it, and the operation ends when both have. With mirrordb.compare=true, the results of
+ * the reads and scans of the two DBs are compared, and every difference is measured as
+ * MIRROR-MISMATCH-&lt;operation&gt;. The shadow gets the properties of the primary, overridden by the ones
+ * under mirrordb.shadow., e.g. mirrordb.shadow.mongodb.url, and connections of its own even if it is of the
+ * same class as the primary.
+ */
+public class MirrorDB extends DBDecorator {
+    /**
+     * The class name of the primary DB.
+     */
+    public static final String DB_PROPERTY = "mirrordb.db";
+
+    /**
+     * The class name of the shadow DB, and the prefix of the properties of the shadow.
+     */
+    public static final String SHADOW = "mirrordb.shadow";
+
+    /**
+     * sequential to run the operation against the primary and then the shadow, concurrent to run it against both
+     * at the same time.
+     */
+    public static final String MODE = "mirrordb.mode";
+    public static final String MODE_DEFAULT = "sequential";
+
+    /**
+     * Set to true to compare the results of the reads and scans.
+     */
+    public static final String COMPARE = "mirrordb.compare";
+    public static final String COMPARE_DEFAULT = "false";
+
+    /**
+     * The number of mismatches printed.
+     */
+    static final int MAX_PRINTED_MISMATCHES = 10;
+
+    static final AtomicLong mismatches = new AtomicLong();
+
+    /**
+     * An operation to run against both DBs.
+     */
+    abstract static class Operation {
+        abstract int go(DB db);
+    }
+
+    DB _shadow;
+    Measurements _measurements;
+    boolean concurrent;
+    boolean compare;
+    ExecutorService executor;
+
+    protected String dbProperty() {
+        return DB_PROPERTY;
+    }
+
+    /**
+     * Return the properties of the shadow: all the properties, overridden by the ones under mirrordb.shadow.
+     */
+    static Properties shadowProperties(Properties p) {
+        return overrideProperties(p, SHADOW + ".");
+    }
+
+    protected Vector<DB> decorated() {
+        Vector<DB> dbs = super.decorated();
+        if (_shadow != null) {
+            dbs.add(_shadow);
+        }
+        return dbs;
+    }
+
+    public void init() throws DBException {
+        Properties p = getProperties();
+        String mode = p.getProperty(MODE, MODE_DEFAULT);
+        if (!mode.equals("sequential") && !mode.equals("concurrent")) {
+            throw new DBException("Unknown " + MODE + " \"" + mode + "\"");
+        }
+        concurrent = mode.equals("concurrent");
+        compare = Boolean.parseBoolean(p.getProperty(COMPARE, COMPARE_DEFAULT));
+        _measurements = Measurements.getMeasurements();
+        super.init();
+        _shadow = createDB(p.getProperty(SHADOW), SHADOW + ".");
+        if (concurrent) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "mirrordb-shadow");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+    }
+
+    public void cleanup() throws DBException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        try {
+            super.cleanup();
+        } finally {
+            cleanupDB(_shadow);
+        }
+    }
+
+    public void cleanupGlobal() throws DBException {
+        if (compare) {
+            System.err.println("Mirror mismatches: " + mismatches.get());
+        }
+    }
+
+    int measure(String prefix, String name, Operation op, DB db) {
+        long st = System.nanoTime();
+        int res = op.go(db);
+        long en = System.nanoTime();
+        _measurements.measure(prefix + "-" + name, (int) ((en - st) / 1000));
+        _measurements.reportReturnCode(prefix + "-" + name, res);
+        return res;
+    }
+
+    /**
+     * Run the operation against both DBs.
+     *
+     * @return the return codes of the primary and of the shadow
+     */
+    int[] mirror(final String name, final Operation primary, final Operation shadow) {
+        Future<Integer> shadowres = null;
+        if (concurrent) {
+            shadowres = executor.submit(new Callable<Integer>() {
+                public Integer call() {
+                    return measure("SHADOW", name, shadow, _shadow);
+                }
+            });
+        }
+        int res = measure("PRIMARY", name, primary, _db);
+        if (!concurrent) {
+            return new int[] { res, measure("SHADOW", name, shadow, _shadow) };
+        }
+        try {
+            return new int[] { res, shadowres.get() };
+        } catch (InterruptedException e) {
+            shadowres.cancel(true);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        }
+        return new int[] { res, 1 };
+    }
+
+    void mismatch(String name, String key, String difference) {
+        _measurements.measure("MIRROR-MISMATCH-" + name, 0);
+        if (mismatches.incrementAndGet() <= MAX_PRINTED_MISMATCHES) {
+            System.err.println("Mirror mismatch: " + name + " " + key + ": " + difference);
+        }
+    }
+
+    /**
+     * Return the values as byte arrays, and replace them with iterators over the arrays, as they are read.
+     */
+    static HashMap<String, byte[]> toArraysInPlace(HashMap<String, ByteIterator> values) {
+        HashMap<String, byte[]> arrays = toArrays(values);
+        values.putAll(toIterators(arrays));
+        return arrays;
+    }
+
+    /**
+     * Return a description of the difference of two records, or null if they are the same.
+     */
+    static String difference(HashMap<String, byte[]> primary, HashMap<String, byte[]> shadow) {
+        if (!primary.keySet().equals(shadow.keySet())) {
+            return "fields " + primary.keySet() + " vs " + shadow.keySet();
+        }
+        for (Map.Entry<String, byte[]> field : primary.entrySet()) {
+            if (!Arrays.equals(field.getValue(), shadow.get(field.getKey()))) {
+                return "values of " + field.getKey();
+            }
+        }
+        return null;
+    }
+
+    public int read(final String table, final String key, final String field, final HashMap<String, ByteIterator> result) {
+        final HashMap<String, ByteIterator> shadowresult = new HashMap<String, ByteIterator>();
+        int[] res = mirror("READ", new Operation() {
+            int go(DB db) {
+                return db.read(table, key, field, result);
+            }
+        }, new Operation() {
+            int go(DB db) {
+                return db.read(table, key, field, shadowresult);
+            }
+        });
+        if (compare) {
+            String difference = (res[0] != res[1]) ? "returned " + res[0] + " vs " + res[1]
+                    : difference(toArraysInPlace(result), toArraysInPlace(shadowresult));
+            if (difference != null) {
+                mismatch("READ", key, difference);
+            }
+        }
+        return res[0];
+    }
+
+    public int scan(final String table, final String startkey, final int recordcount, final String field, final Vector<HashMap<String, ByteIterator>> result) {
+        final Vector<HashMap<String, ByteIterator>> shadowresult = new Vector<HashMap<String, ByteIterator>>();
+        int[] res = mirror("SCAN", new Operation() {
+            int go(DB db) {
+                return db.scan(table, startkey, recordcount, field, result);
+            }
+        }, new Operation() {
+            int go(DB db) {
+                return db.scan(table, startkey, recordcount, field, shadowresult);
+            }
+        });
+        if (compare) {
+            String difference = null;
+            if (res[0] != res[1]) {
+                difference = "returned " + res[0] + " vs " + res[1];
+            } else if (result.size() != shadowresult.size()) {
+                difference = result.size() + " vs " + shadowresult.size() + " records";
+            } else {
+                for (int i = 0; i < result.size() && difference == null; i++) {
+                    difference = difference(toArraysInPlace(result.get(i)), toArraysInPlace(shadowresult.get(i)));
+                }
+            }
+            if (difference != null) {
+                mismatch("SCAN", startkey, difference);
+            }
+        }
+        return res[0];
+    }
+
+    public int update(final String table, final String key, HashMap<String, ByteIterator> values) {
+        final HashMap<String, byte[]> arrays = toArrays(values);
+        return mirror("UPDATE", new Operation() {
+            int go(DB db) {
+                return db.update(table, key, toIterators(arrays));
+            }
+        }, new Operation() {
+            int go(DB db) {
+                return db.update(table, key, toIterators(arrays));
+            }
+        })[0];
+    }
+
+    public int insert(final String table, final String key, HashMap<String, ByteIterator> values) {
+        final HashMap<String, byte[]> arrays = toArrays(values);
+        return mirror("INSERT", new Operation() {
+            int go(DB db) {
+                return db.insert(table, key, toIterators(arrays));
+            }
+        }, new Operation() {
+            int go(DB db) {
+                return db.insert(table, key, toIterators(arrays));
+            }
+        })[0];
+    }
+
+    public int delete(final String table, final String key) {
+        Operation op = new Operation() {
+            int go(DB db) {
+                return db.delete(table, key);
+            }
+        };
+        return mirror("DELETE", op, op)[0];
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * DB that does nothing, to measure how fast the client itself can go, see {@link SelfTest}. Unlike
+ * {@link BasicDB}, it never prints or sleeps. It generates the values of inserts and updates, as a real DB would
+ * when it sends them.
+ */
+public class NoopDB extends DB
+{
+	public int read(String table, String key, String field, HashMap<String,ByteIterator> result)
+	{
+		return 0;
+	}
+
+	public int scan(String table, String startkey, int recordcount, String field, Vector<HashMap<String,ByteIterator>> result)
+	{
+		return 0;
+	}
+
+	public int update(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		consume(values);
+		return 0;
+	}
+
+	public int insert(String table, String key, HashMap<String,ByteIterator> values)
+	{
+		consume(values);
+		return 0;
+	}
+
+	public int delete(String table, String key)
+	{
+		return 0;
+	}
+
+	private static void consume(HashMap<String,ByteIterator> values)
+	{
+		for (ByteIterator value : values.values())
+		{
+			value.toArray();
+		}
+	}
+}
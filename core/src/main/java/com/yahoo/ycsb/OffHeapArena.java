@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Records kept outside the Java heap, in a few large direct buffers, the chunks, so the heap holds one small
+ * handle per record and the direct memory is allocated, with its cleaner, once per chunk rather than once per
+ * record. A record takes a block of the smallest power of two that fits it and a header of 8 bytes; freed
+ * blocks are kept in a free list per size and reused.
+ * <p>
+ * A handle is the version of its block, which changes every time the block is freed, with the chunk and the
+ * offset of the block, so a thread that reads a record another thread has just freed finds that the version
+ * changed, and gets null instead of the record that replaced it. The reads and the frees of a block lock one
+ * of a few stripes of locks, so a block isn't freed and reused while it is being read.
+ * </p>
+ */
+public class OffHeapArena {
+    /**
+     * The size of the chunks, 16 MB.
+     */
+    static final int CHUNK_SIZE = 1 << 24;
+
+    /**
+     * The blocks are aligned on 32 bytes, so the offset of a block in a chunk of 16 MB takes 19 bits of its
+     * handle, and there may be up to 8192 chunks, 128 GB.
+     */
+    static final int MIN_SHIFT = 5;
+    static final int OFFSET_BITS = 19;
+    static final int MAX_CHUNKS = 1 << (32 - OFFSET_BITS);
+    static final int HEADER = 8;
+    static final int STRIPES = 64;
+
+    private static OffHeapArena shared;
+
+    final int chunksize;
+    final ByteBuffer[] chunks = new ByteBuffer[MAX_CHUNKS];
+    int chunkcount = 0;
+    int position;
+
+    /**
+     * The free blocks of every size, 2^shift bytes, as stacks of the chunk and offset of the blocks.
+     */
+    final int[][] free = new int[32][];
+    final int[] freecount = new int[32];
+    final Object[] freelocks = new Object[32];
+    final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+
+    /**
+     * @param chunksize a power of two, at most {@link #CHUNK_SIZE}
+     */
+    OffHeapArena(int chunksize) {
+        this.chunksize = chunksize;
+        position = chunksize;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        for (int i = 0; i < free.length; i++) {
+            free[i] = new int[16];
+            freelocks[i] = new Object();
+        }
+    }
+
+    /**
+     * Return the arena shared by the DBs that keep their records off the heap.
+     */
+    public static synchronized OffHeapArena shared() {
+        if (shared == null) {
+            shared = new OffHeapArena(CHUNK_SIZE);
+        }
+        return shared;
+    }
+
+    static int shift(int size) {
+        return Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+
+    ReentrantReadWriteLock stripe(int block) {
+        return stripes[(block * 0x9e3779b9) >>> 26];
+    }
+
+    ByteBuffer chunk(int block) {
+        return chunks[block >>> OFFSET_BITS];
+    }
+
+    static int offset(int block) {
+        return (block & ((1 << OFFSET_BITS) - 1)) << MIN_SHIFT;
+    }
+
+    /**
+     * Take a free block of 2^shift bytes, or carve a new one out of the current chunk, or out of a chunk of its
+     * own if it is larger than a chunk.
+     */
+    int allocateBlock(int shift) {
+        synchronized (freelocks[shift]) {
+            if (freecount[shift] > 0) {
+                return free[shift][--freecount[shift]];
+            }
+        }
+        synchronized (this) {
+            int size = 1 << shift;
+            if (size > chunksize) {
+                return addChunk(size) << OFFSET_BITS;
+            }
+            if (position + size > chunksize) {
+                addChunk(chunksize);
+                position = 0;
+            }
+            int block = ((chunkcount - 1) << OFFSET_BITS) | (position >>> MIN_SHIFT);
+            position += size;
+            return block;
+        }
+    }
+
+    private int addChunk(int size) {
+        if (chunkcount == MAX_CHUNKS) {
+            throw new IllegalStateException("The off-heap arena is full, " + MAX_CHUNKS + " chunks");
+        }
+        chunks[chunkcount] = ByteBuffer.allocateDirect(size);
+        return chunkcount++;
+    }
+
+    /**
+     * Copy the remaining bytes of the record into a block, and return its handle.
+     */
+    public long allocate(ByteBuffer record) {
+        int length = record.remaining();
+        int block = allocateBlock(shift(length + HEADER));
+        ByteBuffer b = chunk(block).duplicate();
+        int offset = offset(block);
+        //the version is only changed by free, under the lock of the stripe
+        int version = b.getInt(offset);
+        b.putInt(offset + 4, length);
+        b.position(offset + HEADER);
+        b.put(record.duplicate());
+        return ((long) version << 32) | (block & 0xffffffffL);
+    }
+
+    /**
+     * Return a copy of the record of the handle, on the heap, or null if it has been freed.
+     */
+    public ByteBuffer get(long handle) {
+        int block = (int) handle;
+        ReentrantReadWriteLock.ReadLock lock = stripe(block).readLock();
+        lock.lock();
+        try {
+            ByteBuffer b = chunk(block).duplicate();
+            int offset = offset(block);
+            if (b.getInt(offset) != (int) (handle >>> 32)) {
+                return null;
+            }
+            byte[] record = new byte[b.getInt(offset + 4)];
+            b.position(offset + HEADER);
+            b.get(record);
+            return ByteBuffer.wrap(record);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Free the block of the handle for another record, unless it has been freed already.
+     */
+    public void free(long handle) {
+        int block = (int) handle;
+        ByteBuffer b = chunk(block);
+        int offset = offset(block);
+        int shift;
+        ReentrantReadWriteLock.WriteLock lock = stripe(block).writeLock();
+        lock.lock();
+        try {
+            int version = (int) (handle >>> 32);
+            if (b.getInt(offset) != version) {
+                return;
+            }
+            b.putInt(offset, version + 1);
+            shift = shift(b.getInt(offset + 4) + HEADER);
+        } finally {
+            lock.unlock();
+        }
+        synchronized (freelocks[shift]) {
+            if (freecount[shift] == free[shift].length) {
+                int[] grown = new int[free[shift].length * 2];
+                System.arraycopy(free[shift], 0, grown, 0, freecount[shift]);
+                free[shift] = grown;
+            }
+            free[shift][freecount[shift]++] = block;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.Vector;
+
+/**
+ * One step of a client run: a load, a warm-up or a transaction phase with its own properties.
+ * <p/>
+ * A plain invocation has a single phase built from the command line. When the "phases" property is set,
+ * the client runs every listed phase back to back in the same JVM, e.g.
+ * <pre>
+ * phases=load,a,b,e
+ * phase.load.propertyfile=workloads/workloada
+ * phase.a.propertyfile=workloads/workloada
+ * phase.b.propertyfile=workloads/workloadb
+ * phase.e.propertyfile=workloads/workloade
+ * phase.e.threadcount=16
+ * </pre>
+ * The properties of a phase are, in increasing order of precedence: the -P files, the phase's property
+ * file, the -p command line properties and the "phase.&lt;name&gt;." prefixed properties.
+ * <p/>
+ * The mode of a phase is taken from "phase.&lt;name&gt;.mode" (load, warmup or run). If not set, phases
+ * named "load" or "warmup" use that mode, and all others run transactions.
+ */
+public class Phase {
+    public static final String PHASES_PROPERTY = "phases";
+    public static final String PHASE_PROPERTY_PREFIX = "phase.";
+    public static final String MODE_PROPERTY = "mode";
+    public static final String PROPERTY_FILE_PROPERTY = "propertyfile";
+
+    public static final String MODE_LOAD = "load";
+    public static final String MODE_WARMUP = "warmup";
+    public static final String MODE_RUN = "run";
+
+    private final String name;
+    private final String mode;
+    private final Properties props;
+
+    public Phase(String name, String mode, Properties props) {
+        this.name = name;
+        this.mode = mode;
+        this.props = props;
+    }
+
+    /**
+     * The name of the phase, used as the measurement namespace. Empty for a single-phase run.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public Properties getProperties() {
+        return props;
+    }
+
+    /**
+     * @return false for the load phase, true for phases that execute transactions.
+     */
+    public boolean isTransactions() {
+        return !MODE_LOAD.equals(mode);
+    }
+
+    /**
+     * @return false if the measurements of this phase are discarded instead of exported.
+     */
+    public boolean isMeasured() {
+        return !MODE_WARMUP.equals(mode);
+    }
+
+    /**
+     * Build the list of phases to run.
+     *
+     * @param fileprops      properties loaded from the -P files
+     * @param cmdprops       properties given on the command line
+     * @param dotransactions the mode selected by -load / -t, used when no phases are configured
+     * @return the phases in execution order
+     * @throws IOException if a phase property file can't be read
+     */
+    public static Vector<Phase> fromProperties(Properties fileprops, Properties cmdprops, boolean dotransactions) throws IOException {
+        Properties props = new Properties();
+        copy(fileprops, props);
+        copy(cmdprops, props);
+
+        Vector<Phase> phases = new Vector<Phase>();
+        String list = props.getProperty(PHASES_PROPERTY);
+        if (list == null || list.trim().length() == 0) {
+            phases.add(new Phase("", dotransactions ? MODE_RUN : MODE_LOAD, props));
+            return phases;
+        }
+
+        for (String name : list.split(",")) {
+            name = name.trim();
+            if (name.length() == 0) {
+                continue;
+            }
+            String prefix = PHASE_PROPERTY_PREFIX + name + ".";
+
+            Properties phaseprops = new Properties();
+            copy(fileprops, phaseprops);
+            String propfile = props.getProperty(prefix + PROPERTY_FILE_PROPERTY);
+            if (propfile != null) {
+                Properties myfileprops = new Properties();
+                InputStream in = new FileInputStream(propfile);
+                try {
+                    myfileprops.load(in);
+                } finally {
+                    in.close();
+                }
+                copy(myfileprops, phaseprops);
+            }
+            copy(cmdprops, phaseprops);
+            for (Enumeration e = props.propertyNames(); e.hasMoreElements(); ) {
+                String prop = (String) e.nextElement();
+                if (prop.startsWith(prefix)) {
+                    phaseprops.setProperty(prop.substring(prefix.length()), props.getProperty(prop));
+                }
+            }
+
+            String mode = phaseprops.getProperty(MODE_PROPERTY);
+            if (mode == null) {
+                if (name.equals(MODE_LOAD) || name.equals(MODE_WARMUP)) {
+                    mode = name;
+                } else {
+                    mode = MODE_RUN;
+                }
+            }
+            if (!mode.equals(MODE_LOAD) && !mode.equals(MODE_WARMUP) && !mode.equals(MODE_RUN)) {
+                throw new IllegalArgumentException("Unknown mode \"" + mode + "\" for phase " + name);
+            }
+            phases.add(new Phase(name, mode, phaseprops));
+        }
+        return phases;
+    }
+
+    //Issue #5 - remove call to stringPropertyNames to make compilable under Java 1.5
+    private static void copy(Properties from, Properties to) {
+        for (Enumeration e = from.propertyNames(); e.hasMoreElements(); ) {
+            String prop = (String) e.nextElement();
+            to.setProperty(prop, from.getProperty(prop));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+/**
+ * Notified by the client while it runs a phase, e.g. to take part in a run coordinated across several clients.
+ */
+public interface PhaseListener {
+    /**
+     * Called once all client threads have initialized their DB and workload state. The threads start
+     * issuing operations when this method returns, so it can be used as a start barrier.
+     *
+     * @param phase the phase about to start
+     */
+    void ready(Phase phase);
+
+    /**
+     * Called after all client threads of the phase have finished.
+     *
+     * @param phase         the finished phase
+     * @param operations    the number of operations done by all threads
+     * @param runtime       the longest run time of a thread, in milliseconds
+     * @param reconnections the number of reconnections to the DB
+     */
+    void done(Phase phase, long operations, long runtime, long reconnections);
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Enumeration;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+/**
+ * Changes the target throughput, the number of active client threads and the operation proportions of the
+ * running phase, for the {@link ControlListener}. Every change is a boundary between two segments of the
+ * phase: the measurements of the segment before are exported, and the following operations are measured
+ * into the namespace of the next segment, e.g. "a-segment1" in phase "a".
+ */
+class RunControl {
+    private static volatile RunControl current = null;
+
+    private final Phase phase;
+    private final Vector<Thread> threads;
+    private final Workload workload;
+    private final ExportMeasurementsThread export;
+    private int target;
+    private int active;
+    private int segment = 0;
+
+    /**
+     * @param export the export thread of the phase, or null if the phase is not measured
+     * @param target the initial target throughput, or 0 for none
+     */
+    RunControl(Phase phase, Vector<Thread> threads, Workload workload, ExportMeasurementsThread export, int target) {
+        this.phase = phase;
+        this.threads = threads;
+        this.workload = workload;
+        this.export = export;
+        this.target = Math.max(0, target);
+        this.active = threads.size();
+    }
+
+    /**
+     * Return the control of the running phase, or null between phases.
+     */
+    static RunControl getCurrent() {
+        return current;
+    }
+
+    static void setCurrent(RunControl control) {
+        current = control;
+    }
+
+    /**
+     * Change the target throughput of the phase, in operations per second, or remove it if 0.
+     */
+    synchronized String setTarget(int newtarget) {
+        if (newtarget < 0) {
+            throw new IllegalArgumentException("Invalid target " + newtarget);
+        }
+        startSegment("target " + newtarget);
+        target = newtarget;
+        applyTarget();
+        return getStatus();
+    }
+
+    /**
+     * Change the number of active threads, by parking the threads beyond it or letting them go on. At most
+     * the threadcount of the phase can be active.
+     */
+    synchronized String setThreads(int newactive) {
+        if ((newactive < 1) || (newactive > threads.size())) {
+            throw new IllegalArgumentException("The number of threads must be between 1 and " + threads.size());
+        }
+        startSegment("threads " + newactive);
+        active = newactive;
+        for (int i = 0; i < threads.size(); i++) {
+            ((ClientThread) threads.get(i)).setParked(i >= active);
+        }
+        applyTarget();
+        return getStatus();
+    }
+
+    /**
+     * Change workload properties, such as the operation proportions, see {@link Workload#adjust(Properties)}.
+     */
+    synchronized String adjust(Properties p) throws WorkloadException {
+        StringBuilder change = new StringBuilder();
+        for (Enumeration e = p.propertyNames(); e.hasMoreElements(); ) {
+            String name = (String) e.nextElement();
+            change.append((change.length() > 0) ? " " : "").append(name).append("=").append(p.getProperty(name));
+        }
+        //fails before the boundary if the workload does not accept the change
+        workload.adjust(p);
+        startSegment(change.toString());
+        return getStatus();
+    }
+
+    synchronized String getStatus() {
+        String name = phase.getName();
+        if (segment > 0) {
+            name = getSegmentName(segment);
+        }
+        return "phase=" + name + " target=" + target + " threads=" + active + "/" + threads.size();
+    }
+
+    private String getSegmentName(int n) {
+        return ((phase.getName().length() > 0) ? phase.getName() + "-" : "") + "segment" + n;
+    }
+
+    private void applyTarget() {
+        double targetperthreadperms = (target > 0) ? ((double) target) / active / 1000.0 : -1;
+        for (Thread t : threads) {
+            ((ClientThread) t).setTarget(targetperthreadperms);
+        }
+    }
+
+    private void startSegment(String change) {
+        segment++;
+        String name = getSegmentName(segment);
+        if (export != null) {
+            export.startSegment(name, change, target, active);
+        } else {
+            Measurements.getMeasurements().startSegment(name, change);
+        }
+        System.err.println("Control: " + change + ", measuring into " + name);
+    }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.DecimalFormat;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Measures how many operations per second this client can generate before it becomes the bottleneck itself: runs
+ * the workload through the whole client, the client threads, the workload, DBWrapper and the measurements,
+ * against {@link NoopDB} with 1..N threads, and reports the throughput and the time the client spends on an
+ * operation. E.g.
+ * <pre>
+ * java com.yahoo.ycsb.SelfTest -P workloads/workloada -p selftest.threads=1..16*2 -p selftest.baseline=selftest.properties
+ * </pre>
+ * With a baseline file, it exits with status 1 if the highest throughput fell more than selftest.tolerance below
+ * the one in the file, so a change to the client can't lower its ceiling unnoticed. selftest.savebaseline=true
+ * writes the highest throughput to the file instead.
+ */
+public class SelfTest implements PhaseListener {
+    /**
+     * The thread counts to measure, as a list or range, see {@link Sweep#parseValues(String)}.
+     */
+    public static final String THREADS_PROPERTY = "selftest.threads";
+
+    /**
+     * The time every thread count runs, in seconds.
+     */
+    public static final String TIME_PROPERTY = "selftest.time";
+    public static final String TIME_PROPERTY_DEFAULT = "10";
+
+    /**
+     * The time the client runs with the most threads first, to compile the hot code, in seconds.
+     */
+    public static final String WARMUP_PROPERTY = "selftest.warmup";
+    public static final String WARMUP_PROPERTY_DEFAULT = "5";
+
+    /**
+     * The properties file with the throughput to compare with.
+     */
+    public static final String BASELINE_PROPERTY = "selftest.baseline";
+
+    /**
+     * The largest drop of the highest throughput below the baseline, relative to the baseline.
+     */
+    public static final String TOLERANCE_PROPERTY = "selftest.tolerance";
+    public static final String TOLERANCE_PROPERTY_DEFAULT = "0.1";
+
+    /**
+     * Set to true to write the highest throughput to the baseline file instead of comparing with it.
+     */
+    public static final String SAVE_BASELINE_PROPERTY = "selftest.savebaseline";
+    public static final String SAVE_BASELINE_PROPERTY_DEFAULT = "false";
+
+    static final String BASELINE_THROUGHPUT = "throughput";
+
+    private long opcount;
+    private long runtime;
+
+    public void ready(Phase phase) {
+    }
+
+    public void done(Phase phase, long opcount, long runtime, long reconnections) {
+        this.opcount = opcount;
+        this.runtime = runtime;
+    }
+
+    /**
+     * Run the workload with the given number of threads for the given time.
+     *
+     * @return the throughput in operations per second
+     */
+    double measure(Properties props, ThreadDBs dbs, int threads, long seconds, boolean lastuse) {
+        Properties p = new Properties();
+        p.putAll(props);
+        p.setProperty("threadcount", threads + "");
+        p.setProperty(Client.MAX_EXECUTION_TIME, seconds + "");
+        //the phase isn't exported, but its operations are measured like those of any other
+        Client.runPhase(new Phase("selftest-" + threads, Phase.MODE_WARMUP, p), dbs, null, "", false, lastuse, this);
+        return (runtime > 0) ? 1000.0 * opcount / runtime : 0;
+    }
+
+    /**
+     * Return true if the throughput is within the tolerance of the baseline.
+     */
+    static boolean check(double throughput, double baseline, double tolerance) {
+        return throughput >= baseline * (1 - tolerance);
+    }
+
+    public static void usageMessage() {
+        System.out.println("Usage: java com.yahoo.ycsb.SelfTest [options]");
+        System.out.println("Options:");
+        System.out.println("  -db dbname: the DB to use, default com.yahoo.ycsb.NoopDB");
+        System.out.println("  -P propertyfile: load properties from the given file. Multiple files can");
+        System.out.println("                   be specified, and will be processed in the order specified");
+        System.out.println("  -p name=value:  specify a property to be passed to the DB and workloads;");
+        System.out.println("                  multiple properties can be specified, and override any");
+        System.out.println("                  values in the propertyfile");
+        System.out.println("Properties: " + THREADS_PROPERTY + ", " + TIME_PROPERTY + ", " + WARMUP_PROPERTY + ", "
+                + BASELINE_PROPERTY + ", " + TOLERANCE_PROPERTY + ", " + SAVE_BASELINE_PROPERTY);
+    }
+
+    public static void main(String[] args) {
+        Properties props = new Properties();
+        props.setProperty(Client.WORKLOAD_PROPERTY, "com.yahoo.ycsb.workloads.CoreWorkload");
+        props.setProperty("db", NoopDB.class.getName());
+        props.setProperty(Client.RECORD_COUNT_PROPERTY, "100000");
+        Properties cmdprops = new Properties();
+
+        for (int argindex = 0; argindex < args.length; argindex++) {
+            if ((argindex + 1 >= args.length) || !args[argindex].startsWith("-")) {
+                usageMessage();
+                System.exit(0);
+            }
+            String arg = args[++argindex];
+            if (args[argindex - 1].equals("-db")) {
+                cmdprops.setProperty("db", arg);
+            } else if (args[argindex - 1].equals("-P")) {
+                try {
+                    InputStream in = new FileInputStream(arg);
+                    try {
+                        props.load(in);
+                    } finally {
+                        in.close();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    System.exit(0);
+                }
+            } else if (args[argindex - 1].equals("-p") && (arg.indexOf('=') > 0)) {
+                cmdprops.setProperty(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                usageMessage();
+                System.exit(0);
+            }
+        }
+        props.putAll(cmdprops);
+        //the run ends by time only
+        props.setProperty(Client.OPERATION_COUNT_PROPERTY, "0");
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        Vector<String> threadcounts = Sweep.parseValues(props.getProperty(THREADS_PROPERTY, "1.." + (2 * processors) + "*2"));
+        long time = Long.parseLong(props.getProperty(TIME_PROPERTY, TIME_PROPERTY_DEFAULT));
+        long warmup = Long.parseLong(props.getProperty(WARMUP_PROPERTY, WARMUP_PROPERTY_DEFAULT));
+        int maxthreads = 0;
+        for (String t : threadcounts) {
+            maxthreads = Math.max(maxthreads, Integer.parseInt(t));
+        }
+
+        Measurements.setProperties(props);
+        SelfTest test = new SelfTest();
+        ThreadDBs dbs = new ThreadDBs();
+        if (warmup > 0) {
+            test.measure(props, dbs, maxthreads, warmup, false);
+        }
+
+        DecimalFormat d = new DecimalFormat("#.##");
+        double best = 0;
+        int bestthreads = 0;
+        StringBuilder table = new StringBuilder("Threads,Throughput(ops/sec),Overhead(ns/op)\n");
+        for (int i = 0; i < threadcounts.size(); i++) {
+            int threads = Integer.parseInt(threadcounts.get(i));
+            double throughput = test.measure(props, dbs, threads, time, i == threadcounts.size() - 1);
+            //the time a thread spends on one operation, with the CPUs shared by all threads
+            double overhead = (throughput > 0) ? 1e9 * Math.min(threads, processors) / throughput : 0;
+            table.append(threads).append(",").append(d.format(throughput)).append(",").append(d.format(overhead)).append("\n");
+            if (throughput > best) {
+                best = throughput;
+                bestthreads = threads;
+            }
+        }
+        dbs.cleanup();
+
+        System.out.println("Self-test of " + props.getProperty("db") + " on " + processors + " processors:");
+        System.out.print(table);
+        System.out.println("Maximum throughput: " + d.format(best) + " ops/sec with " + bestthreads + " threads");
+
+        String baseline = props.getProperty(BASELINE_PROPERTY);
+        if (baseline == null) {
+            System.exit(0);
+        }
+        try {
+            Properties p = new Properties();
+            if (Boolean.parseBoolean(props.getProperty(SAVE_BASELINE_PROPERTY, SAVE_BASELINE_PROPERTY_DEFAULT))) {
+                p.setProperty(BASELINE_THROUGHPUT, Math.round(best) + "");
+                OutputStream out = new FileOutputStream(baseline);
+                try {
+                    p.store(out, "YCSB self-test baseline, " + processors + " processors, " + bestthreads + " threads");
+                } finally {
+                    out.close();
+                }
+                System.out.println("Saved the baseline to " + baseline);
+                System.exit(0);
+            }
+            InputStream in = new FileInputStream(baseline);
+            try {
+                p.load(in);
+            } finally {
+                in.close();
+            }
+            double expected = Double.parseDouble(p.getProperty(BASELINE_THROUGHPUT));
+            double tolerance = Double.parseDouble(props.getProperty(TOLERANCE_PROPERTY, TOLERANCE_PROPERTY_DEFAULT));
+            if (!check(best, expected, tolerance)) {
+                System.out.println("FAILED: the maximum throughput is " + d.format(100 * (1 - best / expected))
+                        + "% below the baseline of " + d.format(expected) + " ops/sec");
+                System.exit(1);
+            }
+            System.out.println("PASSED: the baseline is " + d.format(expected) + " ops/sec");
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,345 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Decorator that spreads the keys over several DBs, e.g. independent clusters, with consistent hashing:
+ * <pre>
+ * -db com.yahoo.ycsb.ShardedDB -p shardeddb.db=com.yahoo.ycsb.db.MongoDbClient -p shardeddb.shards=east,west
+ * -p shardeddb.east.mongodb.url=mongodb://east:27017 -p shardeddb.west.mongodb.url=mongodb://west:27017
+ * </pre>
+ * Every shard is a DB of its own, with the properties of the client overridden by the ones under
+ * shardeddb.&lt;shard&gt;., connections of its own, and its own class if shardeddb.&lt;shard&gt;.db is set. Each
+ * shard has shardeddb.vnodes points on a hash ring for every unit of its shardeddb.&lt;shard&gt;.weight, and a key
+ * goes to the shard of the first point at or after the hash of the key, so adding a shard only moves the keys of
+ * its points. A scan goes to all the shards at once. The operations of each shard are measured as
+ * SHARD-&lt;shard&gt;-&lt;operation&gt;, and the share of the operations on a key each shard got is printed at the
+ * end, next to its share of the ring.
+ */
+public class ShardedDB extends DBDecorator {
+    /**
+     * The class name of the DB of the shards that don't set their own.
+     */
+    public static final String DB_PROPERTY = "shardeddb.db";
+
+    /**
+     * The comma separated names of the shards.
+     */
+    public static final String SHARDS = "shardeddb.shards";
+
+    /**
+     * The number of points on the ring of a shard of weight 1.
+     */
+    public static final String VNODES = "shardeddb.vnodes";
+    public static final String VNODES_DEFAULT = "100";
+
+    static final String PREFIX = "shardeddb.";
+    static final String WEIGHT = "weight";
+    static final String WEIGHT_DEFAULT = "1";
+
+    /**
+     * The number of operations on a key of each shard, over all the instances.
+     */
+    static AtomicLongArray operations;
+
+    /**
+     * Points on a hash ring, each owned by a shard.
+     */
+    static class Ring {
+        final long[] points;
+        final int[] owners;
+
+        Ring(double[] weights, String[] names, int vnodes) {
+            int count = 0;
+            for (double weight : weights) {
+                count += Math.max(1, Math.round(weight * vnodes));
+            }
+            //sort the points by hash, with their owners
+            long[][] pairs = new long[count][];
+            int n = 0;
+            for (int shard = 0; shard < weights.length; shard++) {
+                long shardpoints = Math.max(1, Math.round(weights[shard] * vnodes));
+                for (int i = 0; i < shardpoints; i++) {
+                    pairs[n++] = new long[] { hash(names[shard] + "#" + i), shard };
+                }
+            }
+            Arrays.sort(pairs, new Comparator<long[]>() {
+                public int compare(long[] a, long[] b) {
+                    return (a[0] < b[0]) ? -1 : ((a[0] > b[0]) ? 1 : 0);
+                }
+            });
+            points = new long[count];
+            owners = new int[count];
+            for (int i = 0; i < count; i++) {
+                points[i] = pairs[i][0];
+                owners[i] = (int) pairs[i][1];
+            }
+        }
+
+        /**
+         * Return the shard of the key.
+         */
+        int shard(String key) {
+            int i = Arrays.binarySearch(points, hash(key));
+            if (i < 0) {
+                i = -i - 1;
+            }
+            return owners[(i == points.length) ? 0 : i];
+        }
+
+        /**
+         * Return the fraction of the ring, and so of uniformly spread keys, each of the shards owns.
+         */
+        double[] shares(int shards) {
+            double[] shares = new double[shards];
+            for (int i = 0; i < points.length; i++) {
+                //a point owns the arc from the point before it
+                long previous = (i == 0) ? points[points.length - 1] : points[i - 1];
+                double arc = (double) (points[i] - previous);
+                if (arc <= 0) {
+                    arc += Math.pow(2, 64);
+                }
+                shares[owners[i]] += arc / Math.pow(2, 64);
+            }
+            return shares;
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the string, mixed so that the keys that differ in their last characters spread over
+     * the whole ring.
+     */
+    static long hash(String s) {
+        long hash = Utils.FNV_offset_basis_64;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= Utils.FNV_prime_64;
+        }
+        return SplitMix64.mix64(hash);
+    }
+
+    String[] names;
+    DB[] shards;
+    Ring ring;
+    Measurements _measurements;
+    ExecutorService executor;
+
+    protected String dbProperty() {
+        return DB_PROPERTY;
+    }
+
+    protected Vector<DB> decorated() {
+        Vector<DB> dbs = new Vector<DB>();
+        for (DB shard : shards) {
+            if (shard != null) {
+                dbs.add(shard);
+            }
+        }
+        return dbs;
+    }
+
+    public void init() throws DBException {
+        Properties p = getProperties();
+        String list = p.getProperty(SHARDS);
+        if (list == null) {
+            throw new DBException("No shards, set " + SHARDS);
+        }
+        names = list.split(",");
+        double[] weights = new double[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = names[i].trim();
+            weights[i] = Double.parseDouble(p.getProperty(PREFIX + names[i] + "." + WEIGHT, WEIGHT_DEFAULT));
+            if (weights[i] <= 0) {
+                throw new DBException("The weight of shard " + names[i] + " must be positive");
+            }
+        }
+        ring = new Ring(weights, names, Integer.parseInt(p.getProperty(VNODES, VNODES_DEFAULT)));
+        _measurements = Measurements.getMeasurements();
+        synchronized (ShardedDB.class) {
+            if (operations == null) {
+                operations = new AtomicLongArray(names.length);
+            }
+        }
+
+        shards = new DB[names.length];
+        try {
+            for (int i = 0; i < names.length; i++) {
+                String prefix = PREFIX + names[i] + ".";
+                shards[i] = createDB(p.getProperty(prefix + "db", p.getProperty(DB_PROPERTY)), prefix);
+            }
+        } catch (DBException e) {
+            cleanupShards();
+            throw e;
+        }
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "shardeddb-scan");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    void cleanupShards() throws DBException {
+        DBException failure = null;
+        for (DB shard : shards) {
+            if (shard == null) {
+                continue;
+            }
+            try {
+                cleanupDB(shard);
+            } catch (DBException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public void cleanup() throws DBException {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        cleanupShards();
+    }
+
+    public void cleanupGlobal() throws DBException {
+        synchronized (ShardedDB.class) {
+            if (operations == null) {
+                return;
+            }
+            long total = 0;
+            for (int i = 0; i < operations.length(); i++) {
+                total += operations.get(i);
+            }
+            DecimalFormat d = new DecimalFormat("#.##");
+            double[] shares = ring.shares(names.length);
+            for (int i = 0; i < names.length; i++) {
+                System.err.println("Shard " + names[i] + ": " + operations.get(i) + " operations, "
+                        + d.format((total > 0) ? 100.0 * operations.get(i) / total : 0) + "% of the operations on a key, "
+                        + d.format(100 * shares[i]) + "% of the ring");
+            }
+            operations = null;
+        }
+    }
+
+    /**
+     * Measure an operation of a shard, started at the given time.
+     */
+    int measure(int shard, String name, long st, int res) {
+        long en = System.nanoTime();
+        String metric = "SHARD-" + names[shard] + "-" + name;
+        _measurements.measure(metric, (int) ((en - st) / 1000));
+        _measurements.reportReturnCode(metric, res);
+        return res;
+    }
+
+    /**
+     * Return the shard of the key, and count the operation on it.
+     */
+    int route(String key) {
+        int shard = ring.shard(key);
+        operations.incrementAndGet(shard);
+        return shard;
+    }
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+        int shard = route(key);
+        long st = System.nanoTime();
+        return measure(shard, "READ", st, shards[shard].read(table, key, field, result));
+    }
+
+    /**
+     * Scan all the shards at once. The records come without their keys, so they can't be merged in key order;
+     * the result has the records of the first shards, up to recordcount.
+     */
+    public int scan(final String table, final String startkey, final int recordcount, final String field, Vector<HashMap<String, ByteIterator>> result) {
+        Vector<Future<Integer>> replies = new Vector<Future<Integer>>();
+        Vector<Vector<HashMap<String, ByteIterator>>> results = new Vector<Vector<HashMap<String, ByteIterator>>>();
+        for (int i = 0; i < shards.length; i++) {
+            final int shard = i;
+            final Vector<HashMap<String, ByteIterator>> records = new Vector<HashMap<String, ByteIterator>>();
+            results.add(records);
+            replies.add(executor.submit(new Callable<Integer>() {
+                public Integer call() {
+                    long st = System.nanoTime();
+                    return measure(shard, "SCAN", st, shards[shard].scan(table, startkey, recordcount, field, records));
+                }
+            }));
+        }
+        int res = 0;
+        for (int i = 0; i < replies.size(); i++) {
+            int shardres;
+            try {
+                shardres = replies.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                shardres = 1;
+            } catch (ExecutionException e) {
+                e.getCause().printStackTrace();
+                shardres = 1;
+            }
+            if (shardres != 0) {
+                res = (res == 0) ? shardres : res;
+                continue;
+            }
+            for (HashMap<String, ByteIterator> record : results.get(i)) {
+                if (result.size() >= recordcount) {
+                    break;
+                }
+                result.add(record);
+            }
+        }
+        return res;
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+        int shard = route(key);
+        long st = System.nanoTime();
+        return measure(shard, "UPDATE", st, shards[shard].update(table, key, values));
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+        int shard = route(key);
+        long st = System.nanoTime();
+        return measure(shard, "INSERT", st, shards[shard].insert(table, key, values));
+    }
+
+    public int delete(String table, String key) {
+        int shard = route(key);
+        long st = System.nanoTime();
+        return measure(shard, "DELETE", st, shards[shard].delete(table, key));
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.text.DecimalFormat;
+import java.text.SimpleDateFormat;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+/**
+ * A thread to periodically show the status of the experiment, to reassure you that progress is being made.
+ *
+ * @author cooperb
+ */
+class StatusThread extends Thread {
+    Vector<Thread> _threads;
+    String _label;
+    boolean _standardstatus;
+
+    /**
+     * The interval for reporting status.
+     */
+    public static final long sleeptime = 2000;
+
+    public StatusThread(Vector<Thread> threads, String label, boolean standardstatus) {
+        _threads = threads;
+        _label = label;
+        _standardstatus = standardstatus;
+    }
+
+    /**
+     * Run and periodically report status.
+     */
+    public void run() {
+        long st = System.currentTimeMillis();
+
+        long lasten = st;
+        long lasttotalops = 0;
+
+        boolean alldone;
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss:SSS");
+
+        do {
+            alldone = true;
+
+            int totalops = 0;
+
+            //terminate this thread when all the worker threads are done
+            for (Thread t : _threads) {
+                if (t.getState() != Thread.State.TERMINATED) {
+                    alldone = false;
+                }
+
+                ClientThread ct = (ClientThread) t;
+                totalops += ct.getOpsDone();
+            }
+
+            long en = System.currentTimeMillis();
+
+            long interval = en - st;
+            //double throughput=1000.0*((double)totalops)/((double)interval);
+
+            double curthroughput = 1000.0 * (((double) (totalops - lasttotalops)) / ((double) (en - lasten)));
+
+            lasttotalops = totalops;
+            lasten = en;
+
+            DecimalFormat d = new DecimalFormat("#.##");
+
+            if (totalops == 0) {
+                System.err.println(_label + " " + (interval / 1000) + " sec: " + totalops + " operations; " + Measurements.getMeasurements().getSummary());
+            } else {
+                System.err.println(_label + " " + (interval / 1000) + " sec: " + totalops + " operations; " + d.format(curthroughput) + " current ops/sec; " + Measurements.getMeasurements().getSummary());
+            }
+
+            if (_standardstatus) {
+                if (totalops == 0) {
+                    System.out.println(_label + " " + (interval / 1000) + " sec: " + totalops + " operations; " + Measurements.getMeasurements().getSummary());
+                } else {
+                    System.out.println(_label + " " + (interval / 1000) + " sec: " + totalops + " operations; " + d.format(curthroughput) + " current ops/sec; " + Measurements.getMeasurements().getSummary());
+                }
+            }
+
+            try {
+                sleep(sleeptime);
+            } catch (InterruptedException e) {
+                //do nothing
+            }
+
+        }
+        while (!alldone);
+    }
+}
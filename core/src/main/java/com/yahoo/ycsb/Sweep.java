@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.LatencyHistogram;
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Runs a matrix of experiments in one invocation: every combination of the values of the swept properties is a
+ * point, which runs as a phase of its own (or as all the configured phases, one after the other), e.g.
+ * <pre>
+ * sweep=workload,threadcount,target
+ * sweep.propertyfile=workloads/workloada,workloads/workloadb
+ * sweep.threadcount=1..64*2
+ * sweep.target=1000..5000+1000
+ * </pre>
+ * The values of a property are a comma separated list, or a range with an additive (+) or multiplicative (*)
+ * step. The last property in "sweep" varies fastest. The swept property "propertyfile" loads a property file
+ * for every point, which overrides the -P files. sweep.points picks a subset of the points by their number,
+ * e.g. "0,4-7".
+ * <p/>
+ * The points measure into the namespaces "p0", "p1", ... (or "p0.a", ... for a phase "a"), and once all of them
+ * are done, a table with one row per measured phase, with the throughput and the latencies of every operation,
+ * is printed and written to sweep.output as CSV.
+ */
+public class Sweep implements PhaseListener {
+    /**
+     * The swept properties, in the order in which they are nested.
+     */
+    public static final String SWEEP_PROPERTY = "sweep";
+    public static final String SWEEP_PROPERTY_PREFIX = "sweep.";
+
+    /**
+     * The numbers of the points to run, or all points if not set.
+     */
+    public static final String POINTS_PROPERTY = "sweep.points";
+
+    /**
+     * The CSV file to write the result table to.
+     */
+    public static final String OUTPUT_PROPERTY = "sweep.output";
+
+    static final String PROPERTY_FILE = "propertyfile";
+
+    private final Vector<String> axes = new Vector<String>();
+    private final Vector<Vector<String>> values = new Vector<Vector<String>>();
+    private final String output;
+
+    private final Map<Phase, String[]> pointvalues = new HashMap<Phase, String[]>();
+    private final Vector<String[]> rowkeys = new Vector<String[]>();
+    private final Vector<Map<String, Double>> rows = new Vector<Map<String, Double>>();
+    private final TreeSet<String> operations = new TreeSet<String>();
+
+    public Sweep(Properties props) {
+        for (String axis : props.getProperty(SWEEP_PROPERTY).split(",")) {
+            axis = axis.trim();
+            if (axis.length() == 0) {
+                continue;
+            }
+            String spec = props.getProperty(SWEEP_PROPERTY_PREFIX + axis);
+            if (spec == null) {
+                throw new IllegalArgumentException("No values for the swept property " + axis + ", set " + SWEEP_PROPERTY_PREFIX + axis);
+            }
+            axes.add(axis);
+            values.add(parseValues(spec));
+        }
+        output = props.getProperty(OUTPUT_PROPERTY);
+    }
+
+    public static boolean isEnabled(Properties props) {
+        String sweep = props.getProperty(SWEEP_PROPERTY);
+        return (sweep != null) && (sweep.trim().length() > 0);
+    }
+
+    /**
+     * Parse a list "a,b,c" or a range "from..to+step" or "from..to*factor".
+     */
+    static Vector<String> parseValues(String spec) {
+        Vector<String> ret = new Vector<String>();
+        int range = spec.indexOf("..");
+        if (range < 0) {
+            for (String v : spec.split(",")) {
+                ret.add(v.trim());
+            }
+            return ret;
+        }
+        int op = Math.max(spec.indexOf('+', range), spec.indexOf('*', range));
+        double from = Double.parseDouble(spec.substring(0, range).trim());
+        double to = Double.parseDouble(spec.substring(range + 2, (op > 0) ? op : spec.length()).trim());
+        double step = (op > 0) ? Double.parseDouble(spec.substring(op + 1).trim()) : 1;
+        boolean multiply = (op > 0) && (spec.charAt(op) == '*');
+        if (multiply ? (step <= 1 || from <= 0) : (step <= 0)) {
+            throw new IllegalArgumentException("Invalid range " + spec);
+        }
+        boolean integers = (from == Math.floor(from)) && (step == Math.floor(step));
+        for (double v = from; v <= to * (1 + 1e-12); v = multiply ? v * step : v + step) {
+            ret.add(integers ? Long.toString((long) v) : Double.toString(v));
+        }
+        return ret;
+    }
+
+    /**
+     * Parse a list of point numbers and ranges, e.g. "0,4-7".
+     */
+    static TreeSet<Integer> parsePoints(String spec, int count) {
+        TreeSet<Integer> ret = new TreeSet<Integer>();
+        if (spec == null) {
+            for (int i = 0; i < count; i++) {
+                ret.add(i);
+            }
+            return ret;
+        }
+        for (String part : spec.split(",")) {
+            part = part.trim();
+            int dash = part.indexOf('-');
+            int from = Integer.parseInt((dash > 0) ? part.substring(0, dash).trim() : part);
+            int to = (dash > 0) ? Integer.parseInt(part.substring(dash + 1).trim()) : from;
+            for (int i = from; i <= to; i++) {
+                if (i >= count) {
+                    throw new IllegalArgumentException("Point " + i + " out of range, the sweep has " + count + " points");
+                }
+                ret.add(i);
+            }
+        }
+        return ret;
+    }
+
+    public int getPointCount() {
+        int ret = 1;
+        for (Vector<String> v : values) {
+            ret *= v.size();
+        }
+        return ret;
+    }
+
+    /**
+     * Return the values of the swept properties at the given point.
+     */
+    String[] getPoint(int point) {
+        String[] ret = new String[axes.size()];
+        for (int i = axes.size() - 1; i >= 0; i--) {
+            Vector<String> v = values.get(i);
+            ret[i] = v.get(point % v.size());
+            point /= v.size();
+        }
+        return ret;
+    }
+
+    /**
+     * Build the phases of all the selected points.
+     *
+     * @param fileprops      properties loaded from the -P files
+     * @param cmdprops       properties given on the command line
+     * @param dotransactions the mode selected by -load / -t, used when no phases are configured
+     */
+    public Vector<Phase> getPhases(Properties fileprops, Properties cmdprops, boolean dotransactions) throws IOException {
+        Properties merged = new Properties();
+        copy(fileprops, merged);
+        copy(cmdprops, merged);
+
+        Vector<Phase> ret = new Vector<Phase>();
+        for (int point : parsePoints(merged.getProperty(POINTS_PROPERTY), getPointCount())) {
+            String[] v = getPoint(point);
+            Properties pointfileprops = new Properties();
+            copy(fileprops, pointfileprops);
+            Properties pointcmdprops = new Properties();
+            copy(cmdprops, pointcmdprops);
+            for (int i = 0; i < axes.size(); i++) {
+                if (axes.get(i).equals(PROPERTY_FILE)) {
+                    InputStream in = new FileInputStream(v[i]);
+                    try {
+                        pointfileprops.load(in);
+                    } finally {
+                        in.close();
+                    }
+                } else {
+                    pointcmdprops.setProperty(axes.get(i), v[i]);
+                }
+            }
+
+            for (Phase phase : Phase.fromProperties(pointfileprops, pointcmdprops, dotransactions)) {
+                String name = "p" + point + ((phase.getName().length() > 0) ? "." + phase.getName() : "");
+                Properties props = phase.getProperties();
+                //the prefixed properties of the phases win over the command line, the point's values win over both
+                for (int i = 0; i < axes.size(); i++) {
+                    if (!axes.get(i).equals(PROPERTY_FILE)) {
+                        props.setProperty(axes.get(i), v[i]);
+                    }
+                }
+                Phase p = new Phase(name, phase.getMode(), props);
+                pointvalues.put(p, v);
+                ret.add(p);
+            }
+        }
+        return ret;
+    }
+
+    public void ready(Phase phase) {
+    }
+
+    /**
+     * Add the row of a finished phase to the table, from the measurements it still holds.
+     */
+    public synchronized void done(Phase phase, long opcount, long runtime, long reconnections) {
+        if (!phase.isMeasured() || !pointvalues.containsKey(phase)) {
+            return;
+        }
+        Map<String, Double> row = new HashMap<String, Double>();
+        row.put("Operations", (double) opcount);
+        row.put("RunTime(ms)", (double) runtime);
+        row.put("Throughput(ops/sec)", (runtime > 0) ? 1000.0 * opcount / runtime : 0);
+        for (Map.Entry<String, LatencyHistogram> e : Measurements.getMeasurements().snapshots().entrySet()) {
+            LatencyHistogram h = e.getValue();
+            if (h.getOperations() == 0) {
+                continue;
+            }
+            //drop the namespace, e.g. "p3:READ"
+            String op = e.getKey().substring(e.getKey().lastIndexOf(':') + 1);
+            operations.add(op);
+            row.put(op + ".AverageLatency(us)", ((double) h.getTotalLatency()) / h.getOperations());
+            row.put(op + ".95thPercentileLatency(ms)", (double) h.percentile(0.95));
+            row.put(op + ".99thPercentileLatency(ms)", (double) h.percentile(0.99));
+        }
+        String[] key = new String[axes.size() + 1];
+        key[0] = phase.getName();
+        System.arraycopy(pointvalues.get(phase), 0, key, 1, axes.size());
+        rowkeys.add(key);
+        rows.add(row);
+    }
+
+    /**
+     * Write the table as comma separated values, one row per measured phase.
+     */
+    public synchronized void writeTable(PrintStream out) {
+        Vector<String> columns = new Vector<String>();
+        columns.add("Operations");
+        columns.add("RunTime(ms)");
+        columns.add("Throughput(ops/sec)");
+        for (String op : operations) {
+            columns.add(op + ".AverageLatency(us)");
+            columns.add(op + ".95thPercentileLatency(ms)");
+            columns.add(op + ".99thPercentileLatency(ms)");
+        }
+
+        StringBuilder header = new StringBuilder("phase");
+        for (String axis : axes) {
+            header.append(",").append(axis);
+        }
+        for (String column : columns) {
+            header.append(",").append(column);
+        }
+        out.println(header);
+
+        DecimalFormat d = new DecimalFormat("#.##");
+        for (int i = 0; i < rows.size(); i++) {
+            StringBuilder line = new StringBuilder();
+            for (String k : rowkeys.get(i)) {
+                line.append((line.length() > 0) ? "," : "").append(k);
+            }
+            for (String column : columns) {
+                Double v = rows.get(i).get(column);
+                line.append(",").append((v == null) ? "" : d.format(v));
+            }
+            out.println(line);
+        }
+    }
+
+    /**
+     * Print the table, and write it to sweep.output if set.
+     */
+    public void report() {
+        System.out.println("Sweep results:");
+        writeTable(System.out);
+        if (output != null) {
+            try {
+                PrintStream out = new PrintStream(new FileOutputStream(output), false, "UTF-8");
+                try {
+                    writeTable(out);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void copy(Properties from, Properties to) {
+        for (Enumeration e = from.propertyNames(); e.hasMoreElements(); ) {
+            String prop = (String) e.nextElement();
+            to.setProperty(prop, from.getProperty(prop));
+        }
+    }
+}
@@ -16,54 +16,109 @@
  */
 package com.yahoo.ycsb;
 
+import java.util.Properties;
 import java.util.Vector;
 
 /**
- * A thread that waits for the maximum specified time and then interrupts all the client
- * threads passed as the Vector at initialization of this thread.
+ * A thread that waits for the maximum specified time and then asks the client threads passed as the
+ * Vector at initialization of this thread to stop. The threads finish their in-flight operation, so its
+ * latency is still measured; threads that don't finish within the drain time are interrupted, which makes
+ * blocking binding calls return. Threads are never killed.
  * <p/>
- * The maximum execution time passed is assumed to be in seconds.
+ * It also interrupts the operations that run for longer than the operation timeout, if one is set.
+ * <p/>
+ * The maximum execution time passed is assumed to be in seconds; zero means no limit.
  *
  * @author sudipto
  */
 public class TerminatorThread extends Thread {
 
+    /**
+     * The time in milliseconds after which an operation is interrupted (default: 0, no timeout).
+     */
+    public static final String OPERATION_TIMEOUT_PROPERTY = "operationtimeout";
+    public static final String OPERATION_TIMEOUT_PROPERTY_DEFAULT = "0";
+
+    /**
+     * The time in milliseconds the client threads get to finish their in-flight operations once the
+     * maximum execution time has elapsed, before they are interrupted.
+     */
+    public static final String DRAIN_TIME_PROPERTY = "draintime";
+    public static final String DRAIN_TIME_PROPERTY_DEFAULT = "2000";
+
     private Vector<Thread> threads;
     private long maxExecutionTime;
     private Workload workload;
+    private long operationTimeoutInMS;
     private long waitTimeOutInMS;
 
     public TerminatorThread(long maxExecutionTime, Vector<Thread> threads,
-                            Workload workload) {
+                            Workload workload, Properties props) {
         this.maxExecutionTime = maxExecutionTime;
         this.threads = threads;
         this.workload = workload;
-        waitTimeOutInMS = 2000;
-        System.err.println("Maximum execution time specified as: " + maxExecutionTime + " secs");
+        operationTimeoutInMS = Long.parseLong(props.getProperty(OPERATION_TIMEOUT_PROPERTY, OPERATION_TIMEOUT_PROPERTY_DEFAULT));
+        waitTimeOutInMS = Long.parseLong(props.getProperty(DRAIN_TIME_PROPERTY, DRAIN_TIME_PROPERTY_DEFAULT));
+        if (maxExecutionTime > 0) {
+            System.err.println("Maximum execution time specified as: " + maxExecutionTime + " secs");
+        }
+    }
+
+    /**
+     * @return true if there is something to enforce: a maximum execution time or an operation timeout.
+     */
+    public boolean isNeeded() {
+        return (maxExecutionTime > 0) || (operationTimeoutInMS > 0);
     }
 
     public void run() {
-        try {
-            Thread.sleep(maxExecutionTime * 1000);
-        } catch (InterruptedException e) {
-            System.err.println("Could not wait until max specified time, TerminatorThread interrupted.");
-            return;
+        long deadline = (maxExecutionTime > 0) ? System.nanoTime() + maxExecutionTime * 1000000000L : Long.MAX_VALUE;
+        //check the operation timeouts a few times per timeout
+        long checkInterval = (operationTimeoutInMS > 0) ? Math.max(1, Math.min(operationTimeoutInMS / 4, 100)) : Long.MAX_VALUE;
+
+        while (true) {
+            long now = System.nanoTime();
+            if (now >= deadline) {
+                break;
+            }
+            try {
+                Thread.sleep(Math.max(1, Math.min(checkInterval, (deadline - now + 999999) / 1000000)));
+            } catch (InterruptedException e) {
+                if (maxExecutionTime > 0) {
+                    System.err.println("Could not wait until max specified time, TerminatorThread interrupted.");
+                }
+                return;
+            }
+            if (operationTimeoutInMS > 0) {
+                interruptTimedOutOperations(operationTimeoutInMS * 1000000L);
+            }
         }
+
         System.err.println("Maximum time elapsed. Requesting stop for the workload.");
         workload.requestStop();
-        System.err.println("Stop requested for workload. Now Joining!");
+        System.err.println("Stop requested for workload. Draining in-flight operations.");
         for (Thread t : threads) {
             while (t.isAlive()) {
                 try {
                     t.join(waitTimeOutInMS);
                     if (t.isAlive()) {
-                        System.err.println("Thread-" + t.getName() + " still working. Call Thread.stop()");
-                        t.stop();
+                        System.err.println(t.getName() + " still working. Interrupting it.");
+                        t.interrupt();
                     }
                 } catch (InterruptedException e) {
-                    // Do nothing. Don't know why I was interrupted.
+                    // the client threads are done.
+                    return;
                 }
             }
         }
     }
+
+    private void interruptTimedOutOperations(long timeout) {
+        long now = System.nanoTime();
+        for (Thread t : threads) {
+            if (t instanceof ClientThread) {
+                ((ClientThread) t).interruptOperation(now, timeout);
+            }
+        }
+    }
 }
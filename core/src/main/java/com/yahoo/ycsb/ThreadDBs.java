@@ -0,0 +1,96 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.Vector;
+/**
+ * The DB instances of the client threads, one per thread id. They are kept from one phase to the next,
+ * so the connections a binding opens in init() are reused instead of being set up again for every workload.
+ */
+class ThreadDBs {
+    /**
+     * The properties the DBs depend on, besides their class. The DBs are set up again for a phase in which one
+     * of them differs from the previous phase, e.g. the host of the database.
+     */
+    public static final String DB_PROPERTIES_PROPERTY = "dbproperties";
+
+    private final Vector<DB> dbs = new Vector<DB>();
+    private final Vector<Boolean> initialized = new Vector<Boolean>();
+    private String dbkey;
+
+    /**
+     * Return the DB class, the size of the connection pools and the values of the dbproperties, which decide if
+     * a phase can reuse the DBs of the previous one. The pools are sized when they are created, so a phase that
+     * needs more connections than the previous one sets up new DBs.
+     */
+    static String getKey(Properties props) {
+        StringBuilder ret = new StringBuilder(props.getProperty("db", "com.yahoo.ycsb.BasicDB"));
+        ret.append("\n").append(ConnectionPool.POOL_SIZE_PROPERTY).append("=").append(ConnectionPool.size(props));
+        for (String prop : props.getProperty(DB_PROPERTIES_PROPERTY, "").split(",")) {
+            prop = prop.trim();
+            if (prop.length() > 0) {
+                ret.append("\n").append(prop).append("=").append(props.getProperty(prop, ""));
+            }
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Return the DB of the given thread, creating it if needed. If the phase uses another DB class, pool size or
+     * other dbproperties than the previous one, the previous DBs are cleaned up first.
+     */
+    public DB get(int threadid, String name, Properties props) throws UnknownDBException {
+        String key = getKey(props);
+        if ((dbkey != null) && (!dbkey.equals(key))) {
+            cleanup();
+        }
+        dbkey = key;
+        while (dbs.size() <= threadid) {
+            dbs.add(DBFactory.wrappedDB(name, props));
+            initialized.add(Boolean.FALSE);
+        }
+        return dbs.get(threadid);
+    }
+
+    public boolean isInitialized(int threadid) {
+        return initialized.get(threadid);
+    }
+
+    public void setInitialized(int threadid, boolean init) {
+        initialized.set(threadid, init);
+    }
+
+    /**
+     * Cleanup the DBs that are still initialized and forget all of them.
+     */
+    public void cleanup() {
+        for (int i = 0; i < dbs.size(); i++) {
+            if (initialized.get(i)) {
+                try {
+                    dbs.get(i).cleanup();
+                } catch (DBException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        dbs.clear();
+        initialized.clear();
+        dbkey = null;
+    }
+}
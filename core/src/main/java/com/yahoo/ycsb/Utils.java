@@ -24,17 +24,50 @@ import java.util.Random;
  */
 public class Utils
 {
+  /**
+   * The seed of the random numbers, so runs with the same seed and thread count issue the same operations.
+   */
+  public static final String SEED_PROPERTY = "seed";
+
   private static final Random rand = new Random();
-  private static final ThreadLocal<Random> rng = new ThreadLocal<Random>();
+  private static final ThreadLocal<SplitMix64> rng = new ThreadLocal<SplitMix64>();
 
+  /**
+   * Return the random number generator of the calling thread.
+   */
   public static Random random() {
-    Random ret = rng.get();
+    return generator();
+  }
+
+  private static SplitMix64 generator() {
+    SplitMix64 ret = rng.get();
     if(ret == null) {
-      ret = new Random(rand.nextLong());
+      ret = new SplitMix64(rand.nextLong());
       rng.set(ret);
     }
     return ret;
   }
+
+  /**
+   * Derive a generator for another thread from the one of the calling thread.
+   */
+  public static SplitMix64 split() {
+    return generator().split();
+  }
+
+  /**
+   * Make the given generator the one of the calling thread.
+   */
+  public static void setRandom(SplitMix64 random) {
+    rng.set(random);
+  }
+
+  /**
+   * Seed the generator of the calling thread, with a stream name that tells apart the streams of a seed.
+   */
+  public static void seed(long seed, String stream) {
+    rng.set(new SplitMix64(SplitMix64.mix64(seed) + SplitMix64.mix64(stream.hashCode())));
+  }
       /**
        * Generate a random ASCII string of a given length.
        */
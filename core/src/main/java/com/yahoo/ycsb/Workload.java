@@ -67,6 +67,18 @@ public abstract class Workload
 	    return new ThreadState();
       }
       
+      /**
+       * Change the parameters of the scenario while it is running, e.g. the operation proportions. Only the
+       * properties given are changed. Called from the control channel, concurrently with the operations of
+       * the client threads.
+       *
+       * @param p the properties to change
+       */
+      public void adjust(Properties p) throws WorkloadException
+      {
+	    throw new WorkloadException(getClass().getName()+" can't be adjusted while running");
+      }
+
       /**
        * Cleanup the scenario. Called once, in the main client thread, after all operations have completed.
        */
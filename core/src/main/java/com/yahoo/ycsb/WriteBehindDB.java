@@ -0,0 +1,463 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb;
+
+import java.text.DecimalFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+/**
+ * Decorator that buffers the inserts and updates of the client threads and writes them to another DB later,
+ * as services do that coalesce the writes to hot keys. The writes to a key that is already buffered are merged
+ * into it, field by field, so the DB gets one write for all of them. The buffer is flushed by
+ * writebehind.flushers threads with a DB of their own, every writebehind.flushinterval, or as soon as
+ * writebehind.batchsize keys are buffered. The client threads wait while writebehind.maxpending keys are
+ * buffered, so a slow DB still slows them down.
+ * <p>
+ * The inserts and updates return as soon as they are buffered, and reads see the buffered fields, including the
+ * ones being flushed. The flushes of a key run one at a time, in the order of its writes. Deletes drop the
+ * buffered writes of the key and go to the DB once its flush, if any, is done, as do scans, which don't see the
+ * buffered writes. Every flush
+ * of a key is measured as WRITEBEHIND-FLUSH, and the time from the first buffered write of the key to the end
+ * of its flush as WRITEBEHIND-STALENESS, so the coalescing ratio of a phase is the number of INSERT and UPDATE
+ * operations over WRITEBEHIND-FLUSH. The buffer is flushed before the last DB is cleaned up.
+ * </p>
+ */
+public class WriteBehindDB extends DBDecorator {
+    /**
+     * The class name of the DB to write to.
+     */
+    public static final String DB_PROPERTY = "writebehind.db";
+
+    /**
+     * The number of buffered keys from which the flushers start at once.
+     */
+    public static final String BATCH_SIZE = "writebehind.batchsize";
+    public static final String BATCH_SIZE_DEFAULT = "100";
+
+    /**
+     * The number of buffered keys from which the client threads wait for the flushers.
+     */
+    public static final String MAX_PENDING = "writebehind.maxpending";
+    public static final String MAX_PENDING_DEFAULT = "10000";
+
+    /**
+     * The time between flushes, in milliseconds.
+     */
+    public static final String FLUSH_INTERVAL = "writebehind.flushinterval";
+    public static final String FLUSH_INTERVAL_DEFAULT = "100";
+
+    /**
+     * The number of threads that flush the buffer.
+     */
+    public static final String FLUSHERS = "writebehind.flushers";
+    public static final String FLUSHERS_DEFAULT = "1";
+
+    /**
+     * The buffered writes of a key, and the ones being flushed. It stays in the buffer until the flush of its
+     * last writes is done.
+     */
+    static class Pending {
+        final String table;
+        final String key;
+        /**
+         * The time of the first buffered write.
+         */
+        long first;
+        boolean insert;
+        /**
+         * The buffered writes, or null if there are none.
+         */
+        HashMap<String, byte[]> fields;
+        boolean inflightinsert;
+        /**
+         * The writes being flushed, or null if there are none.
+         */
+        HashMap<String, byte[]> inflight;
+        /**
+         * Set while a flush or a delete of the key runs, so they run one at a time.
+         */
+        boolean busy = false;
+        /**
+         * Set once it left the buffer, after which writes buffer a new one.
+         */
+        boolean removed = false;
+
+        Pending(String table, String key) {
+            this.table = table;
+            this.key = key;
+        }
+
+        /**
+         * Merge a write into the buffered writes.
+         */
+        void buffer(HashMap<String, byte[]> values, boolean isinsert) {
+            if (fields == null) {
+                first = System.nanoTime();
+                insert = false;
+                fields = new HashMap<String, byte[]>();
+            }
+            if (isinsert) {
+                insert = true;
+                fields.clear();
+            }
+            fields.putAll(values);
+        }
+    }
+
+    /**
+     * The buffer and the flushers shared by all the instances.
+     */
+    static class Buffer {
+        final ConcurrentHashMap<String, Pending> pending = new ConcurrentHashMap<String, Pending>();
+        final Object lock = new Object();
+        final AtomicInteger blocked = new AtomicInteger();
+        final AtomicLong writes = new AtomicLong();
+        final AtomicLong flushes = new AtomicLong();
+        final Vector<Flusher> flushers = new Vector<Flusher>();
+        final int batchsize;
+        final int maxpending;
+        final long flushinterval;
+        final Measurements measurements = Measurements.getMeasurements();
+        volatile boolean stopping = false;
+
+        Buffer(Properties p) {
+            batchsize = Integer.parseInt(p.getProperty(BATCH_SIZE, BATCH_SIZE_DEFAULT));
+            maxpending = Integer.parseInt(p.getProperty(MAX_PENDING, MAX_PENDING_DEFAULT));
+            flushinterval = Long.parseLong(p.getProperty(FLUSH_INTERVAL, FLUSH_INTERVAL_DEFAULT));
+        }
+
+        /**
+         * Return the entry of a key, creating it if there is none.
+         */
+        Pending entry(String table, String key) {
+            String k = table + ":" + key;
+            Pending p = pending.get(k);
+            if (p == null) {
+                p = new Pending(table, key);
+                Pending previous = pending.putIfAbsent(k, p);
+                if (previous != null) {
+                    p = previous;
+                }
+            }
+            return p;
+        }
+
+        /**
+         * Drop the entry of a key from the buffer if nothing is buffered or running for it any more.
+         */
+        void removeIfDone(Pending p) {
+            if (p.fields == null && !p.busy) {
+                p.removed = true;
+                pending.remove(p.table + ":" + p.key, p);
+            }
+        }
+
+        /**
+         * Merge a write into the buffer, waiting first while it is full.
+         */
+        void write(String table, String key, HashMap<String, byte[]> fields, boolean insert) {
+            if (pending.size() >= maxpending) {
+                blocked.incrementAndGet();
+                try {
+                    synchronized (lock) {
+                        while (pending.size() >= maxpending && !stopping) {
+                            lock.notifyAll();
+                            lock.wait(flushinterval);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    blocked.decrementAndGet();
+                }
+            }
+            while (true) {
+                Pending p = entry(table, key);
+                synchronized (p) {
+                    if (p.removed) {
+                        continue;
+                    }
+                    p.buffer(fields, insert);
+                    break;
+                }
+            }
+            writes.incrementAndGet();
+            if (pending.size() >= batchsize) {
+                synchronized (lock) {
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Return a copy of the buffered writes of a key, merged with the ones being flushed, or null if there are
+         * none.
+         */
+        Pending get(String table, String key) {
+            Pending p = pending.get(table + ":" + key);
+            if (p == null) {
+                return null;
+            }
+            synchronized (p) {
+                if (p.removed || (p.fields == null && p.inflight == null)) {
+                    return null;
+                }
+                Pending copy = new Pending(table, key);
+                copy.fields = new HashMap<String, byte[]>();
+                if (p.inflight != null) {
+                    copy.insert = p.inflightinsert;
+                    copy.fields.putAll(p.inflight);
+                }
+                if (p.fields != null) {
+                    copy.buffer(p.fields, p.insert);
+                }
+                return copy;
+            }
+        }
+
+        /**
+         * Drop the buffered writes of a key for a delete, waiting for its flush, if any, to be done. The delete
+         * runs before the next flush of the key, until {@link #deleted(Pending)}.
+         */
+        Pending delete(String table, String key) {
+            boolean interrupted = false;
+            try {
+                while (true) {
+                    Pending p = entry(table, key);
+                    synchronized (p) {
+                        while (p.busy) {
+                            try {
+                                p.wait();
+                            } catch (InterruptedException e) {
+                                interrupted = true;
+                            }
+                        }
+                        if (p.removed) {
+                            continue;
+                        }
+                        p.busy = true;
+                        p.fields = null;
+                        return p;
+                    }
+                }
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /**
+         * End the delete of a key, after which its writes may be flushed again.
+         */
+        void deleted(Pending p) {
+            synchronized (p) {
+                p.busy = false;
+                removeIfDone(p);
+                p.notifyAll();
+            }
+        }
+
+        /**
+         * Write all the buffered keys to the DB, except the ones another flusher or a delete is busy with.
+         */
+        void flush(DB db) {
+            for (Pending p : pending.values()) {
+                boolean insert;
+                HashMap<String, byte[]> fields;
+                long first;
+                synchronized (p) {
+                    if (p.busy || p.removed || p.fields == null) {
+                        continue;
+                    }
+                    p.busy = true;
+                    p.inflight = p.fields;
+                    p.inflightinsert = p.insert;
+                    p.fields = null;
+                    insert = p.inflightinsert;
+                    fields = p.inflight;
+                    first = p.first;
+                }
+                long st = System.nanoTime();
+                HashMap<String, ByteIterator> values = toIterators(fields);
+                int res = insert ? db.insert(p.table, p.key, values) : db.update(p.table, p.key, values);
+                long en = System.nanoTime();
+                synchronized (p) {
+                    p.inflight = null;
+                    p.busy = false;
+                    removeIfDone(p);
+                    p.notifyAll();
+                }
+                measurements.measure("WRITEBEHIND-FLUSH", (int) ((en - st) / 1000));
+                measurements.reportReturnCode("WRITEBEHIND-FLUSH", res);
+                measurements.measure("WRITEBEHIND-STALENESS", (int) ((en - first) / 1000));
+                flushes.incrementAndGet();
+                if (blocked.get() > 0 && pending.size() < maxpending) {
+                    synchronized (lock) {
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Flush what is left, stop the flushers and cleanup their DBs. The DBs are cleaned up here rather than by
+         * the flushers, as this runs in {@link DB#releaseGlobal(DB)}, which the flushers would wait for.
+         */
+        void stop() throws DBException {
+            stopping = true;
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+            for (Flusher f : flushers) {
+                try {
+                    f.join();
+                } catch (InterruptedException e) {
+                    //do nothing
+                }
+                cleanupDB(f.db);
+            }
+        }
+    }
+
+    static class Flusher extends Thread {
+        final Buffer buffer;
+        final DB db;
+
+        Flusher(Buffer buffer, DB db) {
+            this.buffer = buffer;
+            this.db = db;
+            setName("writebehind-flusher");
+            setDaemon(true);
+        }
+
+        public void run() {
+            while (!buffer.stopping) {
+                synchronized (buffer.lock) {
+                    if (!buffer.stopping && buffer.pending.size() < buffer.batchsize) {
+                        try {
+                            buffer.lock.wait(buffer.flushinterval);
+                        } catch (InterruptedException e) {
+                            break;
+                        }
+                    }
+                }
+                buffer.flush(db);
+            }
+            buffer.flush(db);
+        }
+    }
+
+    static Buffer buffer;
+
+    Buffer _buffer;
+
+    protected String dbProperty() {
+        return DB_PROPERTY;
+    }
+
+    /**
+     * Return the buffer shared by all the instances, starting its flushers for the first.
+     */
+    static synchronized Buffer buffer(WriteBehindDB owner) throws DBException {
+        if (buffer == null) {
+            Properties p = owner.getProperties();
+            Buffer b = new Buffer(p);
+            int flushers = Integer.parseInt(p.getProperty(FLUSHERS, FLUSHERS_DEFAULT));
+            for (int i = 0; i < flushers; i++) {
+                b.flushers.add(new Flusher(b, owner.createDB(p.getProperty(DB_PROPERTY))));
+            }
+            for (Flusher f : b.flushers) {
+                f.start();
+            }
+            buffer = b;
+        }
+        return buffer;
+    }
+
+    public void init() throws DBException {
+        super.init();
+        _buffer = buffer(this);
+    }
+
+    public void cleanupGlobal() throws DBException {
+        synchronized (WriteBehindDB.class) {
+            if (buffer == null) {
+                return;
+            }
+            buffer.stop();
+            long writes = buffer.writes.get();
+            long flushes = buffer.flushes.get();
+            System.err.println("Write-behind: " + writes + " writes coalesced into " + flushes + " flushes, ratio "
+                    + new DecimalFormat("#.##").format((flushes > 0) ? (double) writes / flushes : 0));
+            buffer = null;
+        }
+    }
+
+    /**
+     * Put the given field of the buffered writes, or all of them if it is null, into the result.
+     */
+    static void overlay(Pending p, String field, HashMap<String, ByteIterator> result) {
+        for (Map.Entry<String, byte[]> entry : p.fields.entrySet()) {
+            if (field == null || field.equals(entry.getKey())) {
+                result.put(entry.getKey(), new ByteArrayByteIterator(entry.getValue()));
+            }
+        }
+    }
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+        Pending p = _buffer.get(table, key);
+        if (p != null && p.insert) {
+            //the whole record is buffered
+            overlay(p, field, result);
+            return 0;
+        }
+        int res = _db.read(table, key, field, result);
+        if (res == 0 && p != null) {
+            overlay(p, field, result);
+        }
+        return res;
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+        _buffer.write(table, key, toArrays(values), false);
+        return 0;
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+        _buffer.write(table, key, toArrays(values), true);
+        return 0;
+    }
+
+    public int delete(String table, String key) {
+        Pending p = _buffer.delete(table, key);
+        try {
+            return _db.delete(table, key);
+        } finally {
+            _buffer.deleted(p);
+        }
+    }
+}
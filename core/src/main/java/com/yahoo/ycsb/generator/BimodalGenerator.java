@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.generator;
+
+import com.yahoo.ycsb.Utils;
+
+/**
+ * A mix of two distributions, such as the latency of a service that answers most requests from memory and the
+ * rest from disk: draws from the slow generator with the given probability, and from the fast one otherwise.
+ */
+public class BimodalGenerator extends IntegerGenerator {
+	final IntegerGenerator fast;
+	final IntegerGenerator slow;
+	final double slowfraction;
+
+	/**
+	 * @param fast The generator of the common values.
+	 * @param slow The generator of the rare values.
+	 * @param slowfraction The probability of a value of the slow generator.
+	 */
+	public BimodalGenerator(IntegerGenerator fast, IntegerGenerator slow, double slowfraction) {
+		this.fast = fast;
+		this.slow = slow;
+		this.slowfraction = slowfraction;
+	}
+
+	@Override
+	public int nextInt() {
+		int ret = (Utils.random().nextDouble() < slowfraction) ? slow.nextInt() : fast.nextInt();
+		setLastInt(ret);
+		return ret;
+	}
+
+	@Override
+	public double mean() {
+		return (1 - slowfraction) * fast.mean() + slowfraction * slow.mean();
+	}
+}
@@ -25,14 +25,30 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class CounterGenerator extends IntegerGenerator
 {
 	final AtomicInteger counter;
+	final int countstart;
+	final int stride;
+	final int initiallast;
 
 	/**
 	 * Create a counter that starts at countstart
 	 */
 	public CounterGenerator(int countstart)
 	{
+		this(countstart,1,countstart-1);
+	}
+
+	/**
+	 * Create a counter that starts at countstart and counts in steps of stride, so that counters with the same
+	 * stride and different starts never return the same value. lastInt() returns initiallast until the first
+	 * value, e.g. the last key loaded before the counters of all the clients.
+	 */
+	public CounterGenerator(int countstart, int stride, int initiallast)
+	{
+		this.countstart=countstart;
+		this.stride=stride;
+		this.initiallast=initiallast;
 		counter=new AtomicInteger(countstart);
-		setLastInt(counter.get()-1);
+		setLastInt(initiallast);
 	}
 	
 	/**
@@ -41,14 +57,15 @@ public class CounterGenerator extends IntegerGenerator
 	 */
 	public int nextInt() 
 	{
-		int ret = counter.getAndIncrement();
+		int ret = counter.getAndAdd(stride);
 		setLastInt(ret);
 		return ret;
 	}
 	@Override
 	public int lastInt()
 	{
-	                return counter.get() - 1;
+		int last=counter.get()-stride;
+		return (last<countstart) ? initiallast : last;
 	}
 	@Override
 	public double mean() {
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.generator;
+
+import com.yahoo.ycsb.Utils;
+
+/**
+ * A generator of a lognormal distribution with the given mean, such as the latency of a service: most values are
+ * close to the median, and a long tail of larger ones. The larger sigma, the longer the tail; with sigma 0 all
+ * values are the mean.
+ */
+public class LognormalGenerator extends IntegerGenerator {
+	final double mean;
+	final double mu;
+	final double sigma;
+
+	/**
+	 * @param mean The mean of the values.
+	 * @param sigma The standard deviation of the logarithm of the values.
+	 */
+	public LognormalGenerator(double mean, double sigma) {
+		this.mean = mean;
+		this.sigma = sigma;
+		//the mean of a lognormal distribution is exp(mu + sigma^2 / 2)
+		mu = Math.log(mean) - sigma * sigma / 2;
+	}
+
+	@Override
+	public int nextInt() {
+		double value = Math.exp(mu + sigma * Utils.random().nextGaussian());
+		int ret = (int) Math.min(value, Integer.MAX_VALUE);
+		setLastInt(ret);
+		return ret;
+	}
+
+	@Override
+	public double mean() {
+		return mean;
+	}
+}
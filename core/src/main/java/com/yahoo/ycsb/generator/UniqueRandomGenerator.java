@@ -1,32 +1,76 @@
 package com.yahoo.ycsb.generator;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.yahoo.ycsb.Utils;
+
+/**
+ * Returns the integers from 0 to count-1 in a random order, each of them once, then starts over in the same order.
+ * <p/>
+ * The order is a random permutation that is computed lazily, one value at a time, instead of shuffling a list of all
+ * the integers up front, which takes long and a lot of memory for large counts: a small Feistel network with random
+ * round keys is a bijection on the integers of its bit width, and values beyond count-1 are mapped again until they
+ * fall into the range (cycle walking).
+ */
 public class UniqueRandomGenerator extends IntegerGenerator
 {
-	private ArrayList<Integer> items;
+	private static final int ROUNDS=4;
+
     private AtomicInteger counter;
     private int size;
+	private int halfbits;
+	private int halfmask;
+	private int[] keys;
 
 	public UniqueRandomGenerator(int count)
 	{
         this.size = count;
-		items = new ArrayList<Integer>(count);
-        for(int i = 0; i < count; i++) {
-            items.add(i);
-        }
-        Collections.shuffle(items);
+		//the network works on an even number of bits, at least enough for count-1
+		int bits=32-Integer.numberOfLeadingZeros(Math.max(count-1,1));
+		halfbits=(bits+1)/2;
+		halfmask=(1<<halfbits)-1;
+		keys=new int[ROUNDS];
+		for (int i=0; i<ROUNDS; i++)
+		{
+			keys[i]=Utils.random().nextInt();
+		}
         counter = new AtomicInteger(0);
 	}
 
+	/**
+	 * Return the position of i in the permutation.
+	 */
+	int permute(int i)
+	{
+		int x=i;
+		do
+		{
+			x=encrypt(x);
+		}
+		while ((x&0xFFFFFFFFL)>=size);
+		return x;
+	}
+
+	private int encrypt(int x)
+	{
+		int left=x>>>halfbits;
+		int right=x&halfmask;
+		for (int key : keys)
+		{
+			int f=Utils.FNVhash32(right^key)&halfmask;
+			int next=left^f;
+			left=right;
+			right=next;
+		}
+		return (left<<halfbits)|right;
+	}
+
     @Override
     public int nextInt()
     {
         int c = counter.getAndIncrement();
         setLastInt(c);
-        return items.get(c % size);
+        return permute((int) (((long) c & 0xFFFFFFFFL) % size));
     }
 
 	@Override
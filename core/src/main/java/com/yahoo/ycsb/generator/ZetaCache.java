@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.generator;
+
+import java.util.HashMap;
+
+/**
+ * Computes the zeta constants of zipfian distributions in constant time, and caches them by item count and zipfian
+ * constant, so that large item counts don't hold up the start of a run.
+ * <p/>
+ * Summing all n terms takes minutes for billions of items. Instead, only the first {@link #EXACT} terms are added up;
+ * the rest of the sum is computed with the Euler-Maclaurin formula, whose error for the smooth terms 1/i^theta beyond
+ * that point is far below the rounding error of the plain sum.
+ */
+public class ZetaCache
+{
+	/**
+	 * The number of terms that are summed exactly.
+	 */
+	static final long EXACT=1L<<20;
+
+	private static final HashMap<String,Double> cache=new HashMap<String,Double>();
+
+	/**
+	 * Return the zeta constant for n items and the zipfian constant theta.
+	 */
+	public static synchronized double zeta(long n, double theta)
+	{
+		String key=theta+"-"+n;
+		Double ret=cache.get(key);
+		if (ret==null)
+		{
+			ret=sum(0,n,theta,0);
+			cache.put(key,ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Add the terms 1/i^theta for i from st+1 to n to initialsum, like {@link ZipfianGenerator#zetastatic(long, long, double, double)}.
+	 */
+	static double sum(long st, long n, double theta, double initialsum)
+	{
+		long exact=Math.max(st,EXACT);
+		if (n<=exact)
+		{
+			return ZipfianGenerator.zetastatic(st,n,theta,initialsum);
+		}
+		double sum=ZipfianGenerator.zetastatic(st,exact,theta,initialsum);
+		return sum+tail(exact+1,n,theta);
+	}
+
+	/**
+	 * Return the sum of 1/i^theta for i from a to n with the Euler-Maclaurin formula, up to the third derivative.
+	 */
+	static double tail(long a, long n, double theta)
+	{
+		double fa=Math.pow(a,-theta);
+		double fn=Math.pow(n,-theta);
+		double integral;
+		if (theta==1.0)
+		{
+			integral=Math.log(((double)n)/a);
+		}
+		else
+		{
+			integral=(Math.pow(n,1-theta)-Math.pow(a,1-theta))/(1-theta);
+		}
+		//f'(x)=-theta*x^(-theta-1), f'''(x)=-theta(theta+1)(theta+2)*x^(-theta-3)
+		double d1=-theta*(fn/n-fa/a);
+		double d3=-theta*(theta+1)*(theta+2)*(fn/((double)n*n*n)-fa/((double)a*a*a));
+		return integral+(fa+fn)/2+d1/12-d3/720;
+	}
+}
@@ -111,14 +111,15 @@ public class ZipfianGenerator extends IntegerGenerator
 	}
 
 	/**
-	 * Create a zipfian generator for items between min and max (inclusive) for the specified zipfian constant.
+	 * Create a zipfian generator for items between min and max (inclusive) for the specified zipfian constant. The zeta constant
+	 * is taken from {@link ZetaCache} if it was computed before.
 	 * @param min The smallest integer to generate in the sequence.
 	 * @param max The largest integer to generate in the sequence.
 	 * @param _zipfianconstant The zipfian constant to use.
 	 */
 	public ZipfianGenerator(long min, long max, double _zipfianconstant)
 	{
-		this(min,max,_zipfianconstant,zetastatic(max-min+1,_zipfianconstant));
+		this(min,max,_zipfianconstant,ZetaCache.zeta(max-min+1,_zipfianconstant));
 	}
 	
 	/**
@@ -164,7 +165,7 @@ public class ZipfianGenerator extends IntegerGenerator
 	double zeta(long n, double theta)
 	{
 		countforzeta=n;
-		return zetastatic(n,theta);
+		return ZetaCache.zeta(n,theta);
 	}
 	
 	/**
@@ -191,7 +192,7 @@ public class ZipfianGenerator extends IntegerGenerator
 	double zeta(long st, long n, double theta, double initialsum)
 	{
 		countforzeta=n;
-		return zetastatic(st,n,theta,initialsum);
+		return ZetaCache.sum(st,n,theta,initialsum);
 	}
 	
 	/**
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * Counts the successful, failed and timed out operations of every interval of a run, for failover
+ * benchmarks. At the end of the run, it finds the degraded windows, i.e. runs of intervals with fewer
+ * successful operations than the baseline (the median interval) or too many errors, and reports how long
+ * each one lasted and how many operations were lost.
+ * <p/>
+ * Event markers, e.g. "node killed", can be added to the timeline while the run is going on. The time to
+ * detect and the time to recover of a degraded window are measured from the last marker before it.
+ */
+public class AvailabilityTimeline {
+    public static final String AVAILABILITY = "availability";
+    public static final String AVAILABILITY_DEFAULT = "false";
+
+    /**
+     * The length of an interval in milliseconds.
+     */
+    public static final String INTERVAL = "availability.interval";
+    public static final String INTERVAL_DEFAULT = "1000";
+
+    /**
+     * An interval with fewer successful operations than this fraction of the baseline is degraded.
+     */
+    public static final String THRESHOLD = "availability.threshold";
+    public static final String THRESHOLD_DEFAULT = "0.8";
+
+    /**
+     * An interval in which a larger fraction of the operations failed or timed out is degraded.
+     */
+    public static final String ERROR_RATIO = "availability.errorratio";
+    public static final String ERROR_RATIO_DEFAULT = "0.01";
+
+    static final int SUCCESS = 0;
+    static final int ERROR = 1;
+    static final int TIMEOUT = 2;
+
+    private final long interval;
+    private final double threshold;
+    private final double errorratio;
+    /**
+     * Operations slower than this many ns count as timed out, see the operationtimeout property.
+     */
+    private final long timeout;
+
+    private long start = -1;
+    private long[][] counts = new long[3][64];
+    private int intervals = 0;
+    private final Vector<Long> markertimes = new Vector<Long>();
+    private final Vector<String> markerlabels = new Vector<String>();
+
+    public AvailabilityTimeline(Properties props) {
+        interval = Long.parseLong(props.getProperty(INTERVAL, INTERVAL_DEFAULT));
+        threshold = Double.parseDouble(props.getProperty(THRESHOLD, THRESHOLD_DEFAULT));
+        errorratio = Double.parseDouble(props.getProperty(ERROR_RATIO, ERROR_RATIO_DEFAULT));
+        timeout = Long.parseLong(props.getProperty("operationtimeout", "0")) * 1000000L;
+    }
+
+    public static boolean isEnabled(Properties props) {
+        return Boolean.parseBoolean(props.getProperty(AVAILABILITY, AVAILABILITY_DEFAULT));
+    }
+
+    /**
+     * Count an operation that ended now.
+     *
+     * @param code    the return code of the operation
+     * @param latency the latency of the operation in ns
+     */
+    public void record(int code, long latency) {
+        int kind;
+        if ((timeout > 0) && (latency >= timeout)) {
+            kind = TIMEOUT;
+        } else if (code == 0) {
+            kind = SUCCESS;
+        } else {
+            kind = ERROR;
+        }
+        add(System.currentTimeMillis(), kind);
+    }
+
+    synchronized void add(long now, int kind) {
+        if (start < 0) {
+            start = now;
+        }
+        int i = (int) ((now - start) / interval);
+        if (i >= counts[0].length) {
+            int size = Math.max(i + 1, counts[0].length * 2);
+            for (int k = 0; k < counts.length; k++) {
+                counts[k] = Arrays.copyOf(counts[k], size);
+            }
+        }
+        counts[kind][i]++;
+        intervals = Math.max(intervals, i + 1);
+    }
+
+    /**
+     * Add an event marker at the current time.
+     */
+    public void mark(String label) {
+        mark(System.currentTimeMillis(), label);
+    }
+
+    synchronized void mark(long now, String label) {
+        markertimes.add(now);
+        markerlabels.add(label);
+    }
+
+    /**
+     * A run of consecutive degraded intervals, [first, last].
+     */
+    static class Window {
+        int first;
+        int last;
+        long lost;
+        long errors;
+        long timeouts;
+    }
+
+    /**
+     * Return the median number of successful operations per complete interval.
+     */
+    synchronized long baseline() {
+        //the last interval is cut short by the end of the run
+        int complete = Math.max(intervals - 1, 1);
+        long[] sorted = Arrays.copyOf(counts[SUCCESS], complete);
+        Arrays.sort(sorted);
+        return sorted[complete / 2];
+    }
+
+    synchronized boolean isDegraded(int i, long baseline) {
+        long success = counts[SUCCESS][i];
+        long failed = counts[ERROR][i] + counts[TIMEOUT][i];
+        if (success < threshold * baseline) {
+            return true;
+        }
+        return (failed > 0) && (failed > errorratio * (success + failed));
+    }
+
+    synchronized Vector<Window> degradedWindows() {
+        Vector<Window> ret = new Vector<Window>();
+        long baseline = baseline();
+        Window w = null;
+        //the last interval is incomplete and not judged
+        for (int i = 0; i < intervals - 1; i++) {
+            if (isDegraded(i, baseline)) {
+                if (w == null) {
+                    w = new Window();
+                    w.first = i;
+                    ret.add(w);
+                }
+                w.last = i;
+                w.lost += Math.max(0, baseline - counts[SUCCESS][i]);
+                w.errors += counts[ERROR][i];
+                w.timeouts += counts[TIMEOUT][i];
+            } else {
+                w = null;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Export the counts of every interval, the markers and the degraded windows.
+     */
+    public synchronized void export(String name, MeasurementsExporter exporter) throws IOException {
+        for (int i = 0; i < intervals; i++) {
+            String t = Long.toString(i * interval);
+            exporter.write(name + "-SUCCESS", t, (double) counts[SUCCESS][i]);
+            exporter.write(name + "-ERROR", t, (double) counts[ERROR][i]);
+            exporter.write(name + "-TIMEOUT", t, (double) counts[TIMEOUT][i]);
+        }
+        for (int i = 0; i < markertimes.size(); i++) {
+            exporter.write(name + "-MARKER", markerlabels.get(i), (double) (markertimes.get(i) - start));
+        }
+
+        long baseline = (intervals > 0) ? baseline() : 0;
+        Vector<Window> windows = (intervals > 0) ? degradedWindows() : new Vector<Window>();
+        long lost = 0;
+        long degraded = 0;
+        for (Window w : windows) {
+            lost += w.lost;
+            degraded += (w.last - w.first + 1) * interval;
+        }
+        exporter.write(name, "Interval(ms)", (double) interval);
+        exporter.write(name, "Intervals", intervals);
+        exporter.write(name, "BaselineThroughput(ops/sec)", 1000.0 * baseline / interval);
+        exporter.write(name, "DegradedWindows", windows.size());
+        exporter.write(name, "DegradedTime(ms)", (double) degraded);
+        exporter.write(name, "LostOperations", (double) lost);
+
+        for (int i = 0; i < windows.size(); i++) {
+            Window w = windows.get(i);
+            String prefix = "Window" + (i + 1) + ".";
+            long wstart = w.first * interval;
+            long wend = (w.last + 1) * interval;
+            exporter.write(name, prefix + "Start(ms)", (double) wstart);
+            exporter.write(name, prefix + "End(ms)", (double) wend);
+            exporter.write(name, prefix + "LostOperations", (double) w.lost);
+            exporter.write(name, prefix + "Errors", (double) w.errors);
+            exporter.write(name, prefix + "Timeouts", (double) w.timeouts);
+
+            //the last marker before the window, but after the previous one, caused it
+            long after = (i > 0) ? (windows.get(i - 1).last + 1) * interval : Long.MIN_VALUE;
+            long marker = Long.MIN_VALUE;
+            for (long m : markertimes) {
+                long offset = m - start;
+                if ((offset < wend) && (offset >= after) && (offset > marker)) {
+                    marker = offset;
+                }
+            }
+            if (marker != Long.MIN_VALUE) {
+                exporter.write(name, prefix + "Marker(ms)", (double) marker);
+                exporter.write(name, prefix + "TimeToDetect(ms)", (double) Math.max(0, wstart - marker));
+                exporter.write(name, prefix + "TimeToRecover(ms)", (double) (wend - marker));
+            } else {
+                exporter.write(name, prefix + "TimeToRecover(ms)", (double) (wend - wstart));
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2010 Yahoo! Inc. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you
+ * may not use this file except in compliance with the License. You
+ * may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing
+ * permissions and limitations under the License. See accompanying
+ * LICENSE file.
+ */
+
+package com.yahoo.ycsb.measurements;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+/**
+ * A plain copy of the state of a {@link OneMeasurementHistogram}. Unlike the measurement itself, snapshots
+ * can be subtracted to get the operations of an interval, added to merge the results of several clients
+ * exactly, and sent over the network.
+ */
+public class LatencyHistogram {
+    /**
+     * Operations per 1 ms latency bucket.
+     */
+    long[] buckets;
+    long overflow;
+    long operations;
+    long retries;
+    long totallatency;
+    int min = -1;
+    int max = -1;
+    TreeMap<Integer, Long> returncodes = new TreeMap<Integer, Long>();
+
+    public LatencyHistogram(int bucketcount) {
+        buckets = new long[bucketcount];
+    }
+
+    public long getOperations() {
+        return operations;
+    }
+
+    public long getTotalLatency() {
+        return totallatency;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Add the operations of another histogram to this one.
+     */
+    public void add(LatencyHistogram other) {
+        if (other.buckets.length > buckets.length) {
+            long[] grown = new long[other.buckets.length];
+            System.arraycopy(buckets, 0, grown, 0, buckets.length);
+            buckets = grown;
+        }
+        for (int i = 0; i < other.buckets.length; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        overflow += other.overflow;
+        operations += other.operations;
+        retries += other.retries;
+        totallatency += other.totallatency;
+        if ((other.min >= 0) && ((min < 0) || (other.min < min))) {
+            min = other.min;
+        }
+        if (other.max > max) {
+            max = other.max;
+        }
+        for (Map.Entry<Integer, Long> e : other.returncodes.entrySet()) {
+            Long count = returncodes.get(e.getKey());
+            returncodes.put(e.getKey(), (count == null ? 0 : count) + e.getValue());
+        }
+    }
+
+    /**
+     * Return the operations recorded since an earlier snapshot of the same measurement. Min and max can't be
+     * taken apart, so the result keeps the values of this snapshot.
+     */
+    public LatencyHistogram minus(LatencyHistogram earlier) {
+        LatencyHistogram ret = new LatencyHistogram(buckets.length);
+        for (int i = 0; i < buckets.length; i++) {
+            ret.buckets[i] = buckets[i] - (i < earlier.buckets.length ? earlier.buckets[i] : 0);
+        }
+        ret.overflow = overflow - earlier.overflow;
+        ret.operations = operations - earlier.operations;
+        ret.retries = retries - earlier.retries;
+        ret.totallatency = totallatency - earlier.totallatency;
+        ret.min = min;
+        ret.max = max;
+        for (Map.Entry<Integer, Long> e : returncodes.entrySet()) {
+            Long count = earlier.returncodes.get(e.getKey());
+            long diff = e.getValue() - (count == null ? 0 : count);
+            if (diff != 0) {
+                ret.returncodes.put(e.getKey(), diff);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Return the latency in ms below which the given fraction of the operations completed, or -1 if the
+     * percentile lies in the overflow bucket.
+     */
+    public int percentile(double fraction) {
+        long opcounter = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            opcounter += buckets[i];
+            if (((double) opcounter) / ((double) operations) >= fraction) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Export the summary in the same format as {@link OneMeasurementHistogram}.
+     */
+    public void exportGeneral(String name, MeasurementsExporter exporter) throws IOException {
+        write(exporter, name, "Operations", operations);
+        write(exporter, name, "Retries", retries);
+        exporter.write(name, "AverageLatency(us)", (((double) totallatency) / ((double) operations)));
+        exporter.write(name, "MinLatency(us)", min);
+        exporter.write(name, "MaxLatency(us)", max);
+
+        int p95 = percentile(0.95);
+        if (p95 >= 0) {
+            exporter.write(name, "95thPercentileLatency(ms)", p95);
+        }
+        int p99 = percentile(0.99);
+        if (p99 >= 0) {
+            exporter.write(name, "99thPercentileLatency(ms)", p99);
+        }
+
+        for (Map.Entry<Integer, Long> e : returncodes.entrySet()) {
+            write(exporter, name, "Return=" + e.getKey(), e.getValue());
+        }
+    }
+
+    /**
+     * Export every bucket followed by the summary, like {@link OneMeasurementHistogram#exportMeasurementsFinal}.
+     */
+    public void exportFinal(String name, MeasurementsExporter exporter) throws IOException {
+        for (int i = 0; i < buckets.length; i++) {
+            write(exporter, name, Integer.toString(i), buckets[i]);
+        }
+        write(exporter, name, ">" + buckets.length, overflow);
+        exportGeneral(name, exporter);
+    }
+
+    /**
+     * Counters are exported as ints, as they always were, unless merging made them too large.
+     */
+    private static void write(MeasurementsExporter exporter, String name, String measurement, long value) throws IOException {
+        if (value <= Integer.MAX_VALUE) {
+            exporter.write(name, measurement, (int) value);
+        } else {
+            exporter.write(name, measurement, (double) value);
+        }
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(buckets.length);
+        for (long b : buckets) {
+            out.writeLong(b);
+        }
+        out.writeLong(overflow);
+        out.writeLong(operations);
+        out.writeLong(retries);
+        out.writeLong(totallatency);
+        out.writeInt(min);
+        out.writeInt(max);
+        out.writeInt(returncodes.size());
+        for (Map.Entry<Integer, Long> e : returncodes.entrySet()) {
+            out.writeInt(e.getKey());
+            out.writeLong(e.getValue());
+        }
+    }
+
+    public static LatencyHistogram read(DataInput in) throws IOException {
+        LatencyHistogram ret = new LatencyHistogram(in.readInt());
+        for (int i = 0; i < ret.buckets.length; i++) {
+            ret.buckets[i] = in.readLong();
+        }
+        ret.overflow = in.readLong();
+        ret.operations = in.readLong();
+        ret.retries = in.readLong();
+        ret.totallatency = in.readLong();
+        ret.min = in.readInt();
+        ret.max = in.readInt();
+        int codes = in.readInt();
+        for (int i = 0; i < codes; i++) {
+            ret.returncodes.put(in.readInt(), in.readLong());
+        }
+        return ret;
+    }
+}
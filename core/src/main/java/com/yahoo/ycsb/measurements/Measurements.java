@@ -18,8 +18,10 @@
 package com.yahoo.ycsb.measurements;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
 
@@ -56,9 +58,28 @@ public class Measurements
 		return singleton;
 	}
 
-	HashMap<String,OneMeasurement> data;
+      /**
+       * The measurements of the current segment. A segment switch replaces the map while other threads measure,
+       * so every access reads it once.
+       */
+	volatile ConcurrentHashMap<String,OneMeasurement> data;
 	boolean histogram=true;
 
+	/**
+	 * Prefix of the metric names, so the phases of a multi-phase run are reported separately.
+	 */
+	String namespace="";
+
+	/**
+	 * The name of the current phase. The namespace of a segment of the phase differs from it.
+	 */
+	String phase="";
+
+	/**
+	 * Success, error and timeout counts per interval, or null if not enabled.
+	 */
+	AvailabilityTimeline availability=null;
+
 	private Properties _props;
 	
       /**
@@ -66,7 +87,7 @@ public class Measurements
        */
 	public Measurements(Properties props)
 	{
-		data=new HashMap<String,OneMeasurement>();
+		data=new ConcurrentHashMap<String,OneMeasurement>();
 		
 		_props=props;
 		
@@ -78,38 +99,100 @@ public class Measurements
 		{
 			histogram=false;
 		}
+
+		if (AvailabilityTimeline.isEnabled(_props))
+		{
+			availability=new AvailabilityTimeline(_props);
+		}
 	}
 	
 	OneMeasurement constructOneMeasurement(String name)
 	{
 		if (histogram)
 		{
-			return new OneMeasurementHistogram(name,_props);
+			return new OneMeasurementHistogram(qualify(name),_props);
 		}
 		else
 		{
-			return new OneMeasurementTimeSeries(name,_props);
+			return new OneMeasurementTimeSeries(qualify(name),_props);
 		}
 	}
 
       /**
-       * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured value.
+       * Return the measurement of the operation in the current segment, creating it on first use.
        */
-	public synchronized void measure(String operation, int latency)
+	private OneMeasurement get(String operation)
 	{
-		if (!data.containsKey(operation))
+		ConcurrentHashMap<String,OneMeasurement> d=data;
+		OneMeasurement m=d.get(operation);
+		if (m==null)
 		{
 			synchronized(this)
 			{
-				if (!data.containsKey(operation))
+				d=data;
+				m=d.get(operation);
+				if (m==null)
 				{
-					data.put(operation,constructOneMeasurement(operation));
+					m=constructOneMeasurement(operation);
+					d.put(operation,m);
 				}
 			}
 		}
+		return m;
+	}
+
+      /**
+       * Start collecting measurements into a new namespace, dropping everything measured so far.
+       * Must only be called while no operations are being measured, i.e. between the phases of a run.
+       *
+       * @param name The namespace, or the empty string for unqualified metric names.
+       */
+	public synchronized void startPhase(String name)
+	{
+		data=new ConcurrentHashMap<String,OneMeasurement>();
+		namespace=name;
+		phase=name;
+		if (availability!=null)
+		{
+			availability=new AvailabilityTimeline(_props);
+		}
+	}
+
+      /**
+       * Start a new segment of the running phase after its parameters were changed: the operations from now on
+       * are measured into a new namespace. Unlike {@link #startPhase(String)}, this may be called while operations
+       * are being measured, and the availability timeline of the phase goes on, with the change as a marker.
+       *
+       * @param name The namespace of the segment.
+       * @param change A description of the change.
+       */
+	public synchronized void startSegment(String name, String change)
+	{
+		data=new ConcurrentHashMap<String,OneMeasurement>();
+		namespace=name;
+		mark(change);
+	}
+
+      /**
+       * Return the metric name as it is exported in the current namespace, e.g. "a:READ" in phase "a".
+       */
+	public String qualify(String metric)
+	{
+		if (namespace.length()==0)
+		{
+			return metric;
+		}
+		return namespace+":"+metric;
+	}
+
+      /**
+       * Report a single value of a single metric. E.g. for read latency, operation="READ" and latency is the measured value.
+       */
+	public synchronized void measure(String operation, int latency)
+	{
 		try
 		{
-			data.get(operation).measure(latency);
+			get(operation).measure(latency);
 		}
 		catch (java.lang.ArrayIndexOutOfBoundsException e)
 		{
@@ -124,34 +207,41 @@ public class Measurements
        */
 	public void reportReturnCode(String operation, int code)
 	{
-		if (!data.containsKey(operation))
+		get(operation).reportReturnCode(code);
+	}
+
+      /**
+       * Count the outcome of a DB operation in the availability timeline, if enabled.
+       *
+       * @param code the return code of the operation
+       * @param latency the latency of the operation in ns
+       */
+	public void reportOutcome(int code, long latency)
+	{
+		AvailabilityTimeline a=availability;
+		if (a!=null)
 		{
-			synchronized(this)
-			{
-				if (!data.containsKey(operation))
-				{
-					data.put(operation,constructOneMeasurement(operation));
-				}
-			}
+			a.record(code,latency);
+		}
+	}
+
+      /**
+       * Add an event marker, such as "node killed", to the availability timeline, if enabled.
+       */
+	public void mark(String label)
+	{
+		AvailabilityTimeline a=availability;
+		if (a!=null)
+		{
+			a.mark(label);
 		}
-		data.get(operation).reportReturnCode(code);
 	}
 
     /**
      * Report a retry counts for a single DB operaiton.
      */
     public void reportRetryCount(String operation, int retryCount) {
-        if (!data.containsKey(operation))
-        {
-            synchronized(this)
-            {
-                if (!data.containsKey(operation))
-                {
-                    data.put(operation,constructOneMeasurement(operation));
-                }
-            }
-        }
-        data.get(operation).reportRetryCount(retryCount);
+        get(operation).reportRetryCount(retryCount);
     }
 	
   /**
@@ -177,12 +267,58 @@ public class Measurements
     }
 
     public void exportMeasurementsFinal(MeasurementsExporter exporter) throws IOException {
+        exportSegment(exporter);
+        if (availability != null)
+        {
+            availability.export((phase.length() == 0) ? "AVAILABILITY" : phase + ":AVAILABILITY", exporter);
+        }
+    }
+
+    /**
+     * Export the final measurements of the current segment of the phase, without the availability timeline,
+     * which covers the whole phase.
+     */
+    public void exportSegment(MeasurementsExporter exporter) throws IOException {
         for (OneMeasurement measurement : data.values())
         {
             measurement.exportMeasurementsFinal(exporter);
         }
     }
 	
+      /**
+       * Return the operations measured since the previous call, for every histogram measurement.
+       * See {@link OneMeasurementHistogram#takeInterval()}.
+       */
+	public synchronized Map<String,LatencyHistogram> takeIntervals()
+	{
+		Map<String,LatencyHistogram> ret=new TreeMap<String,LatencyHistogram>();
+		for (OneMeasurement m : data.values())
+		{
+			if (m instanceof OneMeasurementHistogram)
+			{
+				ret.put(m.getName(),((OneMeasurementHistogram)m).takeInterval());
+			}
+		}
+		return ret;
+	}
+
+      /**
+       * Return the operations measured so far, for every histogram measurement, without affecting
+       * {@link #takeIntervals()}. See {@link OneMeasurementHistogram#snapshot()}.
+       */
+	public synchronized Map<String,LatencyHistogram> snapshots()
+	{
+		Map<String,LatencyHistogram> ret=new TreeMap<String,LatencyHistogram>();
+		for (OneMeasurement m : data.values())
+		{
+			if (m instanceof OneMeasurementHistogram)
+			{
+				ret.put(m.getName(),((OneMeasurementHistogram)m).snapshot());
+			}
+		}
+		return ret;
+	}
+
       /**
        * Return a one line summary of the measurements.
        */
@@ -53,10 +53,13 @@ public class OneMeasurementHistogram extends OneMeasurement {
     private final AtomicInteger max = new AtomicInteger(-1);
     private final ConcurrentMap<Integer, AtomicInteger> returncodes = new ConcurrentHashMap<Integer, AtomicInteger>();
 
+    private LatencyHistogram lastinterval;
+
     public OneMeasurementHistogram(String name, Properties props) {
         super(name);
         buckets = new AtomicInteger(Integer.parseInt(props.getProperty(BUCKETS, BUCKETS_DEFAULT)));
         histogram = new AtomicIntegerArray(buckets.get());
+        lastinterval = new LatencyHistogram(buckets.get());
     }
 
     /* (non-Javadoc)
@@ -124,38 +127,44 @@ public class OneMeasurementHistogram extends OneMeasurement {
     }
 
     private void exportGeneralMeasurements(MeasurementsExporter exporter) throws IOException {
-        exporter.write(getName(), "Operations", operations.get());
-        exporter.write(getName(), "Retries", retrycounts.get());
-        exporter.write(getName(), "AverageLatency(us)", (((double) totallatency.get()) / ((double) operations.get())));
-        exporter.write(getName(), "MinLatency(us)", min.get());
-        exporter.write(getName(), "MaxLatency(us)", max.get());
-
-        int opcounter = 0;
-        boolean done95th = false;
-        for (int i = 0; i < buckets.get(); i++) {
-            opcounter += histogram.get(i);
-            if ((!done95th) && (((double) opcounter) / ((double) operations.get()) >= 0.95)) {
-                exporter.write(getName(), "95thPercentileLatency(ms)", i);
-                done95th = true;
-            }
-            if (((double) opcounter) / ((double) operations.get()) >= 0.99) {
-                exporter.write(getName(), "99thPercentileLatency(ms)", i);
-                break;
-            }
-        }
-
-        for (Integer I : returncodes.keySet()) {
-            exporter.write(getName(), "Return=" + I, returncodes.get(I).get());
-        }
+        snapshot().exportGeneral(getName(), exporter);
     }
 
     @Override
     public void exportMeasurementsFinal(MeasurementsExporter exporter) throws IOException {
-        for (int i = 0; i < buckets.get(); i++) {
-            exporter.write(getName(), Integer.toString(i), histogram.get(i));
+        snapshot().exportFinal(getName(), exporter);
+    }
+
+    /**
+     * Copy the current state of the histogram. Operations that complete while the copy is taken may be
+     * counted in some of the fields only; they are fully counted by the next snapshot.
+     */
+    public LatencyHistogram snapshot() {
+        LatencyHistogram ret = new LatencyHistogram(buckets.get());
+        for (int i = 0; i < ret.buckets.length; i++) {
+            ret.buckets[i] = histogram.get(i);
         }
-        exporter.write(getName(), ">" + buckets.get(), histogramoverflow.get());
-        exportGeneralMeasurements(exporter);
+        ret.overflow = histogramoverflow.get();
+        ret.operations = operations.get();
+        ret.retries = retrycounts.get();
+        ret.totallatency = totallatency.get();
+        ret.min = min.get();
+        ret.max = max.get();
+        for (Integer code : returncodes.keySet()) {
+            ret.returncodes.put(code, (long) returncodes.get(code).get());
+        }
+        return ret;
+    }
+
+    /**
+     * Return the operations measured since the previous call. The intervals add up exactly to the final
+     * histogram as long as the last call is made after all operations completed.
+     */
+    public synchronized LatencyHistogram takeInterval() {
+        LatencyHistogram current = snapshot();
+        LatencyHistogram ret = current.minus(lastinterval);
+        lastinterval = current;
+        return ret;
     }
 
     @Override
@@ -23,6 +23,7 @@ import com.yahoo.ycsb.*;
 import com.yahoo.ycsb.generator.*;
 import com.yahoo.ycsb.measurements.Measurements;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -271,7 +272,12 @@ public class CoreWorkload extends Workload {
 
     IntegerGenerator keysequence;
 
-    DiscreteGenerator operationchooser;
+    volatile DiscreteGenerator operationchooser;
+
+    /**
+     * The properties with the current operation proportions.
+     */
+    Properties operationproportions;
 
     IntegerGenerator keychooser;
 
@@ -288,6 +294,20 @@ public class CoreWorkload extends Workload {
     String fieldnameprefix;
 
     boolean ignoreinserterrors;
+
+    /**
+     * The chunks of a checkpointed load, or null to insert the keys from keysequence.
+     */
+    LoadCheckpoint checkpoint;
+    volatile boolean loading = false;
+
+    /**
+     * The chunk a thread is inserting in a checkpointed load, and its next key.
+     */
+    static class LoadCursor {
+        LoadCheckpoint.Chunk chunk;
+        int key;
+    }
     
     protected static IntegerGenerator getFieldLengthGenerator(Properties p) throws WorkloadException {
         IntegerGenerator fieldlengthgenerator;
@@ -326,11 +346,6 @@ public class CoreWorkload extends Workload {
 
         ignoreinserterrors = Boolean.parseBoolean(p.getProperty(IGNORE_INSERT_ERRORS, IGNORE_INSERT_ERRORS_DEFAULT));
         
-        double readproportion = Double.parseDouble(p.getProperty(READ_PROPORTION_PROPERTY, READ_PROPORTION_PROPERTY_DEFAULT));
-        double updateproportion = Double.parseDouble(p.getProperty(UPDATE_PROPORTION_PROPERTY, UPDATE_PROPORTION_PROPERTY_DEFAULT));
-        double insertproportion = Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT));
-        double scanproportion = Double.parseDouble(p.getProperty(SCAN_PROPORTION_PROPERTY, SCAN_PROPORTION_PROPERTY_DEFAULT));
-        double readmodifywriteproportion = Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY, READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
         recordcount = Integer.parseInt(p.getProperty(Client.RECORD_COUNT_PROPERTY));
         String requestdistrib = p.getProperty(REQUEST_DISTRIBUTION_PROPERTY, REQUEST_DISTRIBUTION_PROPERTY_DEFAULT);
         int maxscanlength = Integer.parseInt(p.getProperty(MAX_SCAN_LENGTH_PROPERTY, MAX_SCAN_LENGTH_PROPERTY_DEFAULT));
@@ -342,28 +357,30 @@ public class CoreWorkload extends Workload {
         writeallfields = Boolean.parseBoolean(p.getProperty(WRITE_ALL_FIELDS_PROPERTY, WRITE_ALL_FIELDS_PROPERTY_DEFAULT));
         orderedinserts = !p.getProperty(INSERT_ORDER_PROPERTY, INSERT_ORDER_PROPERTY_DEFAULT).equals("hashed");
         keysequence = new CounterGenerator(insertstart);
-        operationchooser = new DiscreteGenerator();
-        if (readproportion > 0) {
-            operationchooser.addValue(readproportion, "READ");
-        }
-
-        if (updateproportion > 0) {
-            operationchooser.addValue(updateproportion, "UPDATE");
-        }
-
-        if (insertproportion > 0) {
-            operationchooser.addValue(insertproportion, "INSERT");
-        }
-
-        if (scanproportion > 0) {
-            operationchooser.addValue(scanproportion, "SCAN");
-        }
-
-        if (readmodifywriteproportion > 0) {
-            operationchooser.addValue(readmodifywriteproportion, "READMODIFYWRITE");
+        //only a load inserts the chunks of the checkpoint
+        boolean dotransactions = Boolean.parseBoolean(p.getProperty(Client.DO_TRANSACTIONS_PROPERTY, "true"));
+        if (!dotransactions && LoadCheckpoint.isEnabled(p)) {
+            String file = p.getProperty(LoadCheckpoint.CHECKPOINT_PROPERTY);
+            int insertcount = Integer.parseInt(p.getProperty(Client.INSERT_COUNT_PROPERTY, Integer.toString(recordcount)));
+            try {
+                checkpoint = new LoadCheckpoint(new File(file), insertstart, insertcount,
+                        Integer.parseInt(p.getProperty(LoadCheckpoint.CHUNK_SIZE_PROPERTY, LoadCheckpoint.CHUNK_SIZE_PROPERTY_DEFAULT)),
+                        Long.parseLong(p.getProperty(LoadCheckpoint.INTERVAL_PROPERTY, LoadCheckpoint.INTERVAL_PROPERTY_DEFAULT)));
+            } catch (IOException e) {
+                throw new WorkloadException("Couldn't read load checkpoint file: " + file, e);
+            }
+            if (checkpoint.getDoneCount() > 0) {
+                System.err.println("Resuming the load from " + file + ": " + checkpoint.getDoneCount() + " of "
+                        + checkpoint.getChunkCount() + " chunks (" + checkpoint.getDoneKeys() + " keys) already done");
+            }
         }
+        operationchooser = createOperationGenerator(p);
+        operationproportions = p;
 
-        transactioninsertkeysequence = new CounterGenerator(recordcount);
+        //clients that split the run insert interleaved keys
+        int clientid = ClientPartition.getClientId(p);
+        int clientcount = ClientPartition.getClientCount(p);
+        transactioninsertkeysequence = new CounterGenerator(recordcount + clientid, clientcount, recordcount - 1);
         if (requestdistrib.compareTo("uniform") == 0) {
             keychooser = new UniformIntegerGenerator(0, recordcount - 1);
         } else if (requestdistrib.compareTo("uniquerandom") == 0) {
@@ -383,7 +400,9 @@ public class CoreWorkload extends Workload {
             //just ignore it and pick another key. this way, the size of the keyspace doesn't change from the perspective of the scrambled zipfian generator
 
             int opcount = Integer.parseInt(p.getProperty(Client.OPERATION_COUNT_PROPERTY));
-            int expectednewkeys = (int) (((double) opcount) * insertproportion * 2.0); //2 is fudge factor
+            double insertproportion = Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT));
+            //all the clients that split the run insert into the same keyspace
+            int expectednewkeys = (int) (((double) opcount) * clientcount * insertproportion * 2.0); //2 is fudge factor
 
             keychooser = new ScrambledZipfianGenerator(recordcount + expectednewkeys);
         } else if (requestdistrib.compareTo("latest") == 0) {
@@ -410,6 +429,27 @@ public class CoreWorkload extends Workload {
         }
     }
 
+    /**
+     * A checkpointed load keeps the chunk of every thread in its thread state.
+     */
+    public Object initThread(Properties p) throws WorkloadException {
+        return (checkpoint != null) ? new LoadCursor() : null;
+    }
+
+    /**
+     * Write the final checkpoint of a checkpointed load.
+     */
+    public void cleanup() throws WorkloadException {
+        if ((checkpoint != null) && loading) {
+            try {
+                checkpoint.write();
+            } catch (IOException e) {
+                throw new WorkloadException("Couldn't write load checkpoint file", e);
+            }
+            System.err.println("Load checkpoint: " + checkpoint.getDoneCount() + " of " + checkpoint.getChunkCount() + " chunks done");
+        }
+    }
+
     public String buildKeyName(long keynum) {
         if (!orderedinserts) {
             keynum = Utils.hash(keynum);
@@ -437,6 +477,69 @@ public class CoreWorkload extends Workload {
         return values;
     }
 
+    /**
+     * Create the generator that chooses the operation of every transaction, from the operation proportions.
+     */
+    protected static DiscreteGenerator createOperationGenerator(Properties p) {
+        double readproportion = Double.parseDouble(p.getProperty(READ_PROPORTION_PROPERTY, READ_PROPORTION_PROPERTY_DEFAULT));
+        double updateproportion = Double.parseDouble(p.getProperty(UPDATE_PROPORTION_PROPERTY, UPDATE_PROPORTION_PROPERTY_DEFAULT));
+        double insertproportion = Double.parseDouble(p.getProperty(INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT));
+        double scanproportion = Double.parseDouble(p.getProperty(SCAN_PROPORTION_PROPERTY, SCAN_PROPORTION_PROPERTY_DEFAULT));
+        double readmodifywriteproportion = Double.parseDouble(p.getProperty(READMODIFYWRITE_PROPORTION_PROPERTY, READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT));
+        DiscreteGenerator operationchooser = new DiscreteGenerator();
+        if (readproportion > 0) {
+            operationchooser.addValue(readproportion, "READ");
+        }
+
+        if (updateproportion > 0) {
+            operationchooser.addValue(updateproportion, "UPDATE");
+        }
+
+        if (insertproportion > 0) {
+            operationchooser.addValue(insertproportion, "INSERT");
+        }
+
+        if (scanproportion > 0) {
+            operationchooser.addValue(scanproportion, "SCAN");
+        }
+
+        if (readmodifywriteproportion > 0) {
+            operationchooser.addValue(readmodifywriteproportion, "READMODIFYWRITE");
+        }
+        return operationchooser;
+    }
+
+    /**
+     * Change the operation proportions while the workload is running. The proportions that are not given
+     * keep their current value.
+     */
+    @Override
+    public void adjust(Properties p) throws WorkloadException {
+        Properties merged = new Properties();
+        merged.putAll(operationproportions);
+        merged.putAll(p);
+        double sum = 0;
+        String[][] proportions = {
+                {READ_PROPORTION_PROPERTY, READ_PROPORTION_PROPERTY_DEFAULT},
+                {UPDATE_PROPORTION_PROPERTY, UPDATE_PROPORTION_PROPERTY_DEFAULT},
+                {INSERT_PROPORTION_PROPERTY, INSERT_PROPORTION_PROPERTY_DEFAULT},
+                {SCAN_PROPORTION_PROPERTY, SCAN_PROPORTION_PROPERTY_DEFAULT},
+                {READMODIFYWRITE_PROPORTION_PROPERTY, READMODIFYWRITE_PROPORTION_PROPERTY_DEFAULT}};
+        for (String[] proportion : proportions) {
+            String value = merged.getProperty(proportion[0], proportion[1]);
+            try {
+                sum += Math.max(0, Double.parseDouble(value));
+            } catch (NumberFormatException e) {
+                throw new WorkloadException("Invalid " + proportion[0] + ": " + value);
+            }
+        }
+        if (sum <= 0) {
+            throw new WorkloadException("At least one operation proportion must be positive");
+        }
+        operationchooser = createOperationGenerator(merged);
+        operationproportions = merged;
+    }
+
     /**
      * Do one insert operation. Because it will be called concurrently from multiple client threads, this
      * function must be thread safe. However, avoid synchronized, or the threads will block waiting for each
@@ -444,6 +547,9 @@ public class CoreWorkload extends Workload {
      * effects other than DB operations.
      */
     public boolean doInsert(DB db, Object threadstate) {
+        if (checkpoint != null) {
+            return doCheckpointedInsert(db, (LoadCursor) threadstate);
+        }
         String dbkey = buildKeyName(keysequence.nextInt());
         HashMap<String, ByteIterator> values = buildValues();
         int result = db.insert(table, dbkey, values);
@@ -457,6 +563,37 @@ public class CoreWorkload extends Workload {
         }
     }
 
+    /**
+     * Insert the next key of the thread's chunk, taking the next chunk that is not done yet once the previous one
+     * is complete.
+     *
+     * @return false if there are no chunks left, or the insert failed, which leaves the chunk to a later run.
+     */
+    boolean doCheckpointedInsert(DB db, LoadCursor cursor) {
+        loading = true;
+        if (cursor.chunk == null) {
+            cursor.chunk = checkpoint.nextChunk();
+            if (cursor.chunk == null) {
+                return false;
+            }
+            cursor.key = cursor.chunk.getStart();
+        }
+        int result = db.insert(table, buildKeyName(cursor.key), buildValues());
+        if ((result != 0) && !ignoreinserterrors) {
+            return false;
+        }
+        cursor.key++;
+        if (cursor.key >= cursor.chunk.getEnd()) {
+            try {
+                checkpoint.done(cursor.chunk);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            cursor.chunk = null;
+        }
+        return true;
+    }
+
     /**
      * Do one transaction operation. Because it will be called concurrently from multiple client threads, this
      * function must be thread safe. However, avoid synchronized, or the threads will block waiting for each
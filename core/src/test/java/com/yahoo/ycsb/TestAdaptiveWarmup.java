@@ -0,0 +1,40 @@
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestAdaptiveWarmup {
+  private static AdaptiveWarmup warmup() {
+    Properties props = new Properties();
+    props.setProperty(AdaptiveWarmup.WINDOWS_PROPERTY, "3");
+    props.setProperty(AdaptiveWarmup.TOLERANCE_PROPERTY, "0.1");
+    return new AdaptiveWarmup(props);
+  }
+
+  @Test
+  public void testStableAfterEnoughSimilarWindows() {
+    AdaptiveWarmup w = warmup();
+    assertFalse(w.addWindow(new AdaptiveWarmup.Window(500, 4000, 10, 20)));
+    assertFalse(w.addWindow(new AdaptiveWarmup.Window(1000, 2000, 5, 10)));
+    assertFalse(w.addWindow(new AdaptiveWarmup.Window(1000, 2000, 5, 10)));
+    assertTrue(w.addWindow(new AdaptiveWarmup.Window(1020, 2010, 5, 11)));
+  }
+
+  @Test
+  public void testLatencyDriftIsNotStable() {
+    AdaptiveWarmup w = warmup();
+    w.addWindow(new AdaptiveWarmup.Window(1000, 2000, 5, 10));
+    w.addWindow(new AdaptiveWarmup.Window(1000, 2000, 8, 15));
+    assertFalse(w.addWindow(new AdaptiveWarmup.Window(1000, 2000, 11, 20)));
+  }
+
+  @Test
+  public void testOverflowIsNotStable() {
+    AdaptiveWarmup w = warmup();
+    w.addWindow(new AdaptiveWarmup.Window(1000, 2000, 5, -1));
+    w.addWindow(new AdaptiveWarmup.Window(1000, 2000, 5, -1));
+    assertFalse(w.addWindow(new AdaptiveWarmup.Window(1000, 2000, 5, -1)));
+  }
+}
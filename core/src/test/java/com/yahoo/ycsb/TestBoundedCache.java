@@ -0,0 +1,105 @@
+package com.yahoo.ycsb;
+
+import java.util.Vector;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestBoundedCache {
+  @Test
+  public void testLruEvictsLeastRecentlyUsed() {
+    BoundedCache<String, String> cache = new BoundedCache<String, String>(2, BoundedCache.LRU);
+    cache.put("a", "1");
+    cache.put("b", "2");
+    cache.get("a");
+    cache.put("c", "3");
+    assertEquals("1", cache.get("a"));
+    assertNull(cache.get("b"));
+    assertEquals("3", cache.get("c"));
+    assertEquals(1, cache.evictions());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void testPeekIsNotAUse() {
+    BoundedCache<String, String> lru = new BoundedCache<String, String>(2, BoundedCache.LRU);
+    lru.put("a", "1");
+    lru.put("b", "2");
+    assertEquals("1", lru.peek("a"));
+    lru.put("c", "3");
+    assertNull(lru.peek("a"));
+    assertEquals("2", lru.peek("b"));
+
+    BoundedCache.TinyLfuSegment<String, String> tinylfu = new BoundedCache.TinyLfuSegment<String, String>(200);
+    tinylfu.put("a", "1");
+    tinylfu.put("b", "2");
+    tinylfu.put("c", "3");
+    //the window holds two entries, so "a" went to probation
+    assertEquals("1", tinylfu.peek("a"));
+    assertTrue(tinylfu.probation.containsKey("a"));
+    assertEquals(1, tinylfu.sketch.frequency("a"));
+    assertEquals("1", tinylfu.get("a"));
+    assertTrue(tinylfu.protect.containsKey("a"));
+  }
+
+  @Test
+  public void testTinyLfuKeepsFrequentKeysUnderScan() {
+    BoundedCache<String, String> cache = new BoundedCache<String, String>(100, BoundedCache.TINYLFU);
+    for (int round = 0; round < 5; round++) {
+      for (int i = 0; i < 50; i++) {
+        if (cache.get("hot" + i) == null) {
+          cache.put("hot" + i, "v");
+        }
+      }
+    }
+    //a scan of many keys used once
+    for (int i = 0; i < 10000; i++) {
+      cache.put("cold" + i, "v");
+    }
+    int hot = 0;
+    for (int i = 0; i < 50; i++) {
+      if (cache.get("hot" + i) != null) {
+        hot++;
+      }
+    }
+    assertTrue("only " + hot + " hot keys left", hot >= 45);
+    assertTrue(cache.size() <= 100);
+  }
+
+  @Test
+  public void testLruLosesFrequentKeysUnderScan() {
+    BoundedCache<String, String> cache = new BoundedCache<String, String>(100, BoundedCache.LRU);
+    for (int i = 0; i < 50; i++) {
+      cache.put("hot" + i, "v");
+    }
+    for (int i = 0; i < 10000; i++) {
+      cache.put("cold" + i, "v");
+    }
+    assertNull(cache.get("hot0"));
+  }
+
+  @Test
+  public void testListenerSeesEveryRemovedValue() {
+    for (String eviction : new String[] { BoundedCache.LRU, BoundedCache.TINYLFU }) {
+      final Vector<String> removed = new Vector<String>();
+      BoundedCache<String, String> cache = new BoundedCache<String, String>(100, eviction,
+          new BoundedCache.RemovalListener<String>() {
+            public void removed(String value) {
+              removed.add(value);
+            }
+          });
+      for (int i = 0; i < 1000; i++) {
+        cache.put("k" + i, "v" + i);
+      }
+      cache.put("k999", "replaced");
+      cache.remove("k998");
+      //every value is either cached or was removed
+      assertEquals(1001, removed.size() + cache.size());
+      assertTrue(removed.contains("v999"));
+      assertTrue(removed.contains("v998"));
+      cache.clear();
+      assertEquals(1001, removed.size());
+      assertEquals(0, cache.size());
+    }
+  }
+}
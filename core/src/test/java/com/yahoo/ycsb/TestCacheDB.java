@@ -0,0 +1,69 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestCacheDB {
+  @BeforeMethod
+  public void clear() throws DBException {
+    MemoryDB.clear();
+    new CacheDB().cleanupGlobal();
+  }
+
+  private static CacheDB db(String writepolicy) throws DBException {
+    Measurements.setProperties(new Properties());
+    Properties p = new Properties();
+    p.setProperty(CacheDB.DB_PROPERTY, MemoryDB.class.getName());
+    p.setProperty(CacheDB.WRITE_POLICY, writepolicy);
+    CacheDB db = new CacheDB();
+    db.setProperties(p);
+    db.init();
+    return db;
+  }
+
+  private static HashMap<String, ByteIterator> record(String value) {
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("field0", new StringByteIterator(value));
+    return values;
+  }
+
+  private static String read(DB db, String key) {
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(0, db.read("t", key, null, result));
+    return result.get("field0").toString();
+  }
+
+  @Test
+  public void testInvalidate() throws DBException {
+    CacheDB db = db("invalidate");
+    db.insert("t", "user1", record("a"));
+    assertEquals("a", read(db, "user1"));
+    assertEquals(1, CacheDB.misses.get());
+    assertEquals("a", read(db, "user1"));
+    assertEquals(1, CacheDB.hits.get());
+    db.update("t", "user1", record("b"));
+    assertEquals("b", read(db, "user1"));
+    assertEquals(2, CacheDB.misses.get());
+    assertTrue(Measurements.getMeasurements().snapshots().containsKey("CACHE-HIT-READ"));
+  }
+
+  @Test
+  public void testWriteThrough() throws DBException {
+    CacheDB db = db("writethrough");
+    db.insert("t", "user1", record("a"));
+    assertEquals("a", read(db, "user1"));
+    db.update("t", "user1", record("b"));
+    assertEquals("b", read(db, "user1"));
+    assertEquals(0, CacheDB.misses.get());
+    assertEquals(2, CacheDB.hits.get());
+    //the DB has the update too
+    MemoryDB memory = new MemoryDB();
+    assertEquals("b", read(memory, "user1"));
+  }
+}
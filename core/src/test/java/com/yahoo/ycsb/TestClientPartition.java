@@ -0,0 +1,45 @@
+package com.yahoo.ycsb;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+import com.yahoo.ycsb.generator.CounterGenerator;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestClientPartition {
+  @Test
+  public void testTransactionsShare() {
+    Properties props = new Properties();
+    props.setProperty(Client.OPERATION_COUNT_PROPERTY, "1000");
+    props.setProperty("target", "500");
+    props.setProperty(ClientPartition.CLIENT_COUNT_PROPERTY, "3");
+    long opcount = 0;
+    for (int i = 0; i < 3; i++) {
+      props.setProperty(ClientPartition.CLIENT_ID_PROPERTY, i + "");
+      Properties share = ClientPartition.apply(props, true);
+      opcount += Long.parseLong(share.getProperty(Client.OPERATION_COUNT_PROPERTY));
+      assertEquals((i < 2) ? "167" : "166", share.getProperty("target"));
+    }
+    assertEquals(1000, opcount);
+    //the phase itself keeps the totals
+    assertEquals("1000", props.getProperty(Client.OPERATION_COUNT_PROPERTY));
+  }
+
+  @Test
+  public void testInterleavedInsertKeys() {
+    Set<Integer> keys = new HashSet<Integer>();
+    for (int i = 0; i < 3; i++) {
+      CounterGenerator counter = new CounterGenerator(100 + i, 3, 99);
+      //the last loaded key, for every client
+      assertEquals(99, counter.lastInt());
+      for (int j = 0; j < 10; j++) {
+        assertTrue(keys.add(counter.nextInt()));
+      }
+      assertEquals(100 + i + 27, counter.lastInt());
+    }
+    assertEquals(30, keys.size());
+  }
+}
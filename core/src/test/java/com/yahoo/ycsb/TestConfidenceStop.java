@@ -0,0 +1,36 @@
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.Vector;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestConfidenceStop {
+  @Test
+  public void testQuantiles() {
+    assertEquals(1.95996, ConfidenceStop.normalQuantile(0.975), 1e-4);
+    assertEquals(-2.32635, ConfidenceStop.normalQuantile(0.01), 1e-4);
+    assertEquals(2.262, ConfidenceStop.tQuantile(0.975, 9), 2e-3);
+    assertEquals(2.042, ConfidenceStop.tQuantile(0.975, 30), 1e-3);
+  }
+
+  @Test
+  public void testStopsOnceNarrow() {
+    Properties props = new Properties();
+    props.setProperty(ConfidenceStop.MIN_BATCHES_PROPERTY, "5");
+    ConfidenceStop stop = new ConfidenceStop(new Vector<Thread>(), props);
+
+    //noisy throughput in the first batches, then steady
+    double[] noise = {300, -300, 200, -200, 10, -10};
+    int batches = 0;
+    while (!stop.addBatch(1000 + ((batches < noise.length) ? noise[batches] : 0), 500, 2, 3)) {
+      batches++;
+      assertTrue(batches < 100);
+    }
+    assertTrue(batches > noise.length);
+
+    //the overflow bucket never gives a usable sample
+    assertFalse(new ConfidenceStop(new Vector<Thread>(), props).addBatch(1000, 500, -1, -1));
+  }
+}
@@ -0,0 +1,198 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.workloads.CoreWorkload;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestConnectionPool {
+  @Test
+  public void testPoolIsBounded() throws Exception {
+    final AtomicInteger open = new AtomicInteger();
+    final AtomicInteger maxopen = new AtomicInteger();
+    final ConnectionPool<Integer> pool = new ConnectionPool<Integer>(new ConnectionPool.Factory<Integer>() {
+      public Integer create() {
+        return open.incrementAndGet();
+      }
+
+      public void destroy(Integer connection) {
+        open.decrementAndGet();
+      }
+    }, 3);
+
+    Vector<Thread> threads = new Vector<Thread>();
+    for (int i = 0; i < 20; i++) {
+      Thread t = new Thread() {
+        public void run() {
+          for (int j = 0; j < 100; j++) {
+            try {
+              Integer conn = pool.acquire();
+              synchronized (maxopen) {
+                maxopen.set(Math.max(maxopen.get(), open.get()));
+              }
+              pool.release(conn);
+            } catch (DBException e) {
+              fail(e.toString());
+            }
+          }
+        }
+      };
+      threads.add(t);
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+
+    assertTrue(maxopen.get() <= 3);
+    pool.close();
+    assertEquals(0, open.get());
+  }
+
+  public static class CountingDB extends DB {
+    static int globalinits = 0;
+    static int globalcleanups = 0;
+
+    public void initGlobal() {
+      globalinits++;
+    }
+
+    public void cleanupGlobal() {
+      globalcleanups++;
+    }
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+      return 0;
+    }
+
+    public int scan(String table, String startkey, int recordcount, String field, Vector<HashMap<String, ByteIterator>> result) {
+      return 0;
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+      return 0;
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+      return 0;
+    }
+
+    public int delete(String table, String key) {
+      return 0;
+    }
+  }
+
+  @Test
+  public void testGlobalLifecycleRunsOnce() throws Exception {
+    Properties props = new Properties();
+    Measurements.setProperties(props);
+    DB first = DBFactory.wrappedDB(CountingDB.class.getName(), props);
+    DB second = DBFactory.wrappedDB(CountingDB.class.getName(), props);
+
+    first.init();
+    second.init();
+    assertEquals(1, CountingDB.globalinits);
+    first.cleanup();
+    assertEquals(0, CountingDB.globalcleanups);
+    second.cleanup();
+    assertEquals(1, CountingDB.globalcleanups);
+  }
+
+  /**
+   * A DB whose global state is a new object on every initGlobal.
+   */
+  public static class StateDB extends CountingDB {
+    static int stateinits = 0;
+
+    public void initGlobal() {
+      stateinits++;
+      setGlobal(new Object());
+    }
+
+    Object state() {
+      return getGlobal();
+    }
+  }
+
+  @Test
+  public void testReinitResetsGlobalStateOnce() throws Exception {
+    Properties props = new Properties();
+    Measurements.setProperties(props);
+    DBWrapper first = (DBWrapper) DBFactory.wrappedDB(StateDB.class.getName(), props);
+    DBWrapper second = (DBWrapper) DBFactory.wrappedDB(StateDB.class.getName(), props);
+    first.init();
+    second.init();
+    Object state = ((StateDB) first._db).state();
+    assertSame(state, ((StateDB) second._db).state());
+
+    //both threads reconnect after the same failure, only the first recreates the connections
+    first.reinit();
+    second.reinit();
+    assertEquals(2, StateDB.stateinits);
+    Object reset = ((StateDB) first._db).state();
+    assertNotSame(state, reset);
+    assertSame(reset, ((StateDB) second._db).state());
+
+    //a later failure recreates them again
+    second.reinit();
+    assertEquals(3, StateDB.stateinits);
+    assertSame(((StateDB) second._db).state(), ((StateDB) first._db).state());
+    first.cleanup();
+    second.cleanup();
+  }
+
+  /**
+   * A DB that reads through its global state, like the bindings that share their connections.
+   */
+  public static class GlobalReadDB extends CountingDB {
+    static final AtomicInteger reads = new AtomicInteger();
+    static final AtomicInteger missing = new AtomicInteger();
+
+    public void initGlobal() {
+      setGlobal(new Object());
+    }
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+      reads.incrementAndGet();
+      if (getGlobal() == null) {
+        missing.incrementAndGet();
+        return 1;
+      }
+      return 0;
+    }
+  }
+
+  @Test
+  public void testWarmupUsesGlobalState() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "10");
+    Measurements.setProperties(props);
+    CoreWorkload workload = new CoreWorkload();
+    workload.init(props);
+
+    Client.warmup(GlobalReadDB.class.getName(), workload, props, 2, 100, 0, -1);
+    assertEquals(100, GlobalReadDB.reads.get());
+    assertEquals(0, GlobalReadDB.missing.get());
+  }
+
+  @Test
+  public void testPhasesWithLargerPoolsSetUpNewDBs() {
+    Properties load = new Properties();
+    load.setProperty("threadcount", "4");
+    Properties run = new Properties();
+    run.setProperty("threadcount", "64");
+    assertFalse(ThreadDBs.getKey(load).equals(ThreadDBs.getKey(run)));
+
+    //a fixed pool size keeps the DBs
+    load.setProperty(ConnectionPool.POOL_SIZE_PROPERTY, "8");
+    run.setProperty(ConnectionPool.POOL_SIZE_PROPERTY, "8");
+    assertEquals(ThreadDBs.getKey(load), ThreadDBs.getKey(run));
+  }
+}
@@ -0,0 +1,94 @@
+package com.yahoo.ycsb;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestCoordinator {
+  @Test
+  public void testAssignSplitsInsertRange() {
+    Properties props = new Properties();
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "10");
+    props.setProperty("target", "100");
+    Phase load = new Phase("", Phase.MODE_LOAD, props);
+
+    long next = 0;
+    for (int i = 0; i < 3; i++) {
+      Properties assigned = assign(load, i, 3);
+      assertEquals(next, Long.parseLong(assigned.getProperty(Workload.INSERT_START_PROPERTY)));
+      next += Long.parseLong(assigned.getProperty(Client.INSERT_COUNT_PROPERTY));
+    }
+    assertEquals(10, next);
+    assertEquals("34", assign(load, 0, 3).getProperty("target"));
+    assertEquals("33", assign(load, 2, 3).getProperty("target"));
+  }
+
+  /**
+   * Return the properties a worker runs the phase with.
+   */
+  private static Properties assign(Phase phase, int workerid, int workers) {
+    Properties props = new Properties();
+    props.putAll(phase.getProperties());
+    props.putAll(Coordinator.assign(workerid, workers));
+    return ClientPartition.apply(props, phase.isTransactions());
+  }
+
+  @Test
+  public void testForkedWorkersMergeExactly() throws Exception {
+    ServerSocket s = new ServerSocket(0);
+    int port = s.getLocalPort();
+    s.close();
+
+    Process controller = fork("-load", "-p", "recordcount=1000", "-p", "coordinator.role=controller",
+        "-p", "coordinator.workers=2", "-p", "coordinator.address=localhost:" + port);
+    List<Process> workers = new ArrayList<Process>();
+    try {
+      for (int i = 0; i < 2; i++) {
+        workers.add(fork("-threads", "2", "-p", "coordinator.role=worker", "-p", "coordinator.address=localhost:" + port));
+      }
+      List<String> out = readLines(controller);
+      assertTrue(out.contains("[INSERT], Operations, 1000"));
+      assertTrue(out.contains("[INSERT], Return=0, 1000"));
+      assertTrue(out.contains("[OVERALL], Operations, 1000.0"));
+      assertTrue(out.contains("[OVERALL], Workers, 2"));
+      for (Process worker : workers) {
+        assertTrue(readLines(worker).contains("[INSERT], Operations, 500"));
+      }
+    } finally {
+      controller.destroy();
+      for (Process worker : workers) {
+        worker.destroy();
+      }
+    }
+  }
+
+  private static Process fork(String... args) throws IOException {
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    String cp = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+    List<String> cmd = new ArrayList<String>(Arrays.asList(java, "-cp", cp, Client.class.getName(),
+        "-p", "workload=com.yahoo.ycsb.workloads.CoreWorkload", "-p", "basicdb.verbose=false"));
+    cmd.addAll(Arrays.asList(args));
+    ProcessBuilder pb = new ProcessBuilder(cmd);
+    pb.redirectErrorStream(true);
+    return pb.start();
+  }
+
+  private static List<String> readLines(Process p) throws IOException {
+    List<String> ret = new ArrayList<String>();
+    BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream()));
+    String line;
+    while ((line = r.readLine()) != null) {
+      ret.add(line);
+    }
+    return ret;
+  }
+}
@@ -0,0 +1,50 @@
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestFailureDetector {
+  private static FailureDetector detector(long backoff) {
+    Properties props = new Properties();
+    props.setProperty(FailureDetector.ERRORS_PROPERTY, "3");
+    props.setProperty(FailureDetector.BACKOFF_PROPERTY, Long.toString(backoff));
+    props.setProperty(FailureDetector.MAX_BACKOFF_PROPERTY, "60000");
+    return new FailureDetector(props);
+  }
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    FailureDetector d = detector(60000);
+    d.record(false);
+    d.record(false);
+    d.record(true);
+    d.record(false);
+    d.record(false);
+    assertEquals(FailureDetector.State.CLOSED, d.getState());
+    d.record(false);
+    assertEquals(FailureDetector.State.OPEN, d.getState());
+    assertEquals(1, d.getEpoch());
+    //backoff of 60 s with jitter on the upper half
+    assertTrue(d.getWaitTime() > 29000);
+  }
+
+  @Test
+  public void testHalfOpenClosesOnSuccessAndReopensOnFailure() throws Exception {
+    FailureDetector d = detector(1);
+    d.reportFailure("test");
+    Thread.sleep(5);
+    assertEquals(0, d.getWaitTime());
+    assertEquals(FailureDetector.State.HALF_OPEN, d.getState());
+
+    d.record(false);
+    assertEquals(FailureDetector.State.OPEN, d.getState());
+    assertEquals(2, d.getEpoch());
+
+    Thread.sleep(5);
+    assertEquals(0, d.getWaitTime());
+    d.record(true);
+    assertEquals(FailureDetector.State.CLOSED, d.getState());
+  }
+}
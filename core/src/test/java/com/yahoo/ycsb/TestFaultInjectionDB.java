@@ -0,0 +1,59 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestFaultInjectionDB {
+  private static FaultInjectionDB db(Properties p) throws DBException {
+    Measurements.setProperties(new Properties());
+    p.setProperty(FaultInjectionDB.DB_PROPERTY, MemoryDB.class.getName());
+    FaultInjectionDB db = new FaultInjectionDB();
+    db.setProperties(p);
+    db.init();
+    return db;
+  }
+
+  private static HashMap<String, ByteIterator> record() {
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("field0", new StringByteIterator("value"));
+    return values;
+  }
+
+  @Test
+  public void testErrorRate() throws DBException {
+    Properties p = new Properties();
+    p.setProperty("faultdb.read.errorrate", "1");
+    FaultInjectionDB db = db(p);
+    assertEquals(0, db.insert("t", "user1", record()));
+    assertEquals(1, db.read("t", "user1", null, new HashMap<String, ByteIterator>()));
+    assertEquals(0, db.update("t", "user1", record()));
+    assertTrue(Measurements.getMeasurements().snapshots().containsKey("INJECTED-ERROR-READ"));
+    db.cleanup();
+  }
+
+  @Test
+  public void testPartitionedKeys() throws DBException {
+    Properties p = new Properties();
+    p.setProperty(FaultInjectionDB.PARTITIONS, "0-3600:user1..user5");
+    p.setProperty(FaultInjectionDB.TIMEOUT, "20");
+    FaultInjectionDB db = db(p);
+    long start = System.nanoTime();
+    assertEquals(1, db.insert("t", "user2", record()));
+    assertTrue(System.nanoTime() - start >= 20000000);
+    assertEquals(0, db.insert("t", "user7", record()));
+    db.cleanup();
+  }
+
+  @Test
+  public void testWindow() {
+    FaultInjectionDB.Window w = new FaultInjectionDB.Window("30-60");
+    assertFalse(w.contains(29999, "user1"));
+    assertTrue(w.contains(30000, "user1"));
+    assertFalse(w.contains(60000, "user1"));
+  }
+}
@@ -0,0 +1,172 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestHedgedReadDB {
+  /**
+   * A DB whose first read is slow.
+   */
+  public static class SlowFirstReadDB extends DB {
+    static final AtomicInteger reads = new AtomicInteger();
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+      if (reads.getAndIncrement() == 0) {
+        try {
+          Thread.sleep(2000);
+        } catch (InterruptedException e) {
+          return 1;
+        }
+      }
+      result.put("field0", new StringByteIterator(key));
+      return 0;
+    }
+
+    public int scan(String table, String startkey, int recordcount, String field, Vector<HashMap<String, ByteIterator>> result) {
+      return 0;
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+      return 0;
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+      return 0;
+    }
+
+    public int delete(String table, String key) {
+      return 0;
+    }
+  }
+
+  /**
+   * A DB whose reads take 0.5 to 1.5 ms, except every tenth, which takes 20 to 40 ms.
+   */
+  public static class BimodalDB extends SlowFirstReadDB {
+    static final AtomicInteger reads = new AtomicInteger();
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+      int n = reads.getAndIncrement();
+      double f = ((n * 37) % 100) / 100.0;
+      long latency = (n % 10 == 9) ? (long) (20000000 + 20000000 * f) : (long) (500000 + 1000000 * f);
+      InjectedLatency.waitUntil(System.nanoTime() + latency);
+      return 0;
+    }
+  }
+
+  @Test
+  public void testHedgeWinsOverSlowRead() throws DBException {
+    Measurements.setProperties(new Properties());
+    Properties p = new Properties();
+    p.setProperty(HedgedReadDB.DB_PROPERTY, SlowFirstReadDB.class.getName());
+    p.setProperty(HedgedReadDB.DELAY, "10");
+    p.setProperty(HedgedReadDB.CANCEL, "true");
+    HedgedReadDB db = new HedgedReadDB();
+    db.setProperties(p);
+    db.init();
+    long st = System.nanoTime();
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(0, db.read("t", "user1", null, result));
+    assertTrue(System.nanoTime() - st < 1000000000L);
+    assertEquals("user1", result.get("field0").toString());
+    assertEquals(1, HedgedReadDB.hedges.get());
+    assertEquals(1, HedgedReadDB.wins.get());
+    db.cleanup();
+    db.cleanupGlobal();
+  }
+
+  /**
+   * A DB whose instances share a pool of one connection, and whose first read is slow.
+   */
+  public static class PooledSlowFirstReadDB extends SlowFirstReadDB {
+    static final AtomicInteger reads = new AtomicInteger();
+
+    public void initGlobal() {
+      setGlobal(new Semaphore(1));
+    }
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+      Semaphore pool = (Semaphore) getGlobal();
+      try {
+        pool.acquire();
+      } catch (InterruptedException e) {
+        return 1;
+      }
+      try {
+        if (reads.getAndIncrement() == 0) {
+          Thread.sleep(2000);
+        }
+      } catch (InterruptedException e) {
+        return 1;
+      } finally {
+        pool.release();
+      }
+      result.put("field0", new StringByteIterator(key));
+      return 0;
+    }
+  }
+
+  @Test
+  public void testHedgeDoesNotWaitForTheConnectionOfTheSlowRead() throws DBException {
+    Measurements.setProperties(new Properties());
+    Properties p = new Properties();
+    p.setProperty(HedgedReadDB.DB_PROPERTY, PooledSlowFirstReadDB.class.getName());
+    p.setProperty(HedgedReadDB.DELAY, "10");
+    p.setProperty(HedgedReadDB.CANCEL, "true");
+    HedgedReadDB db = new HedgedReadDB();
+    db.setProperties(p);
+    DB.acquireGlobal(db);
+    db.init();
+    long st = System.nanoTime();
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(0, db.read("t", "user1", null, result));
+    assertTrue(System.nanoTime() - st < 1000000000L);
+    assertEquals("user1", result.get("field0").toString());
+    db.cleanup();
+    DB.releaseGlobal(db);
+  }
+
+  @Test
+  public void testPercentile() {
+    HedgedReadDB.RecentLatencies recent = new HedgedReadDB.RecentLatencies(95);
+    assertEquals(Long.MAX_VALUE, recent.get());
+    for (int i = 1; i <= 1000; i++) {
+      recent.add(i);
+    }
+    //the last update was at 896 samples, whose 95th percentile is the 852nd
+    assertEquals(852, recent.get());
+  }
+
+  @Test
+  public void testHedgeRateFollowsThePercentile() throws DBException {
+    Measurements.setProperties(new Properties());
+    Properties p = new Properties();
+    p.setProperty(HedgedReadDB.DB_PROPERTY, BimodalDB.class.getName());
+    p.setProperty(HedgedReadDB.PERCENTILE, "95");
+    HedgedReadDB db = new HedgedReadDB();
+    db.setProperties(p);
+    db.init();
+    //the first reads fill the samples
+    for (int i = 0; i < 500; i++) {
+      db.read("t", "user" + i, null, new HashMap<String, ByteIterator>());
+    }
+    long hedges = HedgedReadDB.hedges.get();
+    int reads = 500;
+    for (int i = 0; i < reads; i++) {
+      db.read("t", "user" + i, null, new HashMap<String, ByteIterator>());
+    }
+    //the hedges that win don't lower the percentile into the fast reads
+    double rate = (double) (HedgedReadDB.hedges.get() - hedges) / reads;
+    assertTrue("hedge rate " + rate, rate > 0.02 && rate < 0.08);
+    db.cleanup();
+    db.cleanupGlobal();
+  }
+}
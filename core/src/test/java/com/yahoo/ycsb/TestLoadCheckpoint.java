@@ -0,0 +1,56 @@
+package com.yahoo.ycsb;
+
+import java.io.File;
+import java.util.BitSet;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestLoadCheckpoint {
+  @Test
+  public void testRanges() {
+    BitSet bits = new BitSet();
+    LoadCheckpoint.fromRanges("0-3,5,7-8", bits);
+    assertEquals(7, bits.cardinality());
+    assertEquals("0-3,5,7-8", LoadCheckpoint.toRanges(bits));
+  }
+
+  @Test
+  public void testResume() throws Exception {
+    File file = File.createTempFile("loadcheckpoint", ".properties");
+    assertTrue(file.delete());
+    try {
+      LoadCheckpoint checkpoint = new LoadCheckpoint(file, 100, 25, 10, 60000);
+      assertEquals(3, checkpoint.getChunkCount());
+      LoadCheckpoint.Chunk first = checkpoint.nextChunk();
+      LoadCheckpoint.Chunk second = checkpoint.nextChunk();
+      LoadCheckpoint.Chunk third = checkpoint.nextChunk();
+      assertNull(checkpoint.nextChunk());
+      assertEquals(100, first.getStart());
+      assertEquals(120, third.getStart());
+      assertEquals(125, third.getEnd());
+      checkpoint.done(first);
+      checkpoint.done(third);
+      //the interval has not passed yet
+      assertFalse(file.exists());
+      checkpoint.write();
+
+      //a restarted load only gets the chunk that was in progress
+      LoadCheckpoint resumed = new LoadCheckpoint(file, 100, 25, 10, 60000);
+      assertEquals(2, resumed.getDoneCount());
+      assertEquals(15, resumed.getDoneKeys());
+      LoadCheckpoint.Chunk chunk = resumed.nextChunk();
+      assertEquals(second.getStart(), chunk.getStart());
+      assertNull(resumed.nextChunk());
+
+      try {
+        new LoadCheckpoint(file, 100, 25, 5, 60000);
+        fail("a checkpoint of another chunk size must not be used");
+      } catch (java.io.IOException e) {
+        // expected
+      }
+    } finally {
+      file.delete();
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.generator.IntegerGenerator;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestMemoryDB {
+  @BeforeMethod
+  public void clear() {
+    MemoryDB.clear();
+  }
+
+  private static MemoryDB db(Properties p) throws DBException {
+    MemoryDB db = new MemoryDB();
+    db.setProperties(p);
+    db.init();
+    return db;
+  }
+
+  private static HashMap<String, ByteIterator> record(String... fields) {
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    for (int i = 0; i < fields.length; i += 2) {
+      values.put(fields[i], new StringByteIterator(fields[i + 1]));
+    }
+    return values;
+  }
+
+  private static void testOperations(MemoryDB db) {
+    assertEquals(1, db.read("t", "user1", null, new HashMap<String, ByteIterator>()));
+    assertEquals(0, db.insert("t", "user1", record("a", "1", "b", "2")));
+    assertEquals(0, db.insert("t", "user2", record("a", "3", "b", "4")));
+    assertEquals(0, db.insert("t", "user3", record("a", "5", "b", "6")));
+
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(0, db.read("t", "user1", "b", result));
+    assertEquals(1, result.size());
+    assertEquals("2", result.get("b").toString());
+
+    assertEquals(0, db.update("t", "user1", record("b", "7")));
+    assertEquals(1, db.update("t", "user9", record("b", "7")));
+    result.clear();
+    assertEquals(0, db.read("t", "user1", null, result));
+    assertEquals("1", result.get("a").toString());
+    assertEquals("7", result.get("b").toString());
+
+    Vector<HashMap<String, ByteIterator>> scan = new Vector<HashMap<String, ByteIterator>>();
+    assertEquals(0, db.scan("t", "user2", 5, null, scan));
+    assertEquals(2, scan.size());
+    assertEquals("3", scan.get(0).get("a").toString());
+    assertEquals("5", scan.get(1).get("a").toString());
+
+    assertEquals(0, db.delete("t", "user2"));
+    assertEquals(1, db.delete("t", "user2"));
+    assertEquals(1, db.read("t", "user2", null, new HashMap<String, ByteIterator>()));
+    //another table
+    assertEquals(1, db.read("u", "user1", null, new HashMap<String, ByteIterator>()));
+  }
+
+  @Test
+  public void testOperations() throws DBException {
+    testOperations(db(new Properties()));
+  }
+
+  @Test
+  public void testOffHeap() throws DBException {
+    Properties p = new Properties();
+    p.setProperty(MemoryDB.OFF_HEAP, "true");
+    testOperations(db(p));
+  }
+
+  @Test
+  public void testLatency() throws DBException {
+    Properties p = new Properties();
+    p.setProperty("memorydb.latency", "fixed");
+    p.setProperty("memorydb.latency.mean", "2000");
+    p.setProperty("memorydb.read.latency", "none");
+    MemoryDB db = db(p);
+    long start = System.nanoTime();
+    db.insert("t", "user1", record("a", "1"));
+    assertTrue(System.nanoTime() - start >= 2000000);
+    assertNull(db.readlatency);
+  }
+
+  @Test
+  public void testLognormalMean() throws Exception {
+    Properties p = new Properties();
+    p.setProperty("memorydb.latency", "lognormal");
+    p.setProperty("memorydb.latency.mean", "100");
+    IntegerGenerator latency = InjectedLatency.generator(p, MemoryDB.PREFIX, "read");
+    double sum = 0;
+    for (int i = 0; i < 100000; i++) {
+      sum += latency.nextInt();
+    }
+    assertEquals(100000, sum / 100000, 2000);
+  }
+}
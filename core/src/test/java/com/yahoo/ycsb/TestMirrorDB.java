@@ -0,0 +1,132 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestMirrorDB {
+  /**
+   * A DB that keeps nothing and reads the key as the value of field0.
+   */
+  public static class KeyDB extends DB {
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+      result.put("field0", new StringByteIterator(key));
+      return 0;
+    }
+
+    public int scan(String table, String startkey, int recordcount, String field, Vector<HashMap<String, ByteIterator>> result) {
+      return 0;
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+      return 0;
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+      return 0;
+    }
+
+    public int delete(String table, String key) {
+      return 0;
+    }
+  }
+
+  /**
+   * A DB whose global state, like a connection pool, is made from its url property, and which reads the url as the
+   * value of field0.
+   */
+  public static class UrlDB extends KeyDB {
+    public void initGlobal() {
+      setGlobal(getProperties().getProperty("url"));
+    }
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+      result.put("field0", new StringByteIterator((String) getGlobal()));
+      return 0;
+    }
+  }
+
+  private static MirrorDB create(String mode) throws DBException {
+    Measurements.setProperties(new Properties());
+    MemoryDB.clear();
+    MirrorDB.mismatches.set(0);
+    Properties p = new Properties();
+    p.setProperty(MirrorDB.DB_PROPERTY, MemoryDB.class.getName());
+    p.setProperty(MirrorDB.SHADOW, KeyDB.class.getName());
+    p.setProperty(MirrorDB.MODE, mode);
+    p.setProperty(MirrorDB.COMPARE, "true");
+    MirrorDB db = new MirrorDB();
+    db.setProperties(p);
+    db.init();
+    return db;
+  }
+
+  private static void check(MirrorDB db) throws DBException {
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    values.put("field0", new StringByteIterator("user1"));
+    assertEquals(0, db.insert("t", "user1", values));
+    values.put("field0", new StringByteIterator("other"));
+    assertEquals(0, db.insert("t", "user2", values));
+
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(0, db.read("t", "user1", null, result));
+    assertEquals("user1", result.get("field0").toString());
+    assertEquals(0, MirrorDB.mismatches.get());
+
+    result.clear();
+    assertEquals(0, db.read("t", "user2", null, result));
+    //the client gets the record of the primary
+    assertEquals("other", result.get("field0").toString());
+    assertEquals(1, MirrorDB.mismatches.get());
+    db.cleanup();
+  }
+
+  @Test
+  public void testSequential() throws DBException {
+    check(create("sequential"));
+  }
+
+  @Test
+  public void testConcurrent() throws DBException {
+    check(create("concurrent"));
+  }
+
+  @Test
+  public void testShadowProperties() {
+    Properties p = new Properties();
+    p.setProperty("url", "primary");
+    p.setProperty("threads", "1");
+    p.setProperty(MirrorDB.SHADOW + ".url", "shadow");
+    Properties shadow = MirrorDB.shadowProperties(p);
+    assertEquals("shadow", shadow.getProperty("url"));
+    assertEquals("1", shadow.getProperty("threads"));
+  }
+
+  @Test
+  public void testShadowOfTheSameClassHasItsOwnGlobalState() throws DBException {
+    Measurements.setProperties(new Properties());
+    Properties p = new Properties();
+    p.setProperty(MirrorDB.DB_PROPERTY, UrlDB.class.getName());
+    p.setProperty(MirrorDB.SHADOW, UrlDB.class.getName());
+    p.setProperty("url", "primary");
+    p.setProperty(MirrorDB.SHADOW + ".url", "shadow");
+    p.setProperty(MirrorDB.COMPARE, "true");
+    MirrorDB.mismatches.set(0);
+    MirrorDB db = new MirrorDB();
+    db.setProperties(p);
+    db.init();
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(0, db.read("t", "user1", null, result));
+    assertEquals("primary", result.get("field0").toString());
+    assertEquals(1, MirrorDB.mismatches.get());
+    HashMap<String, ByteIterator> shadow = new HashMap<String, ByteIterator>();
+    db._shadow.read("t", "user1", null, shadow);
+    assertEquals("shadow", shadow.get("field0").toString());
+    db.cleanup();
+  }
+}
@@ -0,0 +1,110 @@
+package com.yahoo.ycsb;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestOffHeapArena {
+  private static ByteBuffer bytes(int length, int value) {
+    ByteBuffer b = ByteBuffer.allocate(length);
+    for (int i = 0; i < length; i++) {
+      b.put((byte) value);
+    }
+    b.flip();
+    return b;
+  }
+
+  @Test
+  public void testFreedBlocksAreReused() {
+    OffHeapArena arena = new OffHeapArena(1024);
+    long a = arena.allocate(bytes(100, 1));
+    assertEquals(bytes(100, 1), arena.get(a));
+
+    arena.free(a);
+    assertNull(arena.get(a));
+    //a second free of the same handle does nothing
+    arena.free(a);
+    long b = arena.allocate(bytes(90, 2));
+    long c = arena.allocate(bytes(90, 3));
+    //same block, new version
+    assertEquals((int) a, (int) b);
+    assertFalse(a == b);
+    assertNull(arena.get(a));
+    assertEquals(bytes(90, 2), arena.get(b));
+    assertEquals(bytes(90, 3), arena.get(c));
+  }
+
+  @Test
+  public void testChunks() {
+    OffHeapArena arena = new OffHeapArena(1024);
+    Vector<Long> handles = new Vector<Long>();
+    for (int i = 0; i < 100; i++) {
+      handles.add(arena.allocate(bytes(i * 3, i)));
+    }
+    //larger than a chunk
+    long large = arena.allocate(bytes(5000, 7));
+    for (int i = 0; i < 100; i++) {
+      assertEquals(bytes(i * 3, i), arena.get(handles.get(i)));
+    }
+    assertEquals(bytes(5000, 7), arena.get(large));
+    assertTrue(arena.chunkcount > 2);
+  }
+
+  @Test
+  public void testConcurrentUpdatesOffHeap() throws Exception {
+    MemoryDB.clear();
+    Measurements.setProperties(new Properties());
+    Properties p = new Properties();
+    p.setProperty(MemoryDB.OFF_HEAP, "true");
+    final MemoryDB db = new MemoryDB();
+    db.setProperties(p);
+    db.init();
+    for (int k = 0; k < 10; k++) {
+      HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+      values.put("a", new StringByteIterator("0"));
+      values.put("b", new StringByteIterator("0"));
+      db.insert("t", "user" + k, values);
+    }
+
+    final AtomicInteger errors = new AtomicInteger();
+    Vector<Thread> threads = new Vector<Thread>();
+    for (int i = 0; i < 8; i++) {
+      final int id = i;
+      Thread t = new Thread() {
+        public void run() {
+          for (int j = 0; j < 2000; j++) {
+            String key = "user" + (j % 10);
+            if ((j + id) % 2 == 0) {
+              HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+              String v = id + "-" + j;
+              values.put("a", new StringByteIterator(v));
+              values.put("b", new StringByteIterator(v));
+              db.update("t", key, values);
+            } else {
+              //the two fields are always written together, so a read of a freed block would show
+              HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+              if (db.read("t", key, null, result) != 0
+                  || !result.get("a").toString().equals(result.get("b").toString())) {
+                errors.incrementAndGet();
+              }
+            }
+          }
+        }
+      };
+      threads.add(t);
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertEquals(0, errors.get());
+    MemoryDB.clear();
+  }
+}
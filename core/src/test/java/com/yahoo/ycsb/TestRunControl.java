@@ -0,0 +1,62 @@
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+import com.yahoo.ycsb.workloads.CoreWorkload;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestRunControl {
+  @Test
+  public void testChangesStartSegments() throws Exception {
+    Properties props = new Properties();
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "100");
+    props.setProperty(CoreWorkload.REQUEST_DISTRIBUTION_PROPERTY, "uniform");
+    Measurements.setProperties(props);
+    Measurements.getMeasurements().startPhase("a");
+
+    CoreWorkload workload = new CoreWorkload();
+    workload.init(props);
+    Vector<Thread> threads = new Vector<Thread>();
+    for (int i = 0; i < 4; i++) {
+      threads.add(new ClientThread(new BasicDB(), true, workload, props, 0, 0.25));
+    }
+    RunControl control = new RunControl(new Phase("a", Phase.MODE_RUN, props), threads, workload, null, 1000);
+
+    control.setThreads(2);
+    assertFalse(((ClientThread) threads.get(1)).isParked());
+    assertTrue(((ClientThread) threads.get(2)).isParked());
+    assertEquals(0.5, ((ClientThread) threads.get(0))._target, 1e-9);
+    assertEquals("a-segment1:READ", Measurements.getMeasurements().qualify("READ"));
+
+    control.setTarget(0);
+    assertTrue(((ClientThread) threads.get(0))._target <= 0);
+
+    Properties mix = new Properties();
+    mix.setProperty(CoreWorkload.READ_PROPORTION_PROPERTY, "0");
+    mix.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "0");
+    try {
+      control.adjust(mix);
+      fail("no operation left");
+    } catch (WorkloadException e) {
+      //a rejected change is no boundary
+      assertEquals("a-segment2:READ", Measurements.getMeasurements().qualify("READ"));
+    }
+
+    mix.setProperty(CoreWorkload.UPDATE_PROPORTION_PROPERTY, "1");
+    control.adjust(mix);
+    assertEquals("a-segment3:READ", Measurements.getMeasurements().qualify("READ"));
+
+    RunControl.setCurrent(control);
+    try {
+      assertEquals("OK phase=a-segment3 target=0 threads=2/4", ControlListener.execute("status"));
+      assertTrue(ControlListener.execute("threads 5").startsWith("ERROR"));
+    } finally {
+      RunControl.setCurrent(null);
+    }
+    assertTrue(ControlListener.execute("status").startsWith("ERROR"));
+  }
+}
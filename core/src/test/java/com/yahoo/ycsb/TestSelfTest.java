@@ -0,0 +1,28 @@
+package com.yahoo.ycsb;
+
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestSelfTest {
+  @Test
+  public void testCheck() {
+    assertTrue(SelfTest.check(95, 100, 0.1));
+    assertFalse(SelfTest.check(85, 100, 0.1));
+  }
+
+  @Test
+  public void testMeasureNoopDB() {
+    Properties props = new Properties();
+    props.setProperty(Client.WORKLOAD_PROPERTY, "com.yahoo.ycsb.workloads.CoreWorkload");
+    props.setProperty("db", NoopDB.class.getName());
+    props.setProperty(Client.RECORD_COUNT_PROPERTY, "1000");
+    props.setProperty(Client.OPERATION_COUNT_PROPERTY, "0");
+    Measurements.setProperties(props);
+    ThreadDBs dbs = new ThreadDBs();
+    assertTrue(new SelfTest().measure(props, dbs, 2, 1, true) > 0);
+  }
+}
@@ -0,0 +1,125 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestShardedDB {
+  /**
+   * A DB that records the keys it got under the value of its property "name", and scans one record.
+   */
+  public static class NamedDB extends DB {
+    static final ConcurrentHashMap<String, String> owners = new ConcurrentHashMap<String, String>();
+
+    public int read(String table, String key, String field, HashMap<String, ByteIterator> result) {
+      return owners.get(key).equals(getProperties().getProperty("name")) ? 0 : 1;
+    }
+
+    public int scan(String table, String startkey, int recordcount, String field, Vector<HashMap<String, ByteIterator>> result) {
+      HashMap<String, ByteIterator> record = new HashMap<String, ByteIterator>();
+      record.put("name", new StringByteIterator(getProperties().getProperty("name")));
+      result.add(record);
+      return 0;
+    }
+
+    public int update(String table, String key, HashMap<String, ByteIterator> values) {
+      return 0;
+    }
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+      owners.put(key, getProperties().getProperty("name"));
+      return 0;
+    }
+
+    public int delete(String table, String key) {
+      return 0;
+    }
+  }
+
+  @Test
+  public void testWeights() {
+    ShardedDB.Ring ring = new ShardedDB.Ring(new double[] { 1, 3 }, new String[] { "a", "b" }, 100);
+    int[] counts = new int[2];
+    for (int i = 0; i < 100000; i++) {
+      counts[ring.shard("user" + i)]++;
+    }
+    assertEquals(0.25, counts[0] / 100000.0, 0.05);
+    double[] shares = ring.shares(2);
+    assertEquals(1.0, shares[0] + shares[1], 1e-9);
+    assertEquals(shares[0], counts[0] / 100000.0, 0.01);
+  }
+
+  @Test
+  public void testAddingAShardOnlyMovesKeysToIt() {
+    ShardedDB.Ring before = new ShardedDB.Ring(new double[] { 1, 1 }, new String[] { "a", "b" }, 100);
+    ShardedDB.Ring after = new ShardedDB.Ring(new double[] { 1, 1, 1 }, new String[] { "a", "b", "c" }, 100);
+    int moved = 0;
+    for (int i = 0; i < 10000; i++) {
+      int shard = after.shard("user" + i);
+      if (shard != before.shard("user" + i)) {
+        assertEquals(2, shard);
+        moved++;
+      }
+    }
+    assertTrue(moved > 2000 && moved < 4500);
+  }
+
+  @Test
+  public void testRouting() throws DBException {
+    Measurements.setProperties(new Properties());
+    Properties p = new Properties();
+    p.setProperty(ShardedDB.DB_PROPERTY, NamedDB.class.getName());
+    p.setProperty(ShardedDB.SHARDS, "a, b");
+    p.setProperty("shardeddb.a.name", "a");
+    p.setProperty("shardeddb.b.name", "b");
+    ShardedDB db = new ShardedDB();
+    db.setProperties(p);
+    db.init();
+    for (int i = 0; i < 100; i++) {
+      assertEquals(0, db.insert("t", "user" + i, new HashMap<String, ByteIterator>()));
+    }
+    //every read goes to the shard the insert went to
+    for (int i = 0; i < 100; i++) {
+      assertEquals(0, db.read("t", "user" + i, null, new HashMap<String, ByteIterator>()));
+    }
+    Vector<HashMap<String, ByteIterator>> result = new Vector<HashMap<String, ByteIterator>>();
+    assertEquals(0, db.scan("t", "user0", 10, null, result));
+    assertEquals(2, result.size());
+    assertEquals("a", result.get(0).get("name").toString());
+    assertEquals("b", result.get(1).get("name").toString());
+    db.cleanup();
+    db.cleanupGlobal();
+  }
+
+  @Test
+  public void testShardsOfTheSameClassHaveTheirOwnGlobalState() throws DBException {
+    Measurements.setProperties(new Properties());
+    Properties p = new Properties();
+    p.setProperty(ShardedDB.DB_PROPERTY, TestMirrorDB.UrlDB.class.getName());
+    p.setProperty(ShardedDB.SHARDS, "east,west");
+    p.setProperty("shardeddb.east.url", "east");
+    p.setProperty("shardeddb.west.url", "west");
+    ShardedDB db = new ShardedDB();
+    db.setProperties(p);
+    db.init();
+    boolean[] seen = new boolean[2];
+    for (int i = 0; i < 100; i++) {
+      String key = "user" + i;
+      HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+      assertEquals(0, db.read("t", key, null, result));
+      int shard = db.ring.shard(key);
+      //every key reads from the connections of its own shard
+      assertEquals(db.names[shard], result.get("field0").toString());
+      seen[shard] = true;
+    }
+    assertTrue(seen[0] && seen[1]);
+    db.cleanup();
+    db.cleanupGlobal();
+  }
+}
@@ -0,0 +1,59 @@
+package com.yahoo.ycsb;
+
+import com.yahoo.ycsb.generator.ZipfianGenerator;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestSplitMix64 {
+  @Test
+  public void testReferenceValue() {
+    //the first number of SplitMix64 and java.util.SplittableRandom for the seed 0
+    assertEquals(0xe220a8397b1dcdafL, new SplitMix64(0).nextLong());
+  }
+
+  @Test
+  public void testSplitStreamsDiffer() {
+    SplitMix64 parent = new SplitMix64(42);
+    SplitMix64 a = parent.split();
+    SplitMix64 b = parent.split();
+    int same = 0;
+    for (int i = 0; i < 1000; i++) {
+      if (a.nextInt(100) == b.nextInt(100)) {
+        same++;
+      }
+    }
+    assertTrue("split streams look correlated: " + same, same < 30);
+  }
+
+  @Test
+  public void testSeedReproducesStream() {
+    int[] first = draw();
+    int[] second = draw();
+    for (int i = 0; i < first.length; i++) {
+      assertEquals(first[i], second[i]);
+    }
+  }
+
+  private static int[] draw() {
+    Utils.seed(7, "0:a");
+    final SplitMix64 thread = Utils.split();
+    final int[] ret = new int[100];
+    Thread t = new Thread() {
+      public void run() {
+        Utils.setRandom(thread);
+        ZipfianGenerator zipf = new ZipfianGenerator(1000);
+        for (int i = 0; i < ret.length; i++) {
+          ret[i] = zipf.nextInt();
+        }
+      }
+    };
+    t.start();
+    try {
+      t.join();
+    } catch (InterruptedException e) {
+      fail();
+    }
+    return ret;
+  }
+}
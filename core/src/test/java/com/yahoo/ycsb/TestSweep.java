@@ -0,0 +1,56 @@
+package com.yahoo.ycsb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.Vector;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestSweep {
+  @Test
+  public void testValues() {
+    assertEquals(Arrays.asList("a", "b"), Sweep.parseValues("a, b"));
+    assertEquals(Arrays.asList("1", "2", "4", "8"), Sweep.parseValues("1..8*2"));
+    assertEquals(Arrays.asList("1000", "3000", "5000"), Sweep.parseValues("1000..5000+2000"));
+    assertEquals(Arrays.asList("0.5", "1.0"), Sweep.parseValues("0.5..1+0.5"));
+  }
+
+  @Test
+  public void testPointsAndTable() throws Exception {
+    Properties fileprops = new Properties();
+    fileprops.setProperty("threadcount", "1");
+    Properties cmdprops = new Properties();
+    cmdprops.setProperty(Sweep.SWEEP_PROPERTY, "threadcount,target");
+    cmdprops.setProperty("sweep.threadcount", "1,2");
+    cmdprops.setProperty("sweep.target", "100..300+100");
+    cmdprops.setProperty(Sweep.POINTS_PROPERTY, "1,4-5");
+
+    Sweep sweep = new Sweep(cmdprops);
+    assertEquals(6, sweep.getPointCount());
+    Vector<Phase> phases = sweep.getPhases(fileprops, cmdprops, true);
+    assertEquals(3, phases.size());
+    assertEquals("p1", phases.get(0).getName());
+    assertEquals("1", phases.get(0).getProperties().getProperty("threadcount"));
+    assertEquals("200", phases.get(0).getProperties().getProperty("target"));
+    assertEquals("2", phases.get(2).getProperties().getProperty("threadcount"));
+    assertEquals("300", phases.get(2).getProperties().getProperty("target"));
+
+    Measurements.setProperties(new Properties());
+    Measurements.getMeasurements().startPhase("p1");
+    Measurements.getMeasurements().measure("READ", 1500);
+    sweep.done(phases.get(0), 100, 2000, 0);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    sweep.writeTable(new PrintStream(out, true, "UTF-8"));
+    String[] lines = out.toString("UTF-8").split("\n");
+    assertEquals(2, lines.length);
+    assertEquals("phase,threadcount,target,Operations,RunTime(ms),Throughput(ops/sec),READ.AverageLatency(us),"
+        + "READ.95thPercentileLatency(ms),READ.99thPercentileLatency(ms)", lines[0]);
+    assertEquals("p1,1,200,100,2000,50,1500,1,1", lines[1]);
+  }
+}
@@ -0,0 +1,110 @@
+package com.yahoo.ycsb;
+
+import java.util.HashMap;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import com.yahoo.ycsb.measurements.Measurements;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestWriteBehindDB {
+  /**
+   * Holds its inserts until released.
+   */
+  public static class SlowDB extends MemoryDB {
+    static CountDownLatch entered;
+    static CountDownLatch release;
+
+    public int insert(String table, String key, HashMap<String, ByteIterator> values) {
+      entered.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return super.insert(table, key, values);
+    }
+  }
+
+  private static HashMap<String, ByteIterator> record(String... fields) {
+    HashMap<String, ByteIterator> values = new HashMap<String, ByteIterator>();
+    for (int i = 0; i < fields.length; i += 2) {
+      values.put(fields[i], new StringByteIterator(fields[i + 1]));
+    }
+    return values;
+  }
+
+  @Test
+  public void testCoalescesWrites() throws DBException {
+    MemoryDB.clear();
+    Measurements.setProperties(new Properties());
+    Properties p = new Properties();
+    p.setProperty(WriteBehindDB.DB_PROPERTY, MemoryDB.class.getName());
+    //only the final flush writes
+    p.setProperty(WriteBehindDB.FLUSH_INTERVAL, "100000");
+    WriteBehindDB db = new WriteBehindDB();
+    db.setProperties(p);
+    db.init();
+
+    db.insert("t", "user1", record("a", "1", "b", "2"));
+    db.update("t", "user1", record("b", "3"));
+    db.update("t", "user1", record("a", "4"));
+    MemoryDB memory = new MemoryDB();
+    assertEquals(1, memory.read("t", "user1", null, new HashMap<String, ByteIterator>()));
+    //reads see the buffered writes
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(0, db.read("t", "user1", null, result));
+    assertEquals("4", result.get("a").toString());
+    assertEquals("3", result.get("b").toString());
+
+    WriteBehindDB.Buffer buffer = db._buffer;
+    db.cleanup();
+    db.cleanupGlobal();
+    assertEquals(3, buffer.writes.get());
+    assertEquals(1, buffer.flushes.get());
+    result.clear();
+    assertEquals(0, memory.read("t", "user1", null, result));
+    assertEquals("4", result.get("a").toString());
+    assertEquals("3", result.get("b").toString());
+  }
+
+  @Test
+  public void testFlushingWritesStayVisibleAndOrdered() throws Exception {
+    MemoryDB.clear();
+    Measurements.setProperties(new Properties());
+    SlowDB.entered = new CountDownLatch(1);
+    SlowDB.release = new CountDownLatch(1);
+    Properties p = new Properties();
+    p.setProperty(WriteBehindDB.DB_PROPERTY, SlowDB.class.getName());
+    p.setProperty(WriteBehindDB.FLUSH_INTERVAL, "10");
+    p.setProperty(WriteBehindDB.FLUSHERS, "2");
+    final WriteBehindDB db = new WriteBehindDB();
+    db.setProperties(p);
+    db.init();
+
+    db.insert("t", "user1", record("a", "1"));
+    SlowDB.entered.await();
+    //the flush of the insert is under way, but reads still see it
+    HashMap<String, ByteIterator> result = new HashMap<String, ByteIterator>();
+    assertEquals(0, db.read("t", "user1", null, result));
+    assertEquals("1", result.get("a").toString());
+
+    //the delete waits for the flush, so the insert can't undo it
+    Thread delete = new Thread() {
+      public void run() {
+        db.delete("t", "user1");
+      }
+    };
+    delete.start();
+    delete.join(100);
+    assertTrue(delete.isAlive());
+    SlowDB.release.countDown();
+    delete.join();
+
+    db.cleanup();
+    db.cleanupGlobal();
+    assertEquals(1, new MemoryDB().read("t", "user1", null, new HashMap<String, ByteIterator>()));
+  }
+}
@@ -0,0 +1,23 @@
+package com.yahoo.ycsb.generator;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestUniqueRandomGenerator {
+  @Test
+  public void testEveryValueOnce() {
+    for (int count : new int[]{1, 2, 1000, 1025}) {
+      UniqueRandomGenerator gen = new UniqueRandomGenerator(count);
+      boolean[] seen = new boolean[count];
+      int first = gen.nextInt();
+      seen[first] = true;
+      for (int i = 1; i < count; i++) {
+        int v = gen.nextInt();
+        assertFalse(seen[v]);
+        seen[v] = true;
+      }
+      //then the same order again
+      assertEquals(first, gen.nextInt());
+    }
+  }
+}
@@ -0,0 +1,24 @@
+package com.yahoo.ycsb.generator;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestZetaCache {
+  @Test
+  public void testMatchesPlainSum() {
+    long n = 4 * ZetaCache.EXACT + 17;
+    for (double theta : new double[]{0.5, 0.99, 1.0, 2.0}) {
+      double plain = ZipfianGenerator.zetastatic(n, theta);
+      assertEquals(plain, ZetaCache.zeta(n, theta), plain * 1e-12);
+    }
+  }
+
+  @Test
+  public void testIncrementalMatchesPlainSum() {
+    long st = 2 * ZetaCache.EXACT;
+    long n = 3 * ZetaCache.EXACT;
+    double initialsum = ZipfianGenerator.zetastatic(st, 0.99);
+    double plain = ZipfianGenerator.zetastatic(n, 0.99);
+    assertEquals(plain, ZetaCache.sum(st, n, 0.99, initialsum), plain * 1e-12);
+  }
+}
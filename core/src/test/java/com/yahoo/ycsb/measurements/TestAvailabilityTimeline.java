@@ -0,0 +1,63 @@
+package com.yahoo.ycsb.measurements;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.yahoo.ycsb.measurements.exporter.MeasurementsExporter;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestAvailabilityTimeline {
+  /**
+   * Keeps the last value written for every metric and measurement.
+   */
+  static class MapExporter implements MeasurementsExporter {
+    Map<String, Double> values = new HashMap<String, Double>();
+
+    public void write(String metric, String measurement, int i) {
+      values.put(metric + "/" + measurement, (double) i);
+    }
+
+    public void write(String metric, String measurement, double d) {
+      values.put(metric + "/" + measurement, d);
+    }
+
+    public void write(String metric, String measurement, double i, double t) {
+      values.put(metric + "/" + measurement, i);
+    }
+
+    public void close() throws IOException {
+    }
+  }
+
+  @Test
+  public void testDegradedWindowAfterMarker() throws IOException {
+    AvailabilityTimeline timeline = new AvailabilityTimeline(new Properties());
+    //100 ops/sec for 10 s, with only 20 ops/sec and some errors in seconds 4 and 5
+    for (int sec = 0; sec < 10; sec++) {
+      int ok = (sec == 4 || sec == 5) ? 20 : 100;
+      for (int i = 0; i < ok; i++) {
+        timeline.add(sec * 1000 + i, AvailabilityTimeline.SUCCESS);
+      }
+      if (sec == 4) {
+        timeline.add(sec * 1000 + 500, AvailabilityTimeline.ERROR);
+      }
+    }
+    timeline.mark(3500, "node killed");
+
+    MapExporter exporter = new MapExporter();
+    timeline.export("AVAILABILITY", exporter);
+    assertEquals(100.0, exporter.values.get("AVAILABILITY/BaselineThroughput(ops/sec)"));
+    assertEquals(1.0, exporter.values.get("AVAILABILITY/DegradedWindows"));
+    assertEquals(160.0, exporter.values.get("AVAILABILITY/LostOperations"));
+    assertEquals(4000.0, exporter.values.get("AVAILABILITY/Window1.Start(ms)"));
+    assertEquals(6000.0, exporter.values.get("AVAILABILITY/Window1.End(ms)"));
+    assertEquals(1.0, exporter.values.get("AVAILABILITY/Window1.Errors"));
+    assertEquals(500.0, exporter.values.get("AVAILABILITY/Window1.TimeToDetect(ms)"));
+    assertEquals(2500.0, exporter.values.get("AVAILABILITY/Window1.TimeToRecover(ms)"));
+    assertEquals(3500.0, exporter.values.get("AVAILABILITY-MARKER/node killed"));
+  }
+}
@@ -0,0 +1,41 @@
+package com.yahoo.ycsb.measurements;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+import static org.testng.AssertJUnit.*;
+
+public class TestMeasurements {
+  @Test
+  public void testReportWhileStartingSegments() throws InterruptedException {
+    final Measurements measurements = new Measurements(new Properties());
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final long end = System.currentTimeMillis() + 500;
+    Thread[] threads = new Thread[4];
+    for (int i = 0; i < threads.length; i++) {
+      final String operation = "OP" + i;
+      threads[i] = new Thread() {
+        public void run() {
+          try {
+            while (System.currentTimeMillis() < end) {
+              measurements.reportReturnCode(operation, 0);
+              measurements.reportRetryCount(operation, 0);
+              measurements.measure(operation, 1);
+            }
+          } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (int segment = 0; System.currentTimeMillis() < end; segment++) {
+      measurements.startSegment("a" + segment, "change " + segment);
+    }
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertNull(failure.get());
+  }
+}
@@ -20,6 +20,7 @@ package com.yahoo.ycsb.db;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.ByteIterator;
+import com.yahoo.ycsb.ConnectionPool;
 import com.yahoo.ycsb.StringByteIterator;
 
 import java.sql.*;
@@ -31,8 +32,10 @@ import java.util.concurrent.ConcurrentMap;
  * A class that wraps a JDBC compliant database to allow it to be interfaced with YCSB.
  * This class extends {@link DB} and implements the database interface used by YCSB client.
  * 
- * <br> Each client will have its own instance of this class. This client is
- * not thread safe.
+ * <br> Each client will have its own instance of this class. The connections
+ * are shared by all client threads: every operation borrows one connection
+ * to each shard from a pool of <b>connectionpoolsize</b> connections, which
+ * defaults to one per thread.
  * 
  * <br> This interface expects a schema <key> <field1> <field2> <field3> ...
  * All attributes are of type VARCHAR. All accesses are through the primary key. Therefore, 
@@ -52,12 +55,25 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class JdbcDBClient extends DB implements JdbcDBClientConstants {
 	
-  private ArrayList<Connection> conns;
+  /**
+   * The pool the connections of the current operation were borrowed from. The shared pool may be
+   * replaced after a failure while the connections are in use.
+   */
+  private ConnectionPool<Shards> borrowed;
   private boolean initialized = false;
   private Properties props;
-  private Integer jdbcFetchSize;
   private static final String DEFAULT_PROP = "";
-  private ConcurrentMap<StatementType, PreparedStatement> cachedStatements;
+
+  /**
+   * A connection to every shard, with the statements prepared on them.
+   * This is the unit the connection pool hands out.
+   */
+  private static class Shards {
+    ArrayList<Connection> conns = new ArrayList<Connection>(3);
+    Integer fetchSize;
+    ConcurrentMap<StatementType, PreparedStatement> cachedStatements =
+        new ConcurrentHashMap<StatementType, PreparedStatement>();
+  }
   
   /**
    * The statement type for the prepared statements.
@@ -137,9 +153,9 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
      * @param key Data key to do operation on
      * @return Shard index
      */
-    private int getShardIndexByKey(String key) {
-       int ret = Math.abs(key.hashCode()) % conns.size();
-       //System.out.println(conns.size() + ": Shard instance for "+ key + " (hash  " + key.hashCode()+ " ) " + " is " + ret);
+    private int getShardIndexByKey(Shards shards, String key) {
+       int ret = Math.abs(key.hashCode()) % shards.conns.size();
+       //System.out.println(shards.conns.size() + ": Shard instance for "+ key + " (hash  " + key.hashCode()+ " ) " + " is " + ret);
        return ret;
     }
 
@@ -150,93 +166,148 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
      * @param key Data key to get information for
      * @return Connection object
      */
-    private Connection getShardConnectionByKey(String key) {
-        return conns.get(getShardIndexByKey(key));
+    private Connection getShardConnectionByKey(Shards shards, String key) {
+        return shards.conns.get(getShardIndexByKey(shards, key));
     }
 
-    private void cleanupAllConnections() throws SQLException {
-       for(Connection conn: conns) {
+    private static void cleanupAllConnections(Shards shards) throws SQLException {
+       for(Connection conn: shards.conns) {
            conn.close();
        }
     }
+
+    /**
+     * Borrow the connections for an operation, or return null if they can't be opened.
+     */
+    private Shards acquire() {
+      try {
+        borrowed = pool();
+        return borrowed.acquire();
+      } catch (DBException e) {
+        System.err.println("Error in opening the connections: " + e);
+        return null;
+      }
+    }
+
+    /**
+     * Return the connections borrowed for an operation, or close them if the operation failed with a
+     * SQLException, as they may be broken.
+     */
+    private void release(Shards shards, boolean ok) {
+      if (ok) {
+        borrowed.release(shards);
+      } else {
+        borrowed.invalidate(shards);
+      }
+    }
+
+    /**
+     * Return the connections shared by all client threads.
+     */
+    @SuppressWarnings("unchecked")
+    private ConnectionPool<Shards> pool() {
+      return (ConnectionPool<Shards>) getGlobal();
+    }
   
   /**
-   * Initialize the database connection and set it up for sending requests to the database.
-   * This must be called once per client.
-   * @throws  
+   * Initialize the database connection pool shared by all client threads.
+   * This is called once per process.
    */
   @Override
-	public void init() throws DBException {
-		if (initialized) {
-		  System.err.println("Client connection already initialized.");
-		  return;
-		}
+	public void initGlobal() throws DBException {
 		props = getProperties();
-		String urls = props.getProperty(CONNECTION_URL, DEFAULT_PROP);
-		String user = props.getProperty(CONNECTION_USER, DEFAULT_PROP);
-		String passwd = props.getProperty(CONNECTION_PASSWD, DEFAULT_PROP);
+		final String urls = props.getProperty(CONNECTION_URL, DEFAULT_PROP);
+		final String user = props.getProperty(CONNECTION_USER, DEFAULT_PROP);
+		final String passwd = props.getProperty(CONNECTION_PASSWD, DEFAULT_PROP);
 		String driver = props.getProperty(DRIVER_CLASS);
 
       String jdbcFetchSizeStr = props.getProperty(JDBC_FETCH_SIZE);
+      final Integer jdbcFetchSize;
           if (jdbcFetchSizeStr != null) {
           try {
-              this.jdbcFetchSize = Integer.parseInt(jdbcFetchSizeStr);
+              jdbcFetchSize = Integer.parseInt(jdbcFetchSizeStr);
           } catch (NumberFormatException nfe) {
               System.err.println("Invalid JDBC fetch size specified: " + jdbcFetchSizeStr);
               throw new DBException(nfe);
           }
+      } else {
+          jdbcFetchSize = null;
       }
 
       String autoCommitStr = props.getProperty(JDBC_AUTO_COMMIT, Boolean.TRUE.toString());
-      Boolean autoCommit = Boolean.parseBoolean(autoCommitStr);
+      final Boolean autoCommit = Boolean.parseBoolean(autoCommitStr);
 
       try {
 		  if (driver != null) {
 	      Class.forName(driver);
 	    }
-          int shardCount = 0;
-          conns = new ArrayList<Connection>(3);
-          for (String url: urls.split(",")) {
-              System.out.println("Adding shard node URL: " + url);
-            Connection conn = DriverManager.getConnection(url, user, passwd);
+		} catch (ClassNotFoundException e) {
+		  System.err.println("Error in initializing the JDBS driver: " + e);
+		  throw new DBException(e);
+		}
+
+      int shardCount = urls.split(",").length;
+      for (String url: urls.split(",")) {
+          System.out.println("Adding shard node URL: " + url);
+      }
+      System.out.println("Using " + shardCount + " shards");
+
+      ConnectionPool<Shards> pool = new ConnectionPool<Shards>(new ConnectionPool.Factory<Shards>() {
+        public Shards create() throws SQLException {
+          Shards shards = new Shards();
+          shards.fetchSize = jdbcFetchSize;
+          try {
+            for (String url: urls.split(",")) {
+              Connection conn = DriverManager.getConnection(url, user, passwd);
 
-            // Since there is no explicit commit method in the DB interface, all
-            // operations should auto commit, except when explicitly told not to
-            // (this is necessary in cases such as for PostgreSQL when running a
-            // scan workload with fetchSize)
-            conn.setAutoCommit(autoCommit);
+              // Since there is no explicit commit method in the DB interface, all
+              // operations should auto commit, except when explicitly told not to
+              // (this is necessary in cases such as for PostgreSQL when running a
+              // scan workload with fetchSize)
+              conn.setAutoCommit(autoCommit);
 
-            shardCount++;
-            conns.add(conn);
+              shards.conns.add(conn);
+            }
+          } catch (SQLException e) {
+            System.err.println("Error in database operation: " + e);
+            destroy(shards);
+            throw e;
           }
+          return shards;
+        }
 
-          System.out.println("Using " + shardCount + " shards");
+        public void destroy(Shards shards) {
+          try {
+            cleanupAllConnections(shards);
+          } catch (SQLException e) {
+            System.err.println("Error in closing the connection. " + e);
+          }
+        }
+      }, ConnectionPool.size(props));
+      setGlobal(pool);
 
-		  cachedStatements = new ConcurrentHashMap<StatementType, PreparedStatement>();
-		} catch (ClassNotFoundException e) {
-		  System.err.println("Error in initializing the JDBS driver: " + e);
-		  throw new DBException(e);
-		} catch (SQLException e) {
-		  System.err.println("Error in database operation: " + e);
-      throw new DBException(e);
-    } catch (NumberFormatException e) {
-      System.err.println("Invalid value for fieldcount property. " + e);
-      throw new DBException(e);
-    }
+      // open one set of connections now so that a bad configuration fails the start
+      pool.release(pool.acquire());
+	}
+
+  /**
+   * Nothing to do per client thread; the connections are opened on demand by the shared pool.
+   */
+  @Override
+	public void init() throws DBException {
+		if (initialized) {
+		  System.err.println("Client connection already initialized.");
+		  return;
+		}
 		initialized = true;
 	}
-	
+
   @Override
-	public void cleanup() throws DBException {
-	  try {
-      cleanupAllConnections();
-    } catch (SQLException e) {
-      System.err.println("Error in closing the connection. " + e);
-      throw new DBException(e);
-    }
+	public void cleanupGlobal() throws DBException {
+	  pool().close();
 	}
-	
-	private PreparedStatement createAndCacheInsertStatement(StatementType insertType, String key)
+
+	private PreparedStatement createAndCacheInsertStatement(Shards shards, StatementType insertType, String key)
 	throws SQLException {
 	  StringBuilder insert = new StringBuilder("INSERT INTO ");
 	  insert.append(insertType.tableName);
@@ -245,13 +316,13 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
       insert.append(",?");
     }
     insert.append(");");
-    PreparedStatement insertStatement = getShardConnectionByKey(key).prepareStatement(insert.toString());
-    PreparedStatement stmt = cachedStatements.putIfAbsent(insertType, insertStatement);
+    PreparedStatement insertStatement = getShardConnectionByKey(shards, key).prepareStatement(insert.toString());
+    PreparedStatement stmt = shards.cachedStatements.putIfAbsent(insertType, insertStatement);
     if (stmt == null) return insertStatement;
     else return stmt;
 	}
 	
-	private PreparedStatement createAndCacheReadStatement(StatementType readType, String key)
+	private PreparedStatement createAndCacheReadStatement(Shards shards, StatementType readType, String key)
 	throws SQLException {
     StringBuilder read = new StringBuilder("SELECT * FROM ");
     read.append(readType.tableName);
@@ -259,26 +330,26 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
     read.append(PRIMARY_KEY);
     read.append(" = ");
     read.append("?;");
-    PreparedStatement readStatement = getShardConnectionByKey(key).prepareStatement(read.toString());
-    PreparedStatement stmt = cachedStatements.putIfAbsent(readType, readStatement);
+    PreparedStatement readStatement = getShardConnectionByKey(shards, key).prepareStatement(read.toString());
+    PreparedStatement stmt = shards.cachedStatements.putIfAbsent(readType, readStatement);
     if (stmt == null) return readStatement;
     else return stmt;
   }
 	
-	private PreparedStatement createAndCacheDeleteStatement(StatementType deleteType, String key)
+	private PreparedStatement createAndCacheDeleteStatement(Shards shards, StatementType deleteType, String key)
 	throws SQLException {
     StringBuilder delete = new StringBuilder("DELETE FROM ");
     delete.append(deleteType.tableName);
     delete.append(" WHERE ");
     delete.append(PRIMARY_KEY);
     delete.append(" = ?;");
-    PreparedStatement deleteStatement = getShardConnectionByKey(key).prepareStatement(delete.toString());
-    PreparedStatement stmt = cachedStatements.putIfAbsent(deleteType, deleteStatement);
+    PreparedStatement deleteStatement = getShardConnectionByKey(shards, key).prepareStatement(delete.toString());
+    PreparedStatement stmt = shards.cachedStatements.putIfAbsent(deleteType, deleteStatement);
     if (stmt == null) return deleteStatement;
     else return stmt;
   }
 	
-	private PreparedStatement createAndCacheUpdateStatement(StatementType updateType, String key)
+	private PreparedStatement createAndCacheUpdateStatement(Shards shards, StatementType updateType, String key)
 	throws SQLException {
     StringBuilder update = new StringBuilder("UPDATE ");
     update.append(updateType.tableName);
@@ -292,13 +363,13 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
     update.append(" WHERE ");
     update.append(PRIMARY_KEY);
     update.append(" = ?;");
-    PreparedStatement insertStatement = getShardConnectionByKey(key).prepareStatement(update.toString());
-    PreparedStatement stmt = cachedStatements.putIfAbsent(updateType, insertStatement);
+    PreparedStatement insertStatement = getShardConnectionByKey(shards, key).prepareStatement(update.toString());
+    PreparedStatement stmt = shards.cachedStatements.putIfAbsent(updateType, insertStatement);
     if (stmt == null) return insertStatement;
     else return stmt;
   }
 	
-	private PreparedStatement createAndCacheScanStatement(StatementType scanType, String key)
+	private PreparedStatement createAndCacheScanStatement(Shards shards, StatementType scanType, String key)
 	throws SQLException {
 	  StringBuilder select = new StringBuilder("SELECT * FROM ");
     select.append(scanType.tableName);
@@ -306,9 +377,9 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
     select.append(PRIMARY_KEY);
     select.append(" >= ");
     select.append("?;");
-    PreparedStatement scanStatement = getShardConnectionByKey(key).prepareStatement(select.toString());
-    if (this.jdbcFetchSize != null) scanStatement.setFetchSize(this.jdbcFetchSize);
-    PreparedStatement stmt = cachedStatements.putIfAbsent(scanType, scanStatement);
+    PreparedStatement scanStatement = getShardConnectionByKey(shards, key).prepareStatement(select.toString());
+    if (shards.fetchSize != null) scanStatement.setFetchSize(shards.fetchSize);
+    PreparedStatement stmt = shards.cachedStatements.putIfAbsent(scanType, scanStatement);
     if (stmt == null) return scanStatement;
     else return stmt;
   }
@@ -322,11 +393,16 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
     if (key == null) {
       return -1;
     }
+    Shards shards = acquire();
+    if (shards == null) {
+      return -2;
+    }
+    boolean ok = true;
     try {
-      StatementType type = new StatementType(StatementType.Type.READ, tableName, 1, getShardIndexByKey(key));
-      PreparedStatement readStatement = cachedStatements.get(type);
+      StatementType type = new StatementType(StatementType.Type.READ, tableName, 1, getShardIndexByKey(shards, key));
+      PreparedStatement readStatement = shards.cachedStatements.get(type);
       if (readStatement == null) {
-        readStatement = createAndCacheReadStatement(type, key);
+        readStatement = createAndCacheReadStatement(shards, type, key);
       }
       readStatement.setString(1, key);
       ResultSet resultSet = readStatement.executeQuery();
@@ -341,8 +417,11 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
       resultSet.close();
       return SUCCESS;
     } catch (SQLException e) {
+        ok = false;
         System.err.println("Error in processing read of table " + tableName + ": "+e);
       return -2;
+    } finally {
+      release(shards, ok);
     }
 	}
 
@@ -355,11 +434,16 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
     if (startKey == null) {
       return -1;
     }
+    Shards shards = acquire();
+    if (shards == null) {
+      return -2;
+    }
+    boolean ok = true;
     try {
-      StatementType type = new StatementType(StatementType.Type.SCAN, tableName, 1, getShardIndexByKey(startKey));
-      PreparedStatement scanStatement = cachedStatements.get(type);
+      StatementType type = new StatementType(StatementType.Type.SCAN, tableName, 1, getShardIndexByKey(shards, startKey));
+      PreparedStatement scanStatement = shards.cachedStatements.get(type);
       if (scanStatement == null) {
-        scanStatement = createAndCacheScanStatement(type, startKey);
+        scanStatement = createAndCacheScanStatement(shards, type, startKey);
       }
       scanStatement.setString(1, startKey);
       ResultSet resultSet = scanStatement.executeQuery();
@@ -374,8 +458,11 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
       resultSet.close();
       return SUCCESS;
     } catch (SQLException e) {
+      ok = false;
       System.err.println("Error in processing scan of table: " + tableName + e);
       return -2;
+    } finally {
+      release(shards, ok);
     }
 	}
 
@@ -387,12 +474,17 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
     if (key == null) {
       return -1;
     }
+    Shards shards = acquire();
+    if (shards == null) {
+      return -2;
+    }
+    boolean ok = true;
     try {
       int numFields = values.size();
-      StatementType type = new StatementType(StatementType.Type.UPDATE, tableName, numFields, getShardIndexByKey(key));
-      PreparedStatement updateStatement = cachedStatements.get(type);
+      StatementType type = new StatementType(StatementType.Type.UPDATE, tableName, numFields, getShardIndexByKey(shards, key));
+      PreparedStatement updateStatement = shards.cachedStatements.get(type);
       if (updateStatement == null) {
-        updateStatement = createAndCacheUpdateStatement(type, key);
+        updateStatement = createAndCacheUpdateStatement(shards, type, key);
       }
       int index = 1;
       for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
@@ -403,8 +495,11 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
       if (result == 1) return SUCCESS;
       else return 1;
     } catch (SQLException e) {
+      ok = false;
       System.err.println("Error in processing update to table: " + tableName + e);
       return -1;
+    } finally {
+      release(shards, ok);
     }
 	}
 
@@ -416,12 +511,17 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
 	  if (key == null) {
 	    return -1;
 	  }
+	  Shards shards = acquire();
+	  if (shards == null) {
+	    return -2;
+	  }
+	  boolean ok = true;
 	  try {
 	    int numFields = values.size();
-	    StatementType type = new StatementType(StatementType.Type.INSERT, tableName, numFields, getShardIndexByKey(key));
-	    PreparedStatement insertStatement = cachedStatements.get(type);
+	    StatementType type = new StatementType(StatementType.Type.INSERT, tableName, numFields, getShardIndexByKey(shards, key));
+	    PreparedStatement insertStatement = shards.cachedStatements.get(type);
 	    if (insertStatement == null) {
-	      insertStatement = createAndCacheInsertStatement(type, key);
+	      insertStatement = createAndCacheInsertStatement(shards, type, key);
 	    }
       insertStatement.setString(1, key);
       int index = 2;
@@ -433,8 +533,11 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
       if (result == 1) return SUCCESS;
       else return 1;
     } catch (SQLException e) {
+      ok = false;
       System.err.println("Error in processing insert to table: " + tableName + e);
       return -1;
+    } finally {
+      release(shards, ok);
     }
 	}
 
@@ -446,19 +549,27 @@ public class JdbcDBClient extends DB implements JdbcDBClientConstants {
     if (key == null) {
       return -1;
     }
+    Shards shards = acquire();
+    if (shards == null) {
+      return -2;
+    }
+    boolean ok = true;
     try {
-      StatementType type = new StatementType(StatementType.Type.DELETE, tableName, 1, getShardIndexByKey(key));
-      PreparedStatement deleteStatement = cachedStatements.get(type);
+      StatementType type = new StatementType(StatementType.Type.DELETE, tableName, 1, getShardIndexByKey(shards, key));
+      PreparedStatement deleteStatement = shards.cachedStatements.get(type);
       if (deleteStatement == null) {
-        deleteStatement = createAndCacheDeleteStatement(type, key);
+        deleteStatement = createAndCacheDeleteStatement(shards, type, key);
       }
       deleteStatement.setString(1, key);
       int result = deleteStatement.executeUpdate();
       if (result == 1) return SUCCESS;
       else return 1;
     } catch (SQLException e) {
+      ok = false;
       System.err.println("Error in processing delete to table: " + tableName + e);
       return -1;
+    } finally {
+      release(shards, ok);
     }
 	}
 }
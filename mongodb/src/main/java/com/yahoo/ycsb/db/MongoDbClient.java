@@ -31,6 +31,7 @@ import com.yahoo.ycsb.ByteIterator;
 
 import com.mongodb.*;
 
+import com.yahoo.ycsb.ConnectionPool;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
 
@@ -50,6 +51,7 @@ import com.yahoo.ycsb.DBException;
  * mongodb.writeConcern.j=(true|false)
  * mongodb.writeConcern.continueOnInsertError=(true|false)
  * mongodb.readPreference=secondaryPreferred
+ * connectionpoolsize=(number of connections shared by all threads, default threadcount)
  *
  * mongodb.writeConcert.X override specific parameters defined by general writeConcern property.
  *
@@ -68,7 +70,13 @@ import com.yahoo.ycsb.DBException;
  */
 public class MongoDbClient extends DB {
 
-    Mongo mongo;
+    /**
+     * Return the driver instance, which is a pool of connections, shared by all client threads.
+     */
+    Mongo mongo() {
+        return (Mongo) getGlobal();
+    }
+
     WriteConcern writeConcern;
     ReadPreference readPreference;
     String database;
@@ -143,6 +151,19 @@ public class MongoDbClient extends DB {
         readPreference = ReadPreference.valueOf(readPreferenceValue);
 
         //TODO: support tagset
+    }
+
+    @Override
+    /**
+     * Create the connection pool shared by all client threads. It holds up to connectionpoolsize
+     * connections, which defaults to one per thread.
+     */
+    public void initGlobal() throws DBException {
+        Properties props = getProperties();
+        String url = props.getProperty("mongodb.url", "mongodb://localhost:27017");
+        String database = props.getProperty("mongodb.database", "ycsb");
+        int connections = ConnectionPool.size(props);
+        int threads = Integer.parseInt(props.getProperty("threadcount", "1"));
 
         try {
             // strip out prefix since Java driver doesn't currently support
@@ -155,27 +176,29 @@ public class MongoDbClient extends DB {
             // need to append db to url.
             url += "/"+database;
             System.out.println("new database url = "+url);
-            mongo = new Mongo(new DBAddress(url));
-            System.out.println("mongo connection created with "+url);
+            MongoOptions options = new MongoOptions();
+            options.connectionsPerHost = connections;
+            // all threads may wait for a connection at the same time
+            options.threadsAllowedToBlockForConnectionMultiplier = Math.max(threads / connections + 1, 5);
+            setGlobal(new Mongo(new DBAddress(url), options));
+            System.out.println("mongo connection created with "+url+" ("+connections+" connections)");
         } catch (Exception e1) {
             System.err.println(
                     "Could not initialize MongoDB connection pool for Loader: "
                             + e1.toString());
             e1.printStackTrace();
-            return;
+            throw new DBException(e1);
         }
-
     }
-    
+
     @Override
 	/**
-	 * Cleanup any state for this DB.
-	 * Called once per DB instance; there is one DB instance per client thread.
+	 * Close the connection pool shared by all client threads.
 	 */
-	public void cleanup() throws DBException
+	public void cleanupGlobal() throws DBException
 	{
         try {
-        	mongo.close();
+        	mongo().close();
         } catch (Exception e1) {
         	System.err.println(
                     "Could not close MongoDB connection pool: "
@@ -196,7 +219,7 @@ public class MongoDbClient extends DB {
     public int delete(String table, String key) {
         com.mongodb.DB db=null;
         try {
-            db = mongo.getDB(database);
+            db = mongo().getDB(database);
             db.requestStart();
             DBCollection collection = db.getCollection(table);
             DBObject q = new BasicDBObject().append("_id", key);
@@ -228,15 +251,12 @@ public class MongoDbClient extends DB {
     public int insert(String table, String key, HashMap<String, ByteIterator> values) {
         com.mongodb.DB db = null;
         try {
-            db = mongo.getDB(database);
+            db = mongo().getDB(database);
 
             db.requestStart();
 
             DBCollection collection = db.getCollection(table);
-            DBObject r = new BasicDBObject().append("_id", key);
-	        for(String k: values.keySet()) {
-		        r.put(k, values.get(k).toArray());
-	        }
+            DBObject r = toDocument(key, values);
             WriteResult res = collection.insert(r, writeConcern);
             String error = res.getError();
             if (error == null) {
@@ -271,7 +291,7 @@ public class MongoDbClient extends DB {
             HashMap<String, ByteIterator> result) {
         com.mongodb.DB db = null;
         try {
-            db = mongo.getDB(database);
+            db = mongo().getDB(database);
 
             db.requestStart();
 
@@ -316,7 +336,7 @@ public class MongoDbClient extends DB {
     public int update(String table, String key, HashMap<String, ByteIterator> values) {
         com.mongodb.DB db = null;
         try {
-            db = mongo.getDB(database);
+            db = mongo().getDB(database);
 
             db.requestStart();
 
@@ -365,7 +385,7 @@ public class MongoDbClient extends DB {
             String field, Vector<HashMap<String, ByteIterator>> result) {
         com.mongodb.DB db=null;
         try {
-            db = mongo.getDB(database);
+            db = mongo().getDB(database);
             db.requestStart();
             DBCollection collection = db.getCollection(table);
             // { "_id":{"$gte":startKey, "$lte":{"appId":key+"\uFFFF"}} }
@@ -391,11 +411,22 @@ public class MongoDbClient extends DB {
 
     }
 
+    /**
+     * Turn the record into a document with the key as its _id and the values as byte arrays
+     */
+    static DBObject toDocument(String key, Map<String, ByteIterator> values) {
+        DBObject r = new BasicDBObject().append("_id", key);
+        for (Map.Entry<String, ByteIterator> entry : values.entrySet()) {
+            r.put(entry.getKey(), entry.getValue().toArray());
+        }
+        return r;
+    }
+
     /**
      * Turn everything in the object into a ByteIterator
      */
     @SuppressWarnings("unchecked")
-    private HashMap<String, ByteIterator> resultify(DBObject object) {
+    static HashMap<String, ByteIterator> resultify(DBObject object) {
         HashMap<String, ByteIterator> decoded = new HashMap<String, ByteIterator>();
 
         for (Map.Entry<String, Object> entry : ((Map<String, Object>) object.toMap()).entrySet()) {
@@ -6,6 +6,7 @@
  */
 
 package com.yahoo.ycsb.db;
+import com.yahoo.ycsb.ConnectionPool;
 import com.yahoo.ycsb.DB;
 import com.yahoo.ycsb.DBException;
 import com.yahoo.ycsb.ByteIterator;
@@ -18,7 +19,11 @@ import redis.clients.jedis.Protocol;
 
 public class RedisClient extends DB {
 
-    private Jedis jedis;
+    /**
+     * The pool the connection of the current operation was borrowed from. The shared pool may be replaced after a
+     * failure while the connection is in use.
+     */
+    private ConnectionPool<Jedis> borrowed;
 
     public static final String HOST_PROPERTY = "redis.host";
     public static final String PORT_PROPERTY = "redis.port";
@@ -26,9 +31,9 @@ public class RedisClient extends DB {
 
     public static final String INDEX_KEY = "_indices";
 
-    public void init() throws DBException {
+    public void initGlobal() throws DBException {
         Properties props = getProperties();
-        int port;
+        final int port;
 
         String portString = props.getProperty(PORT_PROPERTY);
         if (portString != null) {
@@ -37,19 +42,64 @@ public class RedisClient extends DB {
         else {
             port = Protocol.DEFAULT_PORT;
         }
-        String host = props.getProperty(HOST_PROPERTY);
+        final String host = props.getProperty(HOST_PROPERTY);
+        final String password = props.getProperty(PASSWORD_PROPERTY);
+
+        setGlobal(new ConnectionPool<Jedis>(new ConnectionPool.Factory<Jedis>() {
+            public Jedis create() throws Exception {
+                Jedis jedis = new Jedis(host, port);
+                jedis.connect();
+
+                if (password != null) {
+                    jedis.auth(password);
+                }
+                return jedis;
+            }
+
+            public void destroy(Jedis jedis) {
+                try {
+                    jedis.disconnect();
+                } catch (Exception e) {
+                    // nothing to do, the connection is dropped anyway
+                }
+            }
+        }, ConnectionPool.size(props)));
+    }
+
+    /**
+     * Return the connections shared by all client threads. Every operation borrows one.
+     */
+    @SuppressWarnings("unchecked")
+    private ConnectionPool<Jedis> pool() {
+        return (ConnectionPool<Jedis>) getGlobal();
+    }
 
-        jedis = new Jedis(host, port);
-        jedis.connect();
+    public void cleanupGlobal() throws DBException {
+        pool().close();
+    }
 
-        String password = props.getProperty(PASSWORD_PROPERTY);
-        if (password != null) {
-            jedis.auth(password);
+    /**
+     * Borrow a connection from the pool for an operation, or return null if none can be opened.
+     */
+    private Jedis acquire() {
+        try {
+            borrowed = pool();
+            return borrowed.acquire();
+        } catch (DBException e) {
+            e.printStackTrace();
+            return null;
         }
     }
 
-    public void cleanup() throws DBException {
-        jedis.disconnect();
+    /**
+     * Return a connection to the pool, or drop it if the operation failed with a connection error.
+     */
+    private void release(Jedis jedis, boolean ok) {
+        if (ok) {
+            borrowed.release(jedis);
+        } else {
+            borrowed.invalidate(jedis);
+        }
     }
 
     /* Calculate a hash for a key to store it in an index.  The actual return
@@ -66,6 +116,22 @@ public class RedisClient extends DB {
     @Override
     public int read(String table, String key, String field,
             HashMap<String, ByteIterator> result) {
+        Jedis jedis = acquire();
+        if (jedis == null) {
+            return 1;
+        }
+        boolean ok = false;
+        try {
+            read(jedis, key, field, result);
+            ok = true;
+        } finally {
+            release(jedis, ok);
+        }
+        return result.isEmpty() ? 1 : 0;
+    }
+
+    private void read(Jedis jedis, String key, String field,
+            HashMap<String, ByteIterator> result) {
         if (field == null) {
             StringByteIterator.putAllAsByteIterators(result, jedis.hgetAll(key));
         }
@@ -84,41 +150,83 @@ public class RedisClient extends DB {
             }
             assert !fieldIterator.hasNext() && !valueIterator.hasNext();
         }
-        return result.isEmpty() ? 1 : 0;
     }
 
     @Override
     public int insert(String table, String key, HashMap<String, ByteIterator> values) {
-        if (jedis.hmset(key, StringByteIterator.getStringMap(values)).equals("OK")) {
-            jedis.zadd(INDEX_KEY, hash(key), key);
-            return 0;
+        Jedis jedis = acquire();
+        if (jedis == null) {
+            return 1;
+        }
+        boolean ok = false;
+        try {
+            int ret = 1;
+            if (jedis.hmset(key, StringByteIterator.getStringMap(values)).equals("OK")) {
+                jedis.zadd(INDEX_KEY, hash(key), key);
+                ret = 0;
+            }
+            ok = true;
+            return ret;
+        } finally {
+            release(jedis, ok);
         }
-        return 1;
     }
 
     @Override
     public int delete(String table, String key) {
-        return jedis.del(key) == 0
-            && jedis.zrem(INDEX_KEY, key) == 0
-               ? 1 : 0;
+        Jedis jedis = acquire();
+        if (jedis == null) {
+            return 1;
+        }
+        boolean ok = false;
+        try {
+            int ret = jedis.del(key) == 0
+                && jedis.zrem(INDEX_KEY, key) == 0
+                   ? 1 : 0;
+            ok = true;
+            return ret;
+        } finally {
+            release(jedis, ok);
+        }
     }
 
     @Override
     public int update(String table, String key, HashMap<String, ByteIterator> values) {
-        return jedis.hmset(key, StringByteIterator.getStringMap(values)).equals("OK") ? 0 : 1;
+        Jedis jedis = acquire();
+        if (jedis == null) {
+            return 1;
+        }
+        boolean ok = false;
+        try {
+            int ret = jedis.hmset(key, StringByteIterator.getStringMap(values)).equals("OK") ? 0 : 1;
+            ok = true;
+            return ret;
+        } finally {
+            release(jedis, ok);
+        }
     }
 
     @Override
     public int scan(String table, String startkey, int recordcount,
             String field, Vector<HashMap<String, ByteIterator>> result) {
-        Set<String> keys = jedis.zrangeByScore(INDEX_KEY, hash(startkey),
-                                Double.POSITIVE_INFINITY, 0, recordcount);
-
-        HashMap<String, ByteIterator> values;
-        for (String key : keys) {
-            values = new HashMap<String, ByteIterator>();
-            read(table, key, field, values);
-            result.add(values);
+        Jedis jedis = acquire();
+        if (jedis == null) {
+            return 1;
+        }
+        boolean ok = false;
+        try {
+            Set<String> keys = jedis.zrangeByScore(INDEX_KEY, hash(startkey),
+                                    Double.POSITIVE_INFINITY, 0, recordcount);
+
+            HashMap<String, ByteIterator> values;
+            for (String key : keys) {
+                values = new HashMap<String, ByteIterator>();
+                read(jedis, key, field, values);
+                result.add(values);
+            }
+            ok = true;
+        } finally {
+            release(jedis, ok);
         }
 
         return 0;